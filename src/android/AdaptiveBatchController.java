@@ -0,0 +1,153 @@
+package com.transistorsoft.cordova.bggeo;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * AdaptiveBatchController
+ * Adjusts Config.maxBatchSize from measured upload results, enabled with Config.adaptiveBatchSize.  The aim is the most records / second
+ * while keeping each request's round-trip under targetLatency (well inside Config.httpTimeout):
+ *
+ * - fast responses (< targetLatency / 2) double the batch size;  responses under targetLatency grow it by 10%.
+ * - slow responses shrink it in proportion to targetLatency / latency.
+ * - failures halve it.
+ * - a size which was too slow, or a growth step which lowered throughput, becomes a ceiling until a failure or a fast response.
+ *
+ * The controller is pure bookkeeping:  #onBatch / #onFailure return the new batch size for the caller to apply.
+ */
+public class AdaptiveBatchController {
+    public static final String FIELD_ADAPTIVE_BATCH_SIZE = "adaptiveBatchSize";
+
+    private static final int DEFAULT_MIN_BATCH_SIZE = 10;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+    private static final long DEFAULT_TARGET_LATENCY = 5000;
+    // Weight of the newest sample in the moving averages.
+    private static final double ALPHA = 0.3;
+
+    private final int mMinBatchSize;
+    private final int mMaxBatchSize;
+    private final long mTargetLatency;
+
+    private int mBatchSize;
+    private int mCeiling;
+    private int mPreviousBatchSize;
+    private double mPreviousThroughput;
+
+    private double mLatency;
+    private double mThroughput;
+    private double mBytesPerRecord;
+    private long mLastLatency;
+    private int mSuccesses;
+    private int mFailures;
+    private int mAdjustments;
+
+    /**
+     * @param options Config.adaptiveBatchSize:  true or {minBatchSize, maxBatchSize, targetLatency}.
+     * @param batchSize the current Config.maxBatchSize.
+     */
+    public AdaptiveBatchController(JSONObject options, int batchSize) {
+        if (options == null) {
+            options = new JSONObject();
+        }
+        mMinBatchSize = Math.max(1, options.optInt("minBatchSize", DEFAULT_MIN_BATCH_SIZE));
+        mMaxBatchSize = Math.max(mMinBatchSize, options.optInt("maxBatchSize", DEFAULT_MAX_BATCH_SIZE));
+        mTargetLatency = Math.max(1, options.optLong("targetLatency", DEFAULT_TARGET_LATENCY));
+        mBatchSize = clamp((batchSize > 0) ? batchSize : mMinBatchSize);
+        mCeiling = mMaxBatchSize;
+    }
+
+    public synchronized int getBatchSize() {
+        return mBatchSize;
+    }
+
+    /**
+     * Record a successful request.
+     * @param records number of records uploaded
+     * @param bytes request body size;  < 0 when unknown
+     * @param latency round-trip in millis
+     * @return the new batch size
+     */
+    public synchronized int onBatch(int records, long bytes, long latency, boolean success) {
+        if (!success) {
+            return onFailure();
+        }
+        latency = Math.max(1, latency);
+        mSuccesses++;
+        mLastLatency = latency;
+        double throughput = records * 1000.0 / latency;
+        mLatency = average(mLatency, latency);
+        mThroughput = average(mThroughput, throughput);
+        if (bytes >= 0 && records > 0) {
+            mBytesPerRecord = average(mBytesPerRecord, (double) bytes / records);
+        }
+
+        // Only full batches say anything about the batch size.
+        if (records < mBatchSize) {
+            return mBatchSize;
+        }
+        int size = mBatchSize;
+        if (mPreviousBatchSize > 0 && mPreviousBatchSize < size && throughput < mPreviousThroughput * 0.9) {
+            // Growing hurt throughput:  step back and stay below.
+            mCeiling = size - 1;
+            size = mPreviousBatchSize;
+        } else if (latency > mTargetLatency) {
+            // Too slow:  this size is too large.
+            mCeiling = size - 1;
+            size = (int) (size * ((double) mTargetLatency / latency));
+        } else if (latency < mTargetLatency / 2) {
+            // Far below target (eg: the network improved):  lift the ceiling.
+            mCeiling = mMaxBatchSize;
+            size = size * 2;
+        } else {
+            size = size + Math.max(1, size / 10);
+        }
+        mPreviousBatchSize = mBatchSize;
+        mPreviousThroughput = throughput;
+        return apply(Math.min(size, mCeiling));
+    }
+
+    /**
+     * Record a failed request (timeout, network error, 5xx).
+     * @return the new batch size
+     */
+    public synchronized int onFailure() {
+        mFailures++;
+        mCeiling = mMaxBatchSize;
+        mPreviousBatchSize = 0;
+        return apply(mBatchSize / 2);
+    }
+
+    public synchronized JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("batchSize", mBatchSize);
+        json.put("minBatchSize", mMinBatchSize);
+        json.put("maxBatchSize", mMaxBatchSize);
+        json.put("ceiling", mCeiling);
+        json.put("targetLatency", mTargetLatency);
+        json.put("lastLatency", mLastLatency);
+        json.put("latency", Math.round(mLatency));
+        json.put("throughput", mThroughput);
+        json.put("bytesPerRecord", Math.round(mBytesPerRecord));
+        json.put("successes", mSuccesses);
+        json.put("failures", mFailures);
+        json.put("adjustments", mAdjustments);
+        return json;
+    }
+
+    private int apply(int size) {
+        size = clamp(size);
+        if (size != mBatchSize) {
+            mBatchSize = size;
+            mAdjustments++;
+        }
+        return mBatchSize;
+    }
+
+    private int clamp(int size) {
+        return Math.max(mMinBatchSize, Math.min(mMaxBatchSize, size));
+    }
+
+    private static double average(double current, double sample) {
+        return (current == 0) ? sample : (ALPHA * sample) + ((1 - ALPHA) * current);
+    }
+}
@@ -0,0 +1,314 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.util.Log;
+
+import com.transistorsoft.locationmanager.logger.TSLog;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AsyncLog
+ * Asynchronous log pipeline, configured with Config.logBuffer {size, overflow}.  Callers append to a bounded, lock-free ring-buffer
+ * and return immediately;  a single writer thread drains it into TSLog in batches (every FLUSH_INTERVAL, or sooner once BATCH_SIZE
+ * records are waiting).
+ *
+ * When the buffer is full, the overflow policy decides what's lost:
+ * - dropOldest:  the oldest record.
+ * - dropDebug:  debug records first, once the buffer is 3/4 full;  then the oldest record.
+ * - block:  the caller waits for room.  Only the Javascript #log action blocks (and it runs upon the plugin's LOG queue, never the
+ *   Cordova bridge thread):  the plugin's own records fall back to dropOldest, so logging never adds latency to the location path.
+ *
+ * All of the plugin's own records go through here;  only the writer calls TSLog.logger.
+ *
+ * Every loss is counted (#toJson).
+ */
+public class AsyncLog {
+    public static final String FIELD_LOG_BUFFER = "logBuffer";
+    private static final String TAG = "TSLocationManager";
+
+    public static final String OVERFLOW_DROP_OLDEST = "dropOldest";
+    public static final String OVERFLOW_DROP_DEBUG  = "dropDebug";
+    public static final String OVERFLOW_BLOCK       = "block";
+
+    private static final int LEVEL_DEBUG    = 0;
+    private static final int LEVEL_INFO     = 1;
+    private static final int LEVEL_WARN     = 2;
+    private static final int LEVEL_ERROR    = 3;
+
+    private static final int DEFAULT_SIZE   = 1024;
+    private static final int MAX_SIZE       = 65536;
+    private static final int BATCH_SIZE     = 64;
+    private static final long FLUSH_INTERVAL = 500L * 1000000L;
+    private static final long BLOCK_INTERVAL = 100L * 1000L;
+
+    private static AsyncLog sInstance;
+
+    public static synchronized AsyncLog getInstance() {
+        if (sInstance == null) {
+            sInstance = new AsyncLog(DEFAULT_SIZE, OVERFLOW_DROP_OLDEST);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Create the instance with Config.logBuffer.  The size only applies when the instance is created (ie: upon launch);  the overflow
+     * policy applies immediately.
+     */
+    public static synchronized AsyncLog configure(JSONObject options) {
+        int size = (options != null) ? options.optInt("size", DEFAULT_SIZE) : DEFAULT_SIZE;
+        String overflow = (options != null) ? options.optString("overflow", OVERFLOW_DROP_OLDEST) : OVERFLOW_DROP_OLDEST;
+        if (sInstance == null) {
+            sInstance = new AsyncLog(size, overflow);
+        } else {
+            sInstance.mOverflow = overflow;
+        }
+        return sInstance;
+    }
+
+    public static void debug(String message)    { getInstance().append(LEVEL_DEBUG, null, message, null, false); }
+    public static void info(String message)     { getInstance().append(LEVEL_INFO, null, message, null, false); }
+    public static void warn(String message)     { getInstance().append(LEVEL_WARN, null, message, null, false); }
+    public static void error(String message)    { getInstance().append(LEVEL_ERROR, null, message, null, false); }
+
+    public static void debug(String message, Throwable error)   { getInstance().append(LEVEL_DEBUG, null, message, error, false); }
+    public static void error(String message, Throwable error)   { getInstance().append(LEVEL_ERROR, null, message, error, false); }
+
+    /**
+     * Append a record of the Javascript Logger API (#log action), written with TSLog#log.
+     */
+    public static void log(String level, String message) {
+        int priority = LEVEL_INFO;
+        if ("debug".equals(level)) {
+            priority = LEVEL_DEBUG;
+        } else if ("warn".equals(level)) {
+            priority = LEVEL_WARN;
+        } else if ("error".equals(level)) {
+            priority = LEVEL_ERROR;
+        }
+        getInstance().append(priority, level, message, null, true);
+    }
+
+    private final Ring mRing;
+    private final Thread mWriter;
+    private volatile boolean mWriterWaiting;
+    private volatile String mOverflow;
+
+    private final AtomicLong mAppended = new AtomicLong();
+    private final AtomicLong mWritten = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mDroppedDebug = new AtomicLong();
+    private final AtomicLong mBlocked = new AtomicLong();
+
+    private AsyncLog(int size, String overflow) {
+        mRing = new Ring(Math.max(BATCH_SIZE, Math.min(MAX_SIZE, size)));
+        mOverflow = overflow;
+        mWriter = new Thread(new Runnable() {
+            @Override public void run() {
+                write();
+            }
+        }, "TSLog-writer");
+        mWriter.setDaemon(true);
+        mWriter.start();
+    }
+
+    /**
+     * Write all buffered records on the calling thread (eg: before the plugin is destroyed).
+     */
+    public void flush() {
+        Record record;
+        while ((record = mRing.poll()) != null) {
+            writeRecord(record);
+        }
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("size", mRing.capacity());
+        json.put("overflow", mOverflow);
+        json.put("buffered", mRing.size());
+        json.put("appended", mAppended.get());
+        json.put("written", mWritten.get());
+        json.put("dropped", mDropped.get());
+        json.put("droppedDebug", mDroppedDebug.get());
+        json.put("blocked", mBlocked.get());
+        return json;
+    }
+
+    private void append(int level, String jsLevel, String message, Throwable error, boolean mayBlock) {
+        Record record = new Record(level, jsLevel, message, error);
+        mAppended.incrementAndGet();
+        String overflow = mOverflow;
+
+        if (OVERFLOW_DROP_DEBUG.equals(overflow) && level == LEVEL_DEBUG && mRing.size() >= (mRing.capacity() * 3 / 4)) {
+            dropped(record);
+            return;
+        }
+        if (OVERFLOW_BLOCK.equals(overflow) && mayBlock) {
+            if (!mRing.offer(record)) {
+                mBlocked.incrementAndGet();
+                do {
+                    wakeWriter();
+                    LockSupport.parkNanos(BLOCK_INTERVAL);
+                } while (!mRing.offer(record));
+            }
+        } else {
+            while (!mRing.offer(record)) {
+                // Full:  make room by dropping the oldest.
+                Record oldest = mRing.poll();
+                if (oldest != null) {
+                    dropped(oldest);
+                }
+            }
+        }
+        if (level >= LEVEL_WARN || mRing.size() >= BATCH_SIZE) {
+            wakeWriter();
+        }
+    }
+
+    private void dropped(Record record) {
+        mDropped.incrementAndGet();
+        if (record.level == LEVEL_DEBUG) {
+            mDroppedDebug.incrementAndGet();
+        }
+    }
+
+    private void wakeWriter() {
+        if (mWriterWaiting) {
+            mWriterWaiting = false;
+            LockSupport.unpark(mWriter);
+        }
+    }
+
+    private void write() {
+        while (true) {
+            int count = 0;
+            Record record;
+            while (count < BATCH_SIZE && (record = mRing.poll()) != null) {
+                writeRecord(record);
+                count++;
+            }
+            if (count < BATCH_SIZE) {
+                // Drained:  sleep until the next batch is due (or a producer wakes us).
+                mWriterWaiting = true;
+                if (mRing.size() == 0) {
+                    LockSupport.parkNanos(FLUSH_INTERVAL);
+                }
+                mWriterWaiting = false;
+            }
+        }
+    }
+
+    private void writeRecord(Record record) {
+        try {
+            if (record.jsLevel != null) {
+                TSLog.log(record.jsLevel, record.message);
+            } else if (record.level == LEVEL_DEBUG) {
+                TSLog.logger.debug(record.message, record.error);
+            } else if (record.level == LEVEL_INFO) {
+                TSLog.logger.info(record.message);
+            } else if (record.level == LEVEL_WARN) {
+                TSLog.logger.warn(record.message);
+            } else {
+                TSLog.logger.error(record.message, record.error);
+            }
+            mWritten.incrementAndGet();
+        } catch (RuntimeException e) {
+            // Never let a bad record kill the writer.
+            Log.e(TAG, "Failed to write log record", e);
+        }
+    }
+
+    private static class Record {
+        final int level;
+        final String jsLevel;
+        final String message;
+        final Throwable error;
+
+        Record(int level, String jsLevel, String message, Throwable error) {
+            this.level = level;
+            this.jsLevel = jsLevel;
+            this.message = message;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Bounded, lock-free multi-producer / multi-consumer queue (after Dmitry Vyukov's).  Each slot carries a sequence number
+     * telling producers and consumers whether it's theirs to fill or empty;  positions are claimed with a CAS.  Producers
+     * also consume, to drop the oldest record.
+     */
+    private static class Ring {
+        private final int mask;
+        private final AtomicReferenceArray<Record> slots;
+        private final AtomicLongArray sequences;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        Ring(int size) {
+            int capacity = Integer.highestOneBit(size);
+            if (capacity < size) {
+                capacity <<= 1;
+            }
+            mask = capacity - 1;
+            slots = new AtomicReferenceArray<Record>(capacity);
+            sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        int size() {
+            return (int) Math.max(0, tail.get() - head.get());
+        }
+
+        boolean offer(Record record) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long delta = sequences.get(index) - position;
+                if (delta == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        slots.set(index, record);
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (delta < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        Record poll() {
+            long position = head.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long delta = sequences.get(index) - (position + 1);
+                if (delta == 0) {
+                    if (head.compareAndSet(position, position + 1)) {
+                        Record record = slots.getAndSet(index, null);
+                        sequences.set(index, position + mask + 1);
+                        return record;
+                    }
+                    position = head.get();
+                } else if (delta < 0) {
+                    return null;
+                } else {
+                    position = head.get();
+                }
+            }
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.transistorsoft.cordova.bggeo;
 
+import android.content.Context;
+
 import org.greenrobot.eventbus.Subscribe;
 import org.json.JSONObject;
 
 import com.transistorsoft.locationmanager.adapter.BackgroundGeolocation;
 import com.transistorsoft.locationmanager.event.ActivityChangeEvent;
+import com.transistorsoft.locationmanager.event.AuthorizationEvent;
 import com.transistorsoft.locationmanager.event.GeofenceEvent;
 import com.transistorsoft.locationmanager.event.GeofencesChangeEvent;
 import com.transistorsoft.locationmanager.event.ConnectivityChangeEvent;
@@ -12,11 +15,14 @@ import com.transistorsoft.locationmanager.event.HeadlessEvent;
 import com.transistorsoft.locationmanager.event.HeartbeatEvent;
 import com.transistorsoft.locationmanager.event.MotionChangeEvent;
 import com.transistorsoft.locationmanager.event.LocationProviderChangeEvent;
+import com.transistorsoft.locationmanager.event.PowerSaveModeChangeEvent;
 import com.transistorsoft.locationmanager.http.HttpResponse;
 import com.transistorsoft.locationmanager.location.TSLocation;
 import com.transistorsoft.locationmanager.logger.TSLog;
 
-import org.json.JSONException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * BackgroundGeolocationHeadlessTask
  * This component allows you to receive events from the BackgroundGeolocation plugin in the native Android environment while your app has been *terminated*,
@@ -26,53 +32,165 @@ import org.json.JSONException;
  * You might use this component to:
  * - fetch / post information to your server (eg: request new API key)
  * - execute BackgroundGeolocation API methods (eg: #getCurrentPosition, #setConfig, #addGeofence, #stop, etc -- you can execute ANY method of the Javascript API)
+ *
+ * Register a typed Handler for each event you're interested in (see the static block below).  Each event is routed with a single map lookup
+ * to its Handler;  events without a Handler are ignored.
  */
 
 public class BackgroundGeolocationHeadlessTask  {
 
+    /**
+     * Receives one type of headless event.
+     */
+    public interface Handler<T> {
+        void onEvent(Context context, T event);
+    }
+
+    /**
+     * Unwraps a HeadlessEvent for its typed Handler.
+     */
+    private interface Route {
+        void dispatch(HeadlessEvent event);
+    }
+
+    private static final Map<String, Route> sRoutes = new ConcurrentHashMap<String, Route>();
+
+    static {
+        // Register your handlers here, eg:
+        onTerminate(new Handler<JSONObject>() {
+            @Override public void onEvent(Context context, JSONObject state) {
+                // Your code here.
+            }
+        });
+        onLocation(new Handler<TSLocation>() {
+            @Override public void onEvent(Context context, TSLocation location) {
+                // Your code here.
+            }
+        });
+    }
+
     @Subscribe
     public void onHeadlessTask(HeadlessEvent event) {
         String name = event.getName();
-        TSLog.logger.debug("\uD83D\uDC80  event: " + event.getName());
-        TSLog.logger.debug("- event: " + event.getEvent());
-
-        if (name.equals(BackgroundGeolocation.EVENT_TERMINATE)) {
-            JSONObject state = event.getTerminateEvent();
-        } else if (name.equals(BackgroundGeolocation.EVENT_LOCATION)) {
-            try {
-                TSLocation location = event.getLocationEvent();
-            } catch (JSONException e) {
-                TSLog.logger.error(e.getMessage(), e);
-            }
-        } else if (name.equals(BackgroundGeolocation.EVENT_MOTIONCHANGE)) {
-            MotionChangeEvent motionChangeEvent = event.getMotionChangeEvent();
-            TSLocation location = motionChangeEvent.getLocation();
-        } else if (name.equals(BackgroundGeolocation.EVENT_HTTP)) {
-            HttpResponse response = event.getHttpEvent();
-        } else if (name.equals(BackgroundGeolocation.EVENT_PROVIDERCHANGE)) {
-            LocationProviderChangeEvent providerChange = event.getProviderChangeEvent();
-        } else if (name.equals(BackgroundGeolocation.EVENT_PROVIDERCHANGE)) {
-            LocationProviderChangeEvent providerChange = event.getProviderChangeEvent();
-        } else if (name.equals(BackgroundGeolocation.EVENT_ACTIVITYCHANGE)) {
-            ActivityChangeEvent activityChange = event.getActivityChangeEvent();
-        } else if (name.equals(BackgroundGeolocation.EVENT_SCHEDULE)) {
-            JSONObject state = event.getScheduleEvent();
-        } else if (name.equals(BackgroundGeolocation.EVENT_BOOT)) {
-            JSONObject state = event.getBootEvent();
-        } else if (name.equals(BackgroundGeolocation.EVENT_GEOFENCE)) {
-            GeofenceEvent geofenceEvent = event.getGeofenceEvent();
-        } else if (name.equals(BackgroundGeolocation.EVENT_GEOFENCESCHANGE)) {
-            GeofencesChangeEvent geofencesChangeEvent = event.getGeofencesChangeEvent();
-        } else if (name.equals(BackgroundGeolocation.EVENT_HEARTBEAT)) {
-            HeartbeatEvent heartbeatEvent = event.getHeartbeatEvent();
-        } else if (name.equals(BackgroundGeolocation.EVENT_NOTIFICATIONACTION)) {
-            String buttonId = event.getNotificationEvent();
-        } else if (name.equals(BackgroundGeolocation.EVENT_CONNECTIVITYCHANGE)) {
-            ConnectivityChangeEvent connectivityChangeEvent = event.getConnectivityChangeEvent();
-        } else if (name.equals(BackgroundGeolocation.EVENT_ENABLEDCHANGE)) {
-            boolean enabled = event.getEnabledChangeEvent();
-        } else {
-            TSLog.logger.warn(TSLog.warn("Unknown Headless Event: " + name));
+        if (TSLog.logger.isDebugEnabled()) {
+            AsyncLog.debug("\uD83D\uDC80  event: " + name);
+            AsyncLog.debug("- event: " + event.getEvent());
         }
+        // Config.headlessRules:  filter locations before they're persisted, throttle events before they're routed.
+        if (!HeadlessRules.install(event.getContext()).shouldRoute(name)) {
+            return;
+        }
+        Route route = sRoutes.get(name);
+        if (route != null) {
+            route.dispatch(event);
+        }
+    }
+
+    public static void onTerminate(final Handler<JSONObject> handler) {
+        register(BackgroundGeolocation.EVENT_TERMINATE, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getTerminateEvent()); }
+        });
+    }
+
+    public static void onBoot(final Handler<JSONObject> handler) {
+        register(BackgroundGeolocation.EVENT_BOOT, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getBootEvent()); }
+        });
+    }
+
+    public static void onLocation(final Handler<TSLocation> handler) {
+        register(BackgroundGeolocation.EVENT_LOCATION, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getLocationEvent()); }
+        });
+    }
+
+    public static void onMotionChange(final Handler<MotionChangeEvent> handler) {
+        register(BackgroundGeolocation.EVENT_MOTIONCHANGE, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getMotionChangeEvent()); }
+        });
+    }
+
+    public static void onHttp(final Handler<HttpResponse> handler) {
+        register(BackgroundGeolocation.EVENT_HTTP, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getHttpEvent()); }
+        });
+    }
+
+    public static void onProviderChange(final Handler<LocationProviderChangeEvent> handler) {
+        register(BackgroundGeolocation.EVENT_PROVIDERCHANGE, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getProviderChangeEvent()); }
+        });
+    }
+
+    public static void onActivityChange(final Handler<ActivityChangeEvent> handler) {
+        register(BackgroundGeolocation.EVENT_ACTIVITYCHANGE, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getActivityChangeEvent()); }
+        });
+    }
+
+    public static void onSchedule(final Handler<JSONObject> handler) {
+        register(BackgroundGeolocation.EVENT_SCHEDULE, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getScheduleEvent()); }
+        });
+    }
+
+    public static void onGeofence(final Handler<GeofenceEvent> handler) {
+        register(BackgroundGeolocation.EVENT_GEOFENCE, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getGeofenceEvent()); }
+        });
+    }
+
+    public static void onGeofencesChange(final Handler<GeofencesChangeEvent> handler) {
+        register(BackgroundGeolocation.EVENT_GEOFENCESCHANGE, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getGeofencesChangeEvent()); }
+        });
+    }
+
+    public static void onHeartbeat(final Handler<HeartbeatEvent> handler) {
+        register(BackgroundGeolocation.EVENT_HEARTBEAT, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getHeartbeatEvent()); }
+        });
+    }
+
+    public static void onNotificationAction(final Handler<String> handler) {
+        register(BackgroundGeolocation.EVENT_NOTIFICATIONACTION, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getNotificationEvent()); }
+        });
+    }
+
+    public static void onConnectivityChange(final Handler<ConnectivityChangeEvent> handler) {
+        register(BackgroundGeolocation.EVENT_CONNECTIVITYCHANGE, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getConnectivityChangeEvent()); }
+        });
+    }
+
+    public static void onEnabledChange(final Handler<Boolean> handler) {
+        register(BackgroundGeolocation.EVENT_ENABLEDCHANGE, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getEnabledChangeEvent()); }
+        });
+    }
+
+    public static void onPowerSaveChange(final Handler<PowerSaveModeChangeEvent> handler) {
+        register(BackgroundGeolocation.EVENT_POWERSAVECHANGE, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getPowerSaveChangeEvent()); }
+        });
+    }
+
+    public static void onAuthorization(final Handler<AuthorizationEvent> handler) {
+        register(BackgroundGeolocation.EVENT_AUTHORIZATION, new Route() {
+            @Override public void dispatch(HeadlessEvent event) { handler.onEvent(event.getContext(), event.getAuthorizationEvent()); }
+        });
+    }
+
+    /**
+     * Remove the Handler of an event, eg: BackgroundGeolocation.EVENT_LOCATION
+     */
+    public static void removeHandler(String event) {
+        sRoutes.remove(event);
+    }
+
+    private static void register(String event, Route route) {
+        // One Handler per event:  registering again replaces it.
+        sRoutes.put(event, route);
     }
-}
\ No newline at end of file
+}
@@ -28,10 +28,36 @@ import com.transistorsoft.locationmanager.scheduler.ScheduleEvent;
 import com.transistorsoft.locationmanager.scheduler.TSScheduleManager;
 import com.transistorsoft.locationmanager.util.Sensors;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaPlugin;
@@ -45,6 +71,8 @@ import com.transistorsoft.xms.g.common.ExtensionApiAvailability;
 import android.app.AlertDialog;
 import android.content.Context;
 import android.content.DialogInterface;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteException;
 
 import android.app.Activity;
 import android.content.Intent;
@@ -54,6 +82,7 @@ import android.util.Log;
 public class CDVBackgroundGeolocation extends CordovaPlugin {
     private static final String TAG = "TSLocationManager";
     private static final String HEADLESS_JOB_SERVICE_CLASS = "BackgroundGeolocationHeadlessTask";
+    private static final String PREFS_NAME = "TSCordovaBackgroundGeolocation";
 
     public static final int REQUEST_ACTION_START = 1;
     public static final int REQUEST_ACTION_GET_CURRENT_POSITION = 2;
@@ -95,18 +124,91 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
     public static final String ACTION_START_SCHEDULE    = "startSchedule";
     public static final String ACTION_STOP_SCHEDULE     = "stopSchedule";
     public static final String ACTION_LOG               = "log";
+    public static final String ACTION_GET_LOG_STATS     = "getLogStats";
+    public static final String ACTION_IMPORT_GEOFENCES  = "importGeofences";
+    public static final String ACTION_GET_GEOFENCES_NEAR = "getGeofencesNear";
+    public static final String ACTION_GET_GEOFENCES_IN_BOUNDS = "getGeofencesInBounds";
+    public static final String ACTION_GET_GEOFENCES_SINCE = "getGeofencesSince";
+    public static final String ACTION_INSERT_LOCATIONS  = "insertLocations";
+    public static final String ACTION_DESTROY_LOCATIONS_BY_UUID = "destroyLocationsByUUID";
+    public static final String ACTION_GET_SYNC_DIAGNOSTICS = "getSyncDiagnostics";
+
+    private static final String FIELD_PAGE_SIZE = "pageSize";
+    private static final String FIELD_CURSOR    = "cursor";
+    private static final String FIELD_IF_CHANGED_SINCE = "ifChangedSince";
+    // Config.locationsOrderDirection which syncs the newest locations first.
+    private static final String SQL_ORDER_DESC = "DESC";
+    /**
+     * Max number of un-drained #getLocations / #sync cursors held before the oldest is discarded.
+     */
+    private static final int MAX_LOCATION_CURSORS = 4;
+
+    // Batched location delivery (addLocationListener options)
+    private static final String FIELD_BATCH_SIZE    = "batchSize";
+    private static final String FIELD_BATCH_LATENCY = "batchLatency";
+    private static final int DEFAULT_BATCH_SIZE     = 50;
+    private static final long DEFAULT_BATCH_LATENCY = 10000;
+
+    // Bulk geofence import (importGeofences options)
+    private static final String FIELD_CHUNK_SIZE        = "chunkSize";
+    private static final int DEFAULT_IMPORT_CHUNK_SIZE  = 500;
+    /**
+     * Max time in millis to wait upon the geofence store (import chunk commit, index load).
+     */
+    private static final long GEOFENCE_STORE_TIMEOUT    = 60000;
+
+    /**
+     * Max time in millis to wait upon the location store for a batch #insertLocations / #destroyLocations.
+     */
+    private static final long LOCATION_BATCH_TIMEOUT    = 60000;
+
+    /**
+     * Number of threads in the worker pool for Dispatch.POOL actions.
+     */
+    private static final int POOL_SIZE = 2;
+
+    // Config options implemented by the plugin rather than the SDK (see #applyPluginOptions).
+    private static final String[] PLUGIN_CONFIG_FIELDS = {
+            HeadlessRules.FIELD_RULES,
+            LocationFilter.FIELD_LOCATION_SMOOTHING,
+            TrajectorySimplifier.FIELD_SIMPLIFY_TOLERANCE,
+            AdaptiveBatchController.FIELD_ADAPTIVE_BATCH_SIZE,
+            CompactSync.FIELD_SYNC_ENCODING,
+            CompactSync.FIELD_SYNC_CONCURRENCY,
+            AsyncLog.FIELD_LOG_BUFFER
+    };
+    // #setConfig option:  reply with only the changed fields.
+    private static final String FIELD_CHANGES = "changes";
 
     private static final String ACTION_REQUEST_SETTINGS  = "requestSettings";
     private static final String ACTION_SHOW_SETTINGS     = "showSettings";
 
     private boolean mReady;
     private List<TSCallback> locationAuthorizationCallbacks = new ArrayList<TSCallback>();
-    private List<CallbackContext> watchPositionCallbacks = new ArrayList<CallbackContext>();
-    private List<CordovaCallback> cordovaCallbacks = new ArrayList<CordovaCallback>();
+    private final WatchMultiplexer watchMultiplexer = new WatchMultiplexer();
+    private final CallbackRegistry cordovaCallbacks = new CallbackRegistry();
+    private final Map<String, LocationCursor> locationCursors = new LinkedHashMap<String, LocationCursor>();
+    private final AtomicInteger locationCursorSeq = new AtomicInteger(0);
+    private final GeofenceIndex geofenceIndex = new GeofenceIndex();
+    private final PositionCoalescer positionCoalescer = new PositionCoalescer();
+    private AdaptiveBatchController batchController;
+    // Last-known config, for #setConfig diffing.
+    // #getState cache:  stateVersion changes with the State.  Seeded with the clock so versions don't repeat across launches.
+    private final AtomicLong stateVersion = new AtomicLong(System.currentTimeMillis());
+    private JSONObject stateCache;
+    private long stateCacheVersion = -1;
+    private int stateFingerprint;
+    private final Map<String, Action> mActions = new HashMap<String, Action>();
+    private final Map<Dispatch, ExecutorService> mExecutors = new EnumMap<Dispatch, ExecutorService>(Dispatch.class);
+    // Javascript location / motionchange listeners share a single native listener, serializing each event once.
+    private final EventFanout locationFanout = new EventFanout();
+    private final EventFanout motionChangeFanout = new EventFanout();
+    private ScheduledExecutorService batchScheduler;
 
     @Override
     protected void pluginInitialize() {
         mReady = false;
+        registerActions();
         initializeLocationManager();
     }
 
@@ -123,6 +225,11 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         BackgroundGeolocation adapter = getAdapter();
         adapter.setActivity(activity);
 
+        HeadlessRules.install(activity.getApplicationContext());
+        configureLogBuffer();
+        addBatchControllerHttpListener();
+        addStateListeners();
+
         adapter.onPlayServicesConnectError((new TSPlayServicesConnectErrorCallback() {
             @Override
             public void onPlayServicesConnectError(int errorCode) {
@@ -135,225 +242,471 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
 
         Log.d(TAG, "$ " + action + "()");
 
-        Boolean result      = false;
-
-        if (BackgroundGeolocation.ACTION_START.equalsIgnoreCase(action)) {
-            result      = true;
-            start(callbackContext);
-        } else if (ACTION_START_SCHEDULE.equalsIgnoreCase(action)) {
-            result = true;
-            startSchedule(callbackContext);
-        } else if (ACTION_STOP_SCHEDULE.equalsIgnoreCase(action)) {
-            result = true;
-            stopSchedule(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_START_GEOFENCES.equalsIgnoreCase(action)) {
-            result = true;
-            startGeofences(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_STOP.equalsIgnoreCase(action)) {
-            // No implementation to stop background-tasks with Android.  Just say "success"
-            result      = true;
-            stop(callbackContext);
-        } else if (ACTION_START_BACKGROUND_TASK.equalsIgnoreCase(action)) {
-            result = true;
-            startBackgroundTask(callbackContext);
-        } else if (ACTION_FINISH.equalsIgnoreCase(action)) {
-            result = true;
-            stopBackgroundTask(data.getInt(0), callbackContext);
-        } else if (ACTION_ERROR.equalsIgnoreCase(action)) {
-            result = true;
-            this.onError(data.getString(1));
-            callbackContext.success();
-        } else if (ACTION_RESET.equalsIgnoreCase(action)) {
-            result = true;
-            reset(data.getJSONObject(0), callbackContext);
-        } else if (ACTION_READY.equalsIgnoreCase(action)) {
-            result = true;
-            ready(data.getJSONObject(0), callbackContext);
-        } else if (ACTION_CONFIGURE.equalsIgnoreCase(action)) {
-            result = true;
-            configure(data.getJSONObject(0), callbackContext);
-        } else if (ACTION_REMOVE_LISTENERS.equalsIgnoreCase(action)) {
-            result = true;
-            removeListeners(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_REMOVE_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            removeListener(data.getString(0), data.getString(1), callbackContext);
-        } else if (ACTION_ADD_LOCATION_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addLocationListener(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_CHANGE_PACE.equalsIgnoreCase(action)) {
-            result = true;
-            TSConfig config = TSConfig.getInstance(cordova.getActivity().getApplicationContext());
-            if (!config.getEnabled()) {
-                Log.w(TAG, "- Cannot change pace while disabled");
-                callbackContext.error("Cannot #changePace while disabled");
+        // Javascript API always sends the canonical action-name, so the exact-match lookup is the hot-path.
+        Action handler = mActions.get(action);
+        if (handler == null) {
+            handler = mActions.get(action.toLowerCase(Locale.ENGLISH));
+        }
+        if (handler == null) {
+            return false;
+        }
+        if (handler.dispatch == Dispatch.INLINE) {
+            handler.execute(data, callbackContext);
+        } else {
+            dispatch(handler, data, callbackContext);
+        }
+        return true;
+    }
+
+    /**
+     * Execute an action off the Cordova bridge thread, upon the executor of its Dispatch policy.
+     */
+    private void dispatch(final Action handler, final JSONArray data, final CallbackContext callbackContext) {
+        try {
+            getExecutor(handler.dispatch).execute(new Runnable() {
+                @Override public void run() {
+                    try {
+                        handler.execute(data, callbackContext);
+                    } catch (JSONException e) {
+                        AsyncLog.error(e.getMessage(), e);
+                        callbackContext.error(e.getMessage());
+                    } finally {
+                        if (handler.mutatesState) {
+                            invalidateState();
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Plugin destroyed.
+            callbackContext.error(e.getMessage());
+        }
+    }
+
+    private synchronized ExecutorService getExecutor(Dispatch dispatch) {
+        ExecutorService executor = mExecutors.get(dispatch);
+        if (executor == null) {
+            if (dispatch == Dispatch.POOL) {
+                executor = Executors.newFixedThreadPool(POOL_SIZE);
+            } else if (dispatch == Dispatch.UPLOAD) {
+                executor = Executors.newFixedThreadPool(CompactSync.MAX_SYNC_CONCURRENCY);
             } else {
-                changePace(callbackContext, data);
+                executor = Executors.newSingleThreadExecutor();
             }
-        } else if (BackgroundGeolocation.ACTION_SET_CONFIG.equalsIgnoreCase(action)) {
-            result = true;
-            setConfig( data.getJSONObject(0), callbackContext);
-        } else if (ACTION_GET_STATE.equalsIgnoreCase(action)) {
-            result = true;
-            callbackContext.success(getState());
-        } else if (ACTION_ADD_MOTION_CHANGE_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            this.addMotionChangeListener(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_GET_LOCATIONS.equalsIgnoreCase(action)) {
-            result = true;
-            getLocations(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_SYNC.equalsIgnoreCase(action)) {
-            result = true;
-            sync(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_GET_ODOMETER.equalsIgnoreCase(action)) {
-            result = true;
-            getOdometer(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_SET_ODOMETER.equalsIgnoreCase(action)) {
-            result = true;
-            setOdometer((float) data.getDouble(0), callbackContext);
-        } else if (BackgroundGeolocation.ACTION_ADD_GEOFENCE.equalsIgnoreCase(action)) {
-            result = true;
-            addGeofence(callbackContext, data.getJSONObject(0));
-        } else if (BackgroundGeolocation.ACTION_ADD_GEOFENCES.equalsIgnoreCase(action)) {
-            result = true;
-            addGeofences(callbackContext, data.getJSONArray(0));
-        } else if (BackgroundGeolocation.ACTION_REMOVE_GEOFENCE.equalsIgnoreCase(action)) {
-            result = true;
-            removeGeofence(data.getString(0), callbackContext);
-        } else if (BackgroundGeolocation.ACTION_REMOVE_GEOFENCES.equalsIgnoreCase(action)) {
-            result = true;
-            removeGeofences(data.getJSONArray(0), callbackContext);
-        } else if (ACTION_ADD_GEOFENCE_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addGeofenceListener(callbackContext);
-        } else if (ACTION_ADD_GEOFENCESCHANGE_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addGeofencesChangeListener(callbackContext);
-        } else if (ACTION_ADD_POWERSAVECHANGE_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addPowerSaveChangeListener(callbackContext);
-        } else if (ACTION_ADD_CONNECTIVITYCHANGE_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addConnectivityChangeListener(callbackContext);
-        } else if (ACTION_ADD_ENABLEDCHANGE_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addEnabledChangeListener(callbackContext);
-        } else if (ACTION_ADD_NOTIFICATIONACTION_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addNotificationActionListener(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_GET_GEOFENCES.equalsIgnoreCase(action)) {
-            result = true;
-            getGeofences(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_GET_GEOFENCE.equalsIgnoreCase(action)) {
-            result = true;
-            getGeofence(data.getString(0), callbackContext);
-        } else if (BackgroundGeolocation.ACTION_GEOFENCE_EXISTS.equalsIgnoreCase(action)) {
-            result = true;
-            geofenceExists(data.getString(0), callbackContext);
-        } else if (ACTION_PLAY_SOUND.equalsIgnoreCase(action)) {
-            result = true;
-            getAdapter().startTone(data.getString(0));
-            callbackContext.success();
-        } else if (BackgroundGeolocation.ACTION_GET_CURRENT_POSITION.equalsIgnoreCase(action)) {
-            result = true;
-            getCurrentPosition(callbackContext, data.getJSONObject(0));
-        } else if (BackgroundGeolocation.ACTION_WATCH_POSITION.equalsIgnoreCase(action)) {
-            result = true;
-            watchPosition(callbackContext, data.getJSONObject(0));
-        } else if (BackgroundGeolocation.ACTION_STOP_WATCH_POSITION.equalsIgnoreCase(action)) {
-            result = true;
-            stopWatchPosition(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_START_BACKGROUND_TASK.equalsIgnoreCase(action)) {
-            // Android doesn't do background-tasks.  This is an iOS thing.  Just return a number.
-            result = true;
-            callbackContext.success(1);
-        } else if (BackgroundGeolocation.ACTION_DESTROY_LOCATIONS.equalsIgnoreCase(action)) {
-            result = true;
-            destroyLocations(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_DESTROY_LOCATION.equalsIgnoreCase(action)) {
-            result = true;
-            destroyLocation(data.getString(0), callbackContext);
-        } else if (ACTION_ADD_HTTP_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addHttpListener(callbackContext);
-        } else if (ACTION_ADD_HEARTBEAT_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addHeartbeatListener(callbackContext);
-        } else if (ACTION_ADD_ACTIVITY_CHANGE_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addActivityChangeListener(callbackContext);
-        } else if (ACTION_ADD_PROVIDER_CHANGE_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addProviderChangeListener(callbackContext);
-        } else if (ACTION_ADD_SCHEDULE_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addScheduleListener(callbackContext);
-        } else if (ACTION_ADD_AUTHORIZATION_LISTENER.equalsIgnoreCase(action)) {
-            result = true;
-            addAuthorizationListener(callbackContext);
-        } else if (ACTION_GET_LOG.equalsIgnoreCase(action)) {
-            result = true;
-            getLog(data.getJSONObject(0), callbackContext);
-        } else if (ACTION_EMAIL_LOG.equalsIgnoreCase(action)) {
-            result = true;
-            emailLog(data.getString(0), data.getJSONObject(1), callbackContext);
-        } else if (TSLog.ACTION_UPLOAD_LOG.equalsIgnoreCase(action)) {
-            result = true;
-            uploadLog(data.getString(0), data.getJSONObject(1), callbackContext);
-        } else if (BackgroundGeolocation.ACTION_INSERT_LOCATION.equalsIgnoreCase(action)) {
-            result = true;
-            insertLocation(data.getJSONObject(0), callbackContext);
-        } else if (BackgroundGeolocation.ACTION_GET_COUNT.equalsIgnoreCase(action)) {
-            result = true;
-            getCount(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_DESTROY_LOG.equalsIgnoreCase(action)) {
-            result = true;
-            destroyLog(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_GET_SENSORS.equalsIgnoreCase(action)) {
-            result = true;
-            getSensors(callbackContext);
-        } else if (DeviceInfo.ACTION_GET_DEVICE_INFO.equalsIgnoreCase(action)) {
-            result = true;
-            getDeviceInfo(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_IS_POWER_SAVE_MODE.equalsIgnoreCase(action)) {
-            result = true;
-            isPowerSaveMode(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_IS_IGNORING_BATTERY_OPTIMIZATIONS.equalsIgnoreCase(action)) {
-            result = true;
-            isIgnoringBatteryOptimizations(callbackContext);
-        } else if (ACTION_REQUEST_SETTINGS.equalsIgnoreCase(action)) {
-            result = true;
-            requestSettings(data.getJSONObject(0), callbackContext);
-        } else if (ACTION_SHOW_SETTINGS.equalsIgnoreCase(action)) {
-            result = true;
-            showSettings(data.getJSONObject(0), callbackContext);
-        } else if (ACTION_LOG.equalsIgnoreCase(action)) {
-            result = true;
-            log(data, callbackContext);
-        } else if (BackgroundGeolocation.ACTION_GET_PROVIDER_STATE.equalsIgnoreCase(action)) {
-            result = true;
-            getProviderState(callbackContext);
-        } else if (BackgroundGeolocation.ACTION_REQUEST_PERMISSION.equalsIgnoreCase(action)) {
-            result = true;
-            requestPermission(callbackContext);
-        } else if (ACTION_REQUEST_TEMPORARY_FULL_ACCURACY.equalsIgnoreCase(action)) {
-            result = true;
-            requestTemporaryFullAccuracy(data.getString(0), callbackContext);
-        } else if (TransistorAuthorizationToken.ACTION_GET.equalsIgnoreCase(action)) {
-            result = true;
-            getTransistorToken(data.getString(0), data.getString(1), data.getString(2), callbackContext);
-        } else if (TransistorAuthorizationToken.ACTION_DESTROY.equalsIgnoreCase(action)) {
-            result = true;
-            destroyTransistorToken(data.getString(0), callbackContext);
-        }
-        return result;
+            mExecutors.put(dispatch, executor);
+        }
+        return executor;
+    }
+
+    /**
+     * Build the action dispatch-table.  Executed once from #pluginInitialize.
+     */
+    private void registerActions() {
+        registerAction(BackgroundGeolocation.ACTION_START, new Action(Dispatch.CONFIG, true) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                start(callbackContext);
+            }
+        });
+        registerAction(ACTION_START_SCHEDULE, new Action(Dispatch.CONFIG, true) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                startSchedule(callbackContext);
+            }
+        });
+        registerAction(ACTION_STOP_SCHEDULE, new Action(Dispatch.CONFIG, true) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                stopSchedule(callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_START_GEOFENCES, new Action(Dispatch.CONFIG, true) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                startGeofences(callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_STOP, new Action(Dispatch.CONFIG, true) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                // No implementation to stop background-tasks with Android.  Just say "success"
+                stop(callbackContext);
+            }
+        });
+        registerAction(ACTION_START_BACKGROUND_TASK, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                startBackgroundTask(callbackContext);
+            }
+        });
+        registerAction(ACTION_FINISH, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                stopBackgroundTask(data.getInt(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_ERROR, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                onError(data.getString(1));
+                callbackContext.success();
+            }
+        });
+        registerAction(ACTION_RESET, new Action(Dispatch.CONFIG, true) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                reset(data.getJSONObject(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_READY, new Action(Dispatch.CONFIG, true) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                ready(data.getJSONObject(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_CONFIGURE, new Action(Dispatch.CONFIG, true) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                configure(data.getJSONObject(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_REMOVE_LISTENERS, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                removeListeners(callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_REMOVE_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                removeListener(data.getString(0), data.getString(1), callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_LOCATION_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addLocationListener(optOptions(data), callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_CHANGE_PACE, new Action(Dispatch.CONFIG, true) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                TSConfig config = TSConfig.getInstance(cordova.getActivity().getApplicationContext());
+                if (!config.getEnabled()) {
+                    Log.w(TAG, "- Cannot change pace while disabled");
+                    callbackContext.error("Cannot #changePace while disabled");
+                } else {
+                    changePace(callbackContext, data);
+                }
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_SET_CONFIG, new Action(Dispatch.CONFIG) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                JSONObject options = data.optJSONObject(1);
+                setConfig(data.getJSONObject(0), (options != null) && options.optBoolean(FIELD_CHANGES), callbackContext);
+            }
+        });
+        registerAction(ACTION_GET_STATE, new Action(Dispatch.CONFIG) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                getState(data.optJSONObject(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_MOTION_CHANGE_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addMotionChangeListener(optOptions(data), callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_GET_LOCATIONS, new Action(Dispatch.LOCATION) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                getLocations(optOptions(data), callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_SYNC, new Action(Dispatch.LOCATION) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                sync(optOptions(data), callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_GET_ODOMETER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                getOdometer(callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_SET_ODOMETER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                setOdometer((float) data.getDouble(0), callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_ADD_GEOFENCE, new Action(Dispatch.GEOFENCE) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                addGeofence(callbackContext, data.getJSONObject(0));
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_ADD_GEOFENCES, new Action(Dispatch.GEOFENCE) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                addGeofences(callbackContext, data.getJSONArray(0));
+            }
+        });
+        registerAction(ACTION_IMPORT_GEOFENCES, new Action(Dispatch.GEOFENCE) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                JSONObject options = data.optJSONObject(1);
+                importGeofences(data.getJSONArray(0), (options != null) ? options : new JSONObject(), callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_REMOVE_GEOFENCE, new Action(Dispatch.GEOFENCE) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                removeGeofence(data.getString(0), callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_REMOVE_GEOFENCES, new Action(Dispatch.GEOFENCE) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                removeGeofences(data.getJSONArray(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_GEOFENCE_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addGeofenceListener(callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_GEOFENCESCHANGE_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addGeofencesChangeListener(callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_POWERSAVECHANGE_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addPowerSaveChangeListener(callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_CONNECTIVITYCHANGE_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addConnectivityChangeListener(callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_ENABLEDCHANGE_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addEnabledChangeListener(callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_NOTIFICATIONACTION_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addNotificationActionListener(callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_GET_GEOFENCES, new Action(Dispatch.GEOFENCE) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                getGeofences(callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_GET_GEOFENCE, new Action(Dispatch.GEOFENCE) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                getGeofence(data.getString(0), callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_GEOFENCE_EXISTS, new Action(Dispatch.GEOFENCE) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                geofenceExists(data.getString(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_GET_GEOFENCES_NEAR, new Action(Dispatch.GEOFENCE) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                getGeofencesNear(data.getDouble(0), data.getDouble(1), data.getDouble(2), data.optInt(3, 0), callbackContext);
+            }
+        });
+        registerAction(ACTION_GET_GEOFENCES_IN_BOUNDS, new Action(Dispatch.GEOFENCE) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                getGeofencesInBounds(data.getJSONObject(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_GET_GEOFENCES_SINCE, new Action(Dispatch.GEOFENCE) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                getGeofencesSince(data.optLong(0, 0), callbackContext);
+            }
+        });
+        registerAction(ACTION_PLAY_SOUND, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                getAdapter().startTone(data.getString(0));
+                callbackContext.success();
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_GET_CURRENT_POSITION, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                getCurrentPosition(callbackContext, data.getJSONObject(0));
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_WATCH_POSITION, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                watchPosition(callbackContext, data.getJSONObject(0));
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_STOP_WATCH_POSITION, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                stopWatchPosition((data.length() > 0 && !data.isNull(0)) ? data.optInt(0, -1) : -1, callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_START_BACKGROUND_TASK, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                // Android doesn't do background-tasks.  This is an iOS thing.  Just return a number.
+                callbackContext.success(1);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_DESTROY_LOCATIONS, new Action(Dispatch.LOCATION) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                destroyLocations(callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_DESTROY_LOCATION, new Action(Dispatch.LOCATION) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                destroyLocation(data.getString(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_DESTROY_LOCATIONS_BY_UUID, new Action(Dispatch.LOCATION) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                destroyLocations(data.getJSONArray(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_HTTP_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addHttpListener(callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_HEARTBEAT_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addHeartbeatListener(optOptions(data), callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_ACTIVITY_CHANGE_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addActivityChangeListener(callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_PROVIDER_CHANGE_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addProviderChangeListener(callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_SCHEDULE_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addScheduleListener(callbackContext);
+            }
+        });
+        registerAction(ACTION_ADD_AUTHORIZATION_LISTENER, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                addAuthorizationListener(callbackContext);
+            }
+        });
+        registerAction(ACTION_GET_LOG, new Action(Dispatch.LOG) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                getLog(data.getJSONObject(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_EMAIL_LOG, new Action(Dispatch.LOG) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                emailLog(data.getString(0), data.getJSONObject(1), callbackContext);
+            }
+        });
+        registerAction(TSLog.ACTION_UPLOAD_LOG, new Action(Dispatch.LOG) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                uploadLog(data.getString(0), data.getJSONObject(1), callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_INSERT_LOCATION, new Action(Dispatch.LOCATION) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                insertLocation(data.getJSONObject(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_GET_SYNC_DIAGNOSTICS, new Action(Dispatch.LOCATION) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                getSyncDiagnostics(callbackContext);
+            }
+        });
+        registerAction(ACTION_INSERT_LOCATIONS, new Action(Dispatch.LOCATION) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                insertLocations(data.getJSONArray(0), callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_GET_COUNT, new Action(Dispatch.LOCATION) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                getCount(callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_DESTROY_LOG, new Action(Dispatch.LOG) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                destroyLog(callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_GET_SENSORS, new Action(Dispatch.POOL) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                getSensors(callbackContext);
+            }
+        });
+        registerAction(DeviceInfo.ACTION_GET_DEVICE_INFO, new Action(Dispatch.POOL) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                getDeviceInfo(callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_IS_POWER_SAVE_MODE, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                isPowerSaveMode(callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_IS_IGNORING_BATTERY_OPTIMIZATIONS, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                isIgnoringBatteryOptimizations(callbackContext);
+            }
+        });
+        registerAction(ACTION_REQUEST_SETTINGS, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                requestSettings(data.getJSONObject(0), callbackContext);
+            }
+        });
+        registerAction(ACTION_SHOW_SETTINGS, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                showSettings(data.getJSONObject(0), callbackContext);
+            }
+        });
+        // Upon the LOG queue:  with the "block" overflow policy, a full buffer must not park the bridge thread.
+        registerAction(ACTION_LOG, new Action(Dispatch.LOG) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                log(data, callbackContext);
+            }
+        });
+        registerAction(ACTION_GET_LOG_STATS, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                callbackContext.success(AsyncLog.getInstance().toJson());
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_GET_PROVIDER_STATE, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                getProviderState(callbackContext);
+            }
+        });
+        registerAction(BackgroundGeolocation.ACTION_REQUEST_PERMISSION, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) {
+                requestPermission(callbackContext);
+            }
+        });
+        registerAction(ACTION_REQUEST_TEMPORARY_FULL_ACCURACY, new Action() {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                requestTemporaryFullAccuracy(data.getString(0), callbackContext);
+            }
+        });
+        registerAction(TransistorAuthorizationToken.ACTION_GET, new Action(Dispatch.POOL) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                getTransistorToken(data.getString(0), data.getString(1), data.getString(2), callbackContext);
+            }
+        });
+        registerAction(TransistorAuthorizationToken.ACTION_DESTROY, new Action(Dispatch.POOL) {
+            @Override public void execute(JSONArray data, CallbackContext callbackContext) throws JSONException {
+                destroyTransistorToken(data.getString(0), callbackContext);
+            }
+        });
+    }
+
+    /**
+     * Register an action handler by both its canonical name and lower-cased name (#execute matches case-insensitively).
+     * When two handlers share a name, the first one registered wins.
+     */
+    private void registerAction(String name, Action action) {
+        String key = name.toLowerCase(Locale.ENGLISH);
+        if (mActions.containsKey(key)) {
+            return;
+        }
+        mActions.put(key, action);
+        mActions.put(name, action);
     }
 
     private void reset(JSONObject params, CallbackContext callbackContext) throws JSONException {
         TSConfig config = TSConfig.getInstance(cordova.getActivity().getApplicationContext());
         config.reset();
+        applyPluginOptions(params, true);
         config.updateWithJSONObject(setHeadlessJobService(params));
-        callbackContext.success(config.toJson());
+        invalidateState();
+        replyState(callbackContext);
     }
     private void ready(final JSONObject params, final CallbackContext callbackContext) throws JSONException {
         final TSConfig config = TSConfig.getInstance(cordova.getActivity().getApplicationContext());
@@ -364,11 +717,11 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         }
         if (mReady) {
             if (reset) {
-                TSLog.logger.warn(TSLog.warn("#ready already called.  Redirecting to #setConfig"));
-                setConfig(params, callbackContext);
+                AsyncLog.warn(TSLog.warn("#ready already called.  Redirecting to #setConfig"));
+                setConfig(params, false, callbackContext);
             } else {
-                TSLog.logger.warn(TSLog.warn("#ready already called.  Ignored"));
-                callbackContext.success(config.toJson());
+                AsyncLog.warn(TSLog.warn("#ready already called.  Ignored"));
+                replyState(callbackContext);
             }
             return;
         }
@@ -377,10 +730,12 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
 
 
         if (config.isFirstBoot()) {
+            applyPluginOptions(params, true);
             config.updateWithJSONObject(setHeadlessJobService(params));
         } else {
             if (reset) {
                 config.reset();
+                applyPluginOptions(params, true);
                 config.updateWithJSONObject(setHeadlessJobService(params));
             } else if (params.has(TSAuthorization.NAME)) {
                 JSONObject options = params.getJSONObject(TSAuthorization.NAME);
@@ -391,7 +746,8 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         }
         adapter.ready(new TSCallback() {
             @Override public void onSuccess() {
-                callbackContext.success(config.toJson());
+                invalidateState();
+                replyState(callbackContext);
             }
             @Override public void onFailure(String error) {
                 callbackContext.error(error);
@@ -401,11 +757,13 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
     private void configure(final JSONObject params, final CallbackContext callbackContext) throws JSONException {
         final TSConfig config = TSConfig.getInstance(cordova.getActivity().getApplicationContext());
         config.reset();
+        applyPluginOptions(params, true);
         config.updateWithJSONObject(setHeadlessJobService(params));
 
         getAdapter().ready(new TSCallback() {
             @Override public void onSuccess() {
-                callbackContext.success(config.toJson());
+                invalidateState();
+                replyState(callbackContext);
             }
             @Override public void onFailure(String error) {
                 callbackContext.error(error);
@@ -414,10 +772,10 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
     }
 
     private void start(final CallbackContext callbackContext) {
-        final TSConfig config = TSConfig.getInstance(cordova.getActivity().getApplicationContext());
         getAdapter().start(new TSCallback() {
             @Override public void onSuccess() {
-                callbackContext.success(config.toJson());
+                invalidateState();
+                replyState(callbackContext);
             }
             @Override public void onFailure(String error) {
                 callbackContext.error(error);
@@ -443,7 +801,11 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         public StartGeofencesCallback(CallbackContext callbackContext) {
             mCallbackContext = callbackContext;
         }
-        @Override public void onSuccess() { mCallbackContext.success(TSConfig.getInstance(cordova.getActivity().getApplicationContext()).toJson()); }
+        @Override public void onSuccess() {
+            // trackingMode changed.
+            invalidateState();
+            replyState(mCallbackContext);
+        }
         @Override public void onFailure(String error) {
             mCallbackContext.error(error);
         }
@@ -463,7 +825,10 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         public StopCallback(CallbackContext callback) {
             mCallbackContext = callback;
         }
-        @Override public void onSuccess() { mCallbackContext.success(TSConfig.getInstance(cordova.getActivity().getApplicationContext()).toJson()); }
+        @Override public void onSuccess() {
+            invalidateState();
+            replyState(mCallbackContext);
+        }
         @Override public void onFailure(String error) {
             mCallbackContext.error(error);
         }
@@ -478,21 +843,26 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         });
     }
 
-    private void getLocations(final CallbackContext callbackContext) {
+    private void getLocations(JSONObject options, final CallbackContext callbackContext) throws JSONException {
+        if (options.has(FIELD_CURSOR)) {
+            sendLocationPage(options.getString(FIELD_CURSOR), callbackContext);
+            return;
+        }
+        final int pageSize = options.optInt(FIELD_PAGE_SIZE, 0);
+        if (pageSize > 0) {
+            // Paged at the query:  only the current page is read.
+            Context context = cordova.getActivity().getApplicationContext();
+            boolean descending = SQL_ORDER_DESC.equalsIgnoreCase(TSConfig.getInstance(context).getLocationsOrderDirection());
+            try {
+                openLocationCursor(new LocationCursor(descending, LocationStore.count(context), pageSize), callbackContext);
+            } catch (SQLiteException e) {
+                callbackContext.error(e.getMessage());
+            }
+            return;
+        }
         getAdapter().getLocations(new TSGetLocationsCallback() {
             @Override public void onSuccess(List<LocationModel> locations) {
-                try {
-                    JSONArray data = new JSONArray();
-                    for (LocationModel location : locations) {
-                        data.put(location.json);
-                    }
-                    JSONObject params = new JSONObject();
-                    params.put("locations", data);
-                    callbackContext.success(params);
-                } catch (JSONException e) {
-                    callbackContext.error(e.getMessage());
-                    e.printStackTrace();
-                }
+                sendLocations(locations, pageSize, callbackContext);
             }
             @Override public void onFailure(Integer error) {
                 callbackContext.error(error);
@@ -511,21 +881,19 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         });
     }
 
-    private void sync(final CallbackContext callbackContext) {
+    private void sync(JSONObject options, final CallbackContext callbackContext) throws JSONException {
+        if (options.has(FIELD_CURSOR)) {
+            sendLocationPage(options.getString(FIELD_CURSOR), callbackContext);
+            return;
+        }
+        final int pageSize = options.optInt(FIELD_PAGE_SIZE, 0);
+        if (CompactSync.ENCODING_COMPACT.equals(getPreferences().getString(CompactSync.FIELD_SYNC_ENCODING, null)) && compactSync(pageSize, callbackContext)) {
+            return;
+        }
+        // The SDK times the whole sync, not its requests:  the adaptive batch size only learns its failures, from the HTTP listener.
         getAdapter().sync(new TSSyncCallback() {
             @Override public void onSuccess(List<LocationModel> records) {
-                try {
-                    JSONArray data = new JSONArray();
-                    for (LocationModel location : records) {
-                        data.put(location.json);
-                    }
-                    JSONObject params = new JSONObject();
-                    params.put("locations", data);
-                    callbackContext.success(params);
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                    callbackContext.error(e.getMessage());
-                }
+                sendLocations(records, pageSize, callbackContext);
             }
             @Override public void onFailure(String error) {
                 callbackContext.error(error);
@@ -533,79 +901,389 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         });
     }
 
-    private void getCurrentPosition(final CallbackContext callbackContext, JSONObject options) throws JSONException {
-        TSCurrentPositionRequest.Builder builder = new TSCurrentPositionRequest.Builder(cordova.getActivity().getApplicationContext());
+    /**
+     * #sync with Config.syncEncoding "compact":  upload the location database ourselves in CompactSync-encoded batches of
+     * Config.maxBatchSize (all records when unlimited;  one record per request with batchSync: false), in the order of
+     * Config.locationsOrderDirection.  Uploads are pipelined:  the next batch is encoded while up to Config.syncConcurrency
+     * batches are in flight.  Batches are acknowledged (destroyed) in the order they were read.  Blocks the LOCATION queue.
+     *
+     * Each batch is read from the database as it's encoded (LocationStore), following the last record read.  The SDK's record
+     * locking isn't public, so the records are read unlocked.  Hence the compact encoding is refused with autoSync, whose uploads could send the same records.  Returns false when the
+     * compact encoding can't apply (autoSync, Config.locationTemplate) and the SDK's #sync should be used instead.
+     */
+    private boolean compactSync(int pageSize, CallbackContext callbackContext) throws JSONException {
+        final Context context = cordova.getActivity().getApplicationContext();
+        final TSConfig config = TSConfig.getInstance(context);
+        if (config.getLocationTemplate() != null && !config.getLocationTemplate().isEmpty()) {
+            AsyncLog.warn(TSLog.warn("syncEncoding: compact ignored with locationTemplate"));
+            return false;
+        }
+        if (Boolean.TRUE.equals(config.getAutoSync())) {
+            AsyncLog.warn(TSLog.warn("syncEncoding: compact ignored with autoSync:  requires autoSync: false"));
+            return false;
+        }
+        if (config.getUrl() == null || config.getUrl().isEmpty()) {
+            callbackContext.error("No url configured");
+            return true;
+        }
+        compactSync(context, config, pageSize, callbackContext);
+        return true;
+    }
 
-        builder.setCallback(new TSLocationCallback() {
-            @Override public void onLocation(TSLocation location) {
-                try {
-                    callbackContext.success(location.toJson());
-                } catch (JSONException e) {
-                    TSLog.logger.error(e.getMessage(), e);
+    private void compactSync(final Context context, final TSConfig config, int pageSize, CallbackContext callbackContext) throws JSONException {
+        boolean descending = SQL_ORDER_DESC.equalsIgnoreCase(config.getLocationsOrderDirection());
+        boolean batchSync = !Boolean.FALSE.equals(config.getBatchSync());
+        AdaptiveBatchController controller = batchSync ? getBatchController() : null;
+        int batchSize;
+        try {
+            batchSize = !batchSync ? 1 : (config.getMaxBatchSize() != null && config.getMaxBatchSize() > 0) ? config.getMaxBatchSize() : Math.max(1, LocationStore.count(context));
+        } catch (SQLiteException e) {
+            callbackContext.error(e.getMessage());
+            return;
+        }
+        int concurrency = Math.max(1, Math.min(CompactSync.MAX_SYNC_CONCURRENCY, getPreferences().getInt(CompactSync.FIELD_SYNC_CONCURRENCY, 1)));
+        final Semaphore slots = new Semaphore(concurrency);
+        LinkedList<CompactUpload> pending = new LinkedList<CompactUpload>();
+        List<LocationModel> synced = new ArrayList<LocationModel>();
+        String error = null;
+
+        long lastId = 0;
+        while (error == null) {
+            if (controller != null) {
+                batchSize = controller.getBatchSize();
+            }
+            List<LocationModel> records;
+            try {
+                records = LocationStore.read(context, lastId, descending, batchSize);
+            } catch (SQLiteException e) {
+                error = e.getMessage();
+                break;
+            }
+            if (records.isEmpty()) {
+                break;
+            }
+            lastId = records.get(records.size() - 1).getId();
+            final CompactUpload upload = new CompactUpload();
+            List<JSONObject> json = new ArrayList<JSONObject>();
+            for (LocationModel record : records) {
+                JSONObject location = CompactSync.parse(record);
+                if (location != null) {
+                    upload.records.add(record);
+                    json.add(location);
                 }
             }
-            @Override public void onError(Integer error) { callbackContext.error(error); }
-        });
-
-        if (options.has("samples"))         { builder.setSamples(options.getInt("samples")); }
-        if (options.has("extras"))          { builder.setExtras(options.getJSONObject("extras")); }
-        if (options.has("persist"))         { builder.setPersist(options.getBoolean("persist")); }
-        if (options.has("timeout"))         { builder.setTimeout(options.getInt("timeout")); }
-        if (options.has("maximumAge"))      { builder.setMaximumAge(options.getLong("maximumAge")); }
-        if (options.has("desiredAccuracy")) { builder.setDesiredAccuracy(options.getInt("desiredAccuracy")); }
-
-        getAdapter().getCurrentPosition(builder.build());
+            if (upload.records.isEmpty()) { continue; }
+            try {
+                // Encode while the previous batches are in flight.
+                upload.body = CompactSync.encode(json, config.getParams(), config.getHttpRootProperty());
+            } catch (IOException e) {
+                AsyncLog.error(TSLog.error(e.getMessage()), e);
+                error = e.getMessage();
+                break;
+            }
+            slots.acquireUninterruptibly();
+            try {
+                upload.future = getExecutor(Dispatch.UPLOAD).submit(new Callable<Integer>() {
+                    @Override public Integer call() throws IOException {
+                        try {
+                            upload.startedAt = System.currentTimeMillis();
+                            int status = CompactSync.post(context, config, upload.body, new Runnable() {
+                                @Override public void run() {
+                                    // The authorization token is part of the State.
+                                    invalidateState();
+                                }
+                            });
+                            upload.elapsed = System.currentTimeMillis() - upload.startedAt;
+                            return status;
+                        } finally {
+                            slots.release();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Plugin destroyed.
+                slots.release();
+                error = e.getMessage();
+                break;
+            }
+            pending.add(upload);
+            error = acknowledgeUploads(pending, false, synced, controller, null);
+        }
+        error = acknowledgeUploads(pending, true, synced, controller, error);
+        if (error != null) {
+            callbackContext.error(error);
+            return;
+        }
+        sendLocations(synced, pageSize, callbackContext);
     }
 
-    private void watchPosition(final CallbackContext callbackContext, final JSONObject options) throws JSONException {
-        Context context = cordova.getActivity().getApplicationContext();
+    /**
+     * Acknowledge the completed uploads at the head of pending, in order:  destroy the records of each accepted batch.  With wait,
+     * block until all are complete.  #sync stops at the first failure (error, when one occurred already):  batches after it, already
+     * in flight, are left in the database even when accepted, to be re-sent by the next #sync, just as if they hadn't been sent.
+     * Returns the first error, if any.
+     */
+    private String acknowledgeUploads(LinkedList<CompactUpload> pending, boolean wait, List<LocationModel> synced, AdaptiveBatchController controller, String error) {
+        while (!pending.isEmpty() && (wait || pending.getFirst().future.isDone())) {
+            CompactUpload upload = pending.removeFirst();
+            int status;
+            try {
+                status = upload.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                status = 0;
+            } catch (ExecutionException e) {
+                Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+                AsyncLog.error(TSLog.error(cause.getMessage()), cause);
+                if (controller != null) {
+                    applyBatchSize(controller.onFailure());
+                }
+                if (error == null) {
+                    error = cause.getMessage();
+                }
+                continue;
+            }
+            boolean success = (status >= 200 && status < 300);
+            if (controller != null) {
+                applyBatchSize(controller.onBatch(upload.records.size(), upload.body.length, upload.elapsed, success));
+            }
+            if (success && error == null) {
+                destroyLocationRecords(upload.records);
+                synced.addAll(upload.records);
+            } else if (!success && error == null) {
+                error = "HTTP " + status;
+            }
+        }
+        return error;
+    }
 
-        TSWatchPositionRequest.Builder builder = new TSWatchPositionRequest.Builder(context);
+    /**
+     * A CompactSync batch in flight.
+     */
+    private static class CompactUpload {
+        final List<LocationModel> records = new ArrayList<LocationModel>();
+        byte[] body;
+        Future<Integer> future;
+        volatile long startedAt;
+        volatile long elapsed;
+    }
 
-        builder.setCallback(new TSLocationCallback() {
-            @Override public void onLocation(TSLocation location) {
-                try {
-                    PluginResult result = new PluginResult(PluginResult.Status.OK, location.toJson());
-                    result.setKeepCallback(true);
-                    callbackContext.sendPluginResult(result);
-                } catch (JSONException e) {
-                    TSLog.logger.debug(e.getMessage(), e);
+    /**
+     * The AdaptiveBatchController when Config.adaptiveBatchSize is enabled, otherwise null.
+     */
+    private synchronized AdaptiveBatchController getBatchController() {
+        if (batchController == null) {
+            String options = getPreferences().getString(AdaptiveBatchController.FIELD_ADAPTIVE_BATCH_SIZE, null);
+            if (options == null) {
+                return null;
+            }
+            Integer maxBatchSize = TSConfig.getInstance(cordova.getActivity().getApplicationContext()).getMaxBatchSize();
+            try {
+                batchController = new AdaptiveBatchController(new JSONObject(options), (maxBatchSize != null) ? maxBatchSize : -1);
+            } catch (JSONException e) {
+                AsyncLog.error(TSLog.error(e.getMessage()), e);
+                return null;
+            }
+        }
+        return batchController;
+    }
+
+    private void applyBatchSize(int batchSize) {
+        TSConfig config = TSConfig.getInstance(cordova.getActivity().getApplicationContext());
+        if (config.getMaxBatchSize() == null || config.getMaxBatchSize() != batchSize) {
+            config.updateWithBuilder().setMaxBatchSize(batchSize).commit();
+            // maxBatchSize is part of the State.
+            invalidateState();
+        }
+    }
+
+    /**
+     * Failed SDK uploads (autoSync and #sync) shrink the adaptive batch size.  The SDK doesn't time its requests, so only the
+     * compact #sync, which times each POST itself, reports successful batches to the controller.
+     */
+    private void addBatchControllerHttpListener() {
+        getAdapter().onHttp(new TSHttpResponseCallback() {
+            @Override public void onHttpResponse(HttpResponse response) {
+                if (response.isSuccess()) {
+                    return;
+                }
+                AdaptiveBatchController controller = getBatchController();
+                if (controller != null && (response.status == 0 || response.status == 408 || response.status == 429 || response.status >= 500)) {
+                    applyBatchSize(controller.onFailure());
                 }
             }
-            @Override public void onError(Integer error) { callbackContext.error(error); }
         });
+    }
 
-        if (options.has("interval"))        { builder.setInterval(options.getLong("interval")); }
-        if (options.has("extras"))          { builder.setExtras(options.getJSONObject("extras")); }
-        if (options.has("persist"))         { builder.setPersist(options.getBoolean("persist")); }
-        if (options.has("desiredAccuracy")) { builder.setDesiredAccuracy(options.getInt("desiredAccuracy")); }
+    private void getSyncDiagnostics(CallbackContext callbackContext) throws JSONException {
+        AdaptiveBatchController controller = getBatchController();
+        JSONObject result = new JSONObject();
+        result.put("enabled", controller != null);
+        if (controller != null) {
+            result.put("controller", controller.toJson());
+        }
+        Integer maxBatchSize = TSConfig.getInstance(cordova.getActivity().getApplicationContext()).getMaxBatchSize();
+        result.put("maxBatchSize", (maxBatchSize != null) ? maxBatchSize : -1);
+        result.put("smoothing", getLocationFilter().toJson());
+        result.put("simplifier", HeadlessRules.getInstance(cordova.getActivity().getApplicationContext()).getSimplifier().toJson());
+        callbackContext.success(result);
+    }
+
+    private void destroyLocationRecords(List<LocationModel> records) {
+        final CountDownLatch latch = new CountDownLatch(records.size());
+        for (LocationModel record : records) {
+            getAdapter().destroyLocation(record.getUUID(), new TSCallback() {
+                @Override public void onSuccess() { latch.countDown(); }
+                @Override public void onFailure(String error) {
+                    AsyncLog.warn(TSLog.warn("Failed to destroy synced location: " + error));
+                    latch.countDown();
+                }
+            });
+        }
+        awaitLocationBatch(latch);
+    }
+
+    /**
+     * Send records from #getLocations / #sync.  With a pageSize, only the first page is sent:  the remaining records
+     * are parked in a cursor and drained by subsequent calls providing {cursor: id}, keeping each bridge message bounded.
+     * Used for #sync's records, which no longer exist in the database;  #getLocations {pageSize} reads its pages from the database.
+     */
+    private void sendLocations(List<LocationModel> records, int pageSize, CallbackContext callbackContext) {
+        if (pageSize <= 0) {
+            try {
+                JSONArray data = new JSONArray();
+                for (LocationModel location : records) {
+                    data.put(location.json);
+                }
+                JSONObject params = new JSONObject();
+                params.put("locations", data);
+                callbackContext.success(params);
+            } catch (JSONException e) {
+                callbackContext.error(e.getMessage());
+                e.printStackTrace();
+            }
+            return;
+        }
+        openLocationCursor(new LocationCursor(records, pageSize), callbackContext);
+    }
 
-        watchPositionCallbacks.add(callbackContext);
-        getAdapter().watchPosition(builder.build());
+    private void openLocationCursor(LocationCursor cursor, CallbackContext callbackContext) {
+        String cursorId = String.valueOf(locationCursorSeq.incrementAndGet());
+        synchronized (locationCursors) {
+            if (locationCursors.size() >= MAX_LOCATION_CURSORS) {
+                // Evict the oldest abandoned cursor.
+                Iterator<String> iterator = locationCursors.keySet().iterator();
+                AsyncLog.warn(TSLog.warn("Discarding un-drained location cursor: " + iterator.next()));
+                iterator.remove();
+            }
+            locationCursors.put(cursorId, cursor);
+        }
+        sendLocationPage(cursorId, callbackContext);
     }
 
-    private void stopWatchPosition(final CallbackContext callbackContext) {
-        getAdapter().stopWatchPosition(new TSCallback() {
-            @Override public void onSuccess() {
-                JSONArray callbackIds = new JSONArray();
-                Iterator<CallbackContext> iterator = watchPositionCallbacks.iterator();
-                while (iterator.hasNext()) {
-                    CallbackContext cb = iterator.next();
-                    callbackIds.put(cb.getCallbackId());
-                    iterator.remove();
+    private void sendLocationPage(String cursorId, CallbackContext callbackContext) {
+        LocationCursor cursor;
+        synchronized (locationCursors) {
+            cursor = locationCursors.get(cursorId);
+        }
+        if (cursor == null) {
+            callbackContext.error("Unknown or expired cursor: " + cursorId);
+            return;
+        }
+        try {
+            JSONObject params = new JSONObject();
+            synchronized (cursor) {
+                JSONArray data = new JSONArray();
+                boolean more;
+                if (cursor.records == null) {
+                    // One record beyond the page tells whether another follows.
+                    List<LocationModel> page = LocationStore.read(cordova.getActivity().getApplicationContext(), cursor.lastId, cursor.descending, cursor.pageSize + 1);
+                    more = page.size() > cursor.pageSize;
+                    int end = Math.min(page.size(), cursor.pageSize);
+                    for (int i = 0; i < end; i++) {
+                        data.put(page.get(i).json);
+                    }
+                    if (end > 0) {
+                        cursor.lastId = page.get(end - 1).getId();
+                    }
+                } else {
+                    int end = Math.min(cursor.offset + cursor.pageSize, cursor.total);
+                    for (int i = cursor.offset; i < end; i++) {
+                        data.put(cursor.records.get(i).json);
+                        // Release delivered records as we go.
+                        cursor.records.set(i, null);
+                    }
+                    cursor.offset = end;
+                    more = end < cursor.total;
+                }
+                params.put("locations", data);
+                params.put("total", cursor.total);
+                if (more) {
+                    params.put(FIELD_CURSOR, cursorId);
+                } else {
+                    params.put(FIELD_CURSOR, JSONObject.NULL);
+                    synchronized (locationCursors) {
+                        locationCursors.remove(cursorId);
+                    }
                 }
-                callbackContext.success(callbackIds);
             }
-            @Override public void onFailure(String error) {
-                callbackContext.error(error);
+            callbackContext.success(params);
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+            e.printStackTrace();
+        } catch (SQLiteException e) {
+            callbackContext.error(e.getMessage());
+        }
+    }
+
+    private void getCurrentPosition(final CallbackContext callbackContext, JSONObject options) throws JSONException {
+        // Answered from a recent fix (maximumAge), or joined to a compatible request in flight?
+        final PositionCoalescer.Session session = positionCoalescer.acquire(options, callbackContext, getBatchScheduler());
+        if (session == null) {
+            return;
+        }
+        TSCurrentPositionRequest.Builder builder = new TSCurrentPositionRequest.Builder(cordova.getActivity().getApplicationContext());
+
+        builder.setCallback(new TSLocationCallback() {
+            @Override public void onLocation(TSLocation location) {
+                positionCoalescer.complete(session, location, getLocationFilter());
+            }
+            @Override public void onError(Integer error) {
+                positionCoalescer.fail(session, error);
             }
         });
+
+        if (options.has("samples"))         { builder.setSamples(options.getInt("samples")); }
+        if (options.has("extras"))          { builder.setExtras(options.getJSONObject("extras")); }
+        if (options.has("persist"))         { builder.setPersist(options.getBoolean("persist")); }
+        if (options.has("timeout"))         { builder.setTimeout(options.getInt("timeout")); }
+        if (options.has("maximumAge"))      { builder.setMaximumAge(options.getLong("maximumAge")); }
+        if (options.has("desiredAccuracy")) { builder.setDesiredAccuracy(options.getInt("desiredAccuracy")); }
+
+        getAdapter().getCurrentPosition(builder.build());
+    }
+
+    private void watchPosition(final CallbackContext callbackContext, final JSONObject options) throws JSONException {
+        Context context = cordova.getActivity().getApplicationContext();
+        watchMultiplexer.add(getAdapter(), context, callbackContext, options);
+    }
+
+    /**
+     * @param watchId the id returned by Javascript #watchPosition, or -1 to stop all watches.
+     */
+    private void stopWatchPosition(int watchId, final CallbackContext callbackContext) {
+        Context context = cordova.getActivity().getApplicationContext();
+        callbackContext.success(watchMultiplexer.remove(getAdapter(), context, watchId));
     }
 
     private void addGeofence(final CallbackContext callbackContext, JSONObject config) {
         try {
-            getAdapter().addGeofence(buildGeofence(config), new TSCallback() {
-                @Override public void onSuccess() { callbackContext.success(); }
+            final TSGeofence geofence = buildGeofence(config);
+            getAdapter().addGeofence(geofence, new TSCallback() {
+                @Override public void onSuccess() {
+                    geofenceIndex.put(geofence);
+                    callbackContext.success();
+                }
                 @Override public void onFailure(String error) { callbackContext.error(error); }
             });
         } catch(JSONException | TSGeofence.Exception e) {
@@ -614,7 +1292,7 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
     }
 
     private void addGeofences(final CallbackContext callbackContext, JSONArray data) {
-        List<TSGeofence> geofences = new ArrayList<TSGeofence>();
+        final List<TSGeofence> geofences = new ArrayList<TSGeofence>();
         for (int i = 0; i < data.length(); i++) {
             try {
                 geofences.add(buildGeofence(data.getJSONObject(i)));
@@ -625,6 +1303,7 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         }
         getAdapter().addGeofences(geofences, new TSCallback() {
             @Override public void onSuccess() {
+                geofenceIndex.putAll(geofences);
                 callbackContext.success();
             }
             @Override public void onFailure(String error) {
@@ -633,6 +1312,142 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         });
     }
 
+    /**
+     * Bulk geofence import.  Geofences are parsed in parallel upon the worker pool and committed to the adapter in
+     * chunks of options.chunkSize.  A bad geofence rejects only itself.  After each chunk, a progress event
+     * {type:"progress", total, processed, accepted, rejected} is sent.  The final event is
+     * {type:"complete", total, accepted, rejected, results:[{index, identifier, accepted, error}]}.
+     * Runs upon the serial GEOFENCE queue, so it may block while each chunk is committed.
+     */
+    private void importGeofences(final JSONArray data, JSONObject options, final CallbackContext callbackContext) {
+        int total = data.length();
+        int chunkSize = options.optInt(FIELD_CHUNK_SIZE, DEFAULT_IMPORT_CHUNK_SIZE);
+        if (chunkSize <= 0) {
+            chunkSize = DEFAULT_IMPORT_CHUNK_SIZE;
+        }
+        final TSGeofence[] geofences = new TSGeofence[total];
+        final String[] errors = new String[total];
+        Set<String> identifiers = new HashSet<String>();
+        int accepted = 0;
+        int rejected = 0;
+
+        try {
+            for (int start = 0; start < total; start += chunkSize) {
+                int end = Math.min(start + chunkSize, total);
+                parseGeofences(data, start, end, geofences, errors);
+
+                List<TSGeofence> chunk = new ArrayList<TSGeofence>();
+                List<Integer> indexes = new ArrayList<Integer>();
+                for (int i = start; i < end; i++) {
+                    if (geofences[i] == null) { continue; }
+                    if (!identifiers.add(geofences[i].getIdentifier())) {
+                        errors[i] = "Duplicate identifier: " + geofences[i].getIdentifier();
+                        geofences[i] = null;
+                        continue;
+                    }
+                    chunk.add(geofences[i]);
+                    indexes.add(i);
+                }
+                if (!chunk.isEmpty()) {
+                    String error = commitGeofences(chunk);
+                    if (error != null) {
+                        for (Integer i : indexes) {
+                            errors[i] = error;
+                            geofences[i] = null;
+                        }
+                    }
+                }
+                for (int i = start; i < end; i++) {
+                    if (errors[i] == null) { accepted++; } else { rejected++; }
+                }
+                if (end < total) {
+                    JSONObject progress = new JSONObject();
+                    progress.put("type", "progress");
+                    progress.put("total", total);
+                    progress.put("processed", end);
+                    progress.put("accepted", accepted);
+                    progress.put("rejected", rejected);
+                    PluginResult result = new PluginResult(PluginResult.Status.OK, progress);
+                    result.setKeepCallback(true);
+                    callbackContext.sendPluginResult(result);
+                }
+            }
+
+            JSONArray results = new JSONArray();
+            for (int i = 0; i < total; i++) {
+                JSONObject item = new JSONObject();
+                item.put("index", i);
+                JSONObject config = data.optJSONObject(i);
+                item.put("identifier", (config != null) ? config.opt("identifier") : JSONObject.NULL);
+                item.put("accepted", errors[i] == null);
+                if (errors[i] != null) {
+                    item.put("error", errors[i]);
+                }
+                results.put(item);
+            }
+            JSONObject response = new JSONObject();
+            response.put("type", "complete");
+            response.put("total", total);
+            response.put("accepted", accepted);
+            response.put("rejected", rejected);
+            response.put("results", results);
+            callbackContext.success(response);
+        } catch (JSONException e) {
+            AsyncLog.error(e.getMessage(), e);
+            callbackContext.error(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            callbackContext.error("importGeofences interrupted");
+        }
+    }
+
+    /**
+     * Build geofences [start, end) of data in parallel upon the worker pool, recording each failure in errors.
+     */
+    private void parseGeofences(final JSONArray data, int start, int end, final TSGeofence[] geofences, final String[] errors) throws InterruptedException {
+        int slice = Math.max(1, (end - start + POOL_SIZE - 1) / POOL_SIZE);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int from = start; from < end; from += slice) {
+            final int lo = from;
+            final int hi = Math.min(from + slice, end);
+            tasks.add(new Callable<Void>() {
+                @Override public Void call() {
+                    for (int i = lo; i < hi; i++) {
+                        try {
+                            geofences[i] = buildGeofence(data.getJSONObject(i));
+                        } catch (JSONException | TSGeofence.Exception e) {
+                            errors[i] = e.getMessage();
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        getExecutor(Dispatch.POOL).invokeAll(tasks);
+    }
+
+    /**
+     * Commit one chunk of geofences to the adapter, blocking until done.  Returns an error message or null.
+     */
+    private String commitGeofences(final List<TSGeofence> chunk) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final String[] error = new String[1];
+        getAdapter().addGeofences(chunk, new TSCallback() {
+            @Override public void onSuccess() {
+                geofenceIndex.putAll(chunk);
+                latch.countDown();
+            }
+            @Override public void onFailure(String message) {
+                error[0] = message;
+                latch.countDown();
+            }
+        });
+        if (!latch.await(GEOFENCE_STORE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            return "Timeout committing geofences";
+        }
+        return error[0];
+    }
+
     private TSGeofence buildGeofence(JSONObject config) throws JSONException, TSGeofence.Exception {
         TSGeofence.Builder builder = new TSGeofence.Builder();
         if (config.has("identifier"))       { builder.setIdentifier(config.getString("identifier")); }
@@ -662,6 +1477,77 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         });
     }
 
+    /**
+     * Geofences whose circle lies within radius meters of the given point, nearest first.  Each carries its
+     * "distance" in meters from the point to its center.  limit <= 0 means no limit.
+     */
+    private void getGeofencesNear(double latitude, double longitude, double radius, int limit, CallbackContext callbackContext) throws JSONException {
+        if (!loadGeofenceIndex(callbackContext)) { return; }
+        JSONArray data = new JSONArray();
+        for (GeofenceIndex.Match match : geofenceIndex.near(latitude, longitude, radius, limit)) {
+            JSONObject json = match.geofence.toJson();
+            json.put("distance", match.distance);
+            data.put(json);
+        }
+        callbackContext.success(data);
+    }
+
+    /**
+     * Geofences whose circle intersects the bounding-box {north, south, east, west}.
+     */
+    private void getGeofencesInBounds(JSONObject bounds, CallbackContext callbackContext) throws JSONException {
+        if (!loadGeofenceIndex(callbackContext)) { return; }
+        JSONArray data = new JSONArray();
+        for (TSGeofence geofence : geofenceIndex.inBounds(bounds.getDouble("south"), bounds.getDouble("west"), bounds.getDouble("north"), bounds.getDouble("east"))) {
+            data.put(geofence.toJson());
+        }
+        callbackContext.success(data);
+    }
+
+    /**
+     * Changes to the geofence store after the given revision:  {revision, reset, added, modified, removed}.
+     * added / modified are geofences; removed are identifiers.  reset:true means the revision is unknown (eg: from
+     * a previous launch) and added holds every geofence:  the client should replace its mirror.
+     */
+    private void getGeofencesSince(long revision, CallbackContext callbackContext) throws JSONException {
+        if (!loadGeofenceIndex(callbackContext)) { return; }
+        callbackContext.success(geofenceIndex.since(revision));
+    }
+
+    /**
+     * Populate the GeofenceIndex from the geofence store on first use.  Blocks the GEOFENCE queue until loaded.
+     * Returns false (after reporting the error) when the store could not be read.
+     */
+    private boolean loadGeofenceIndex(CallbackContext callbackContext) {
+        if (geofenceIndex.isLoaded()) { return true; }
+        final long revision = geofenceIndex.getRevision();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final String[] error = new String[1];
+        getAdapter().getGeofences(new TSGetGeofencesCallback() {
+            @Override public void onSuccess(List<TSGeofence> geofences) {
+                geofenceIndex.load(geofences, revision);
+                latch.countDown();
+            }
+            @Override public void onFailure(String message) {
+                error[0] = message;
+                latch.countDown();
+            }
+        });
+        try {
+            if (!latch.await(GEOFENCE_STORE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                error[0] = "Timeout loading geofences";
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error[0] = "Interrupted loading geofences";
+        }
+        if (error[0] != null) {
+            callbackContext.error(error[0]);
+            return false;
+        }
+        return true;
+    }
+
     private void getGeofence(String identifier, final CallbackContext callbackContext) {
         getAdapter().getGeofence(identifier, new TSGetGeofenceCallback() {
             @Override public void onSuccess(TSGeofence geofence) {
@@ -682,17 +1568,24 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
     }
 
     private void getOdometer(CallbackContext callbackContext) {
-        PluginResult result = new PluginResult(PluginResult.Status.OK, getAdapter().getOdometer());
+        LocationFilter filter = getLocationFilter();
+        PluginResult result = filter.isEnabled()
+                ? new PluginResult(PluginResult.Status.OK, (float) filter.getOdometer())
+                : new PluginResult(PluginResult.Status.OK, getAdapter().getOdometer());
         callbackContext.sendPluginResult(result);
     }
 
     private void setOdometer(Float value, final CallbackContext callbackContext) {
+        getLocationFilter().setOdometer(value);
         getAdapter().setOdometer(value, new TSLocationCallback() {
             @Override public void onLocation(TSLocation location) {
+                invalidateState();
                 try {
-                    callbackContext.success(location.toJson());
+                    JSONObject json = location.toJson();
+                    getLocationFilter().apply(location, json);
+                    callbackContext.success(json);
                 } catch (JSONException e) {
-                    TSLog.logger.error(e.getMessage(), e);
+                    AsyncLog.error(e.getMessage(), e);
                 }
             }
             @Override public void onError(Integer error) {
@@ -715,27 +1608,26 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
     }
 
     private void removeListener(String event, String callbackId, CallbackContext callbackContext) {
-        Iterator<CordovaCallback> iterator = cordovaCallbacks.iterator();
-        CordovaCallback found = null;
-        while (iterator.hasNext() && (found == null)) {
-            CordovaCallback cordovaCallback = iterator.next();
-            if (cordovaCallback.callbackId.equalsIgnoreCase(callbackId)) {
-                found = cordovaCallback;
-            }
-        }
+        CordovaCallback found = cordovaCallbacks.remove(callbackId);
         if (found != null) {
-            cordovaCallbacks.remove(found);
-            getAdapter().removeListener(event, found.callback);
+            // A shared native listener is removed only once its last Javascript listener is gone.
+            if ((found.fanout == null) || found.fanout.remove(found.callbackId)) {
+                getAdapter().removeListener(found.event, found.callback);
+            }
             callbackContext.success();
         } else {
-            TSLog.logger.warn(TSLog.warn("Failed to find listener for event: " + event));
+            AsyncLog.warn(TSLog.warn("Failed to find listener for event: " + event));
             callbackContext.error(404);
         }
     }
 
     private void removeListeners(CallbackContext callbackContext) {
         getAdapter().removeListeners();
+        addBatchControllerHttpListener();
+        addStateListeners();
         cordovaCallbacks.clear();
+        locationFanout.clear();
+        motionChangeFanout.clear();
         callbackContext.success();
     }
 
@@ -747,7 +1639,7 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
                 callbackContext.sendPluginResult(result);
             }
         };
-        registerCallback(callbackContext, callback);
+        registerCallback(BackgroundGeolocation.EVENT_GEOFENCE, callbackContext, callback);
         getAdapter().onGeofence(callback);
     }
 
@@ -760,7 +1652,7 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
                 callbackContext.sendPluginResult(result);
             }
         };
-        registerCallback(callbackContext, callback);
+        registerCallback(BackgroundGeolocation.EVENT_GEOFENCESCHANGE, callbackContext, callback);
         getAdapter().onGeofencesChange(callback);
     }
 
@@ -773,7 +1665,7 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
                 callbackContext.sendPluginResult(result);
             }
         };
-        registerCallback(callbackContext, callback);
+        registerCallback(BackgroundGeolocation.EVENT_POWERSAVECHANGE, callbackContext, callback);
         getAdapter().onPowerSaveChange(callback);
     }
 
@@ -792,7 +1684,7 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
                 }
             }
         };
-        registerCallback(callbackContext, callback);
+        registerCallback(BackgroundGeolocation.EVENT_CONNECTIVITYCHANGE, callbackContext, callback);
         getAdapter().onConnectivityChange(callback);
     }
 
@@ -804,7 +1696,7 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
                 callbackContext.sendPluginResult(result);
             }
         };
-        registerCallback(callbackContext, callback);
+        registerCallback(BackgroundGeolocation.EVENT_ENABLEDCHANGE, callbackContext, callback);
         getAdapter().onEnabledChange(callback);
     }
 
@@ -816,20 +1708,27 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
                 callbackContext.sendPluginResult(result);
             }
         };
-        registerCallback(callbackContext, callback);
+        registerCallback(BackgroundGeolocation.EVENT_NOTIFICATIONACTION, callbackContext, callback);
         getAdapter().onNotificationAction(callback);
     }
 
-    private void addHeartbeatListener(final CallbackContext callbackContext) {
+    private void addHeartbeatListener(JSONObject options, final CallbackContext callbackContext) {
+        final boolean binary = LocationCodec.isBinary(options);
         TSHeartbeatCallback callback = new TSHeartbeatCallback() {
             @Override
             public void onHeartbeat(HeartbeatEvent event) {
-                PluginResult result = new PluginResult(PluginResult.Status.OK, event.toJson());
+                TSLocation location = event.getLocation();
+                byte[] encoded = (binary && location != null)
+                        ? LocationCodec.encode(LocationCodec.TYPE_HEARTBEAT, location, LocationCodec.values(location))
+                        : null;
+                PluginResult result = (encoded != null)
+                        ? new PluginResult(PluginResult.Status.OK, encoded)
+                        : new PluginResult(PluginResult.Status.OK, event.toJson());
                 result.setKeepCallback(true);
                 callbackContext.sendPluginResult(result);
             }
         };
-        registerCallback(callbackContext, callback);
+        registerCallback(BackgroundGeolocation.EVENT_HEARTBEAT, callbackContext, callback);
         getAdapter().onHeartbeat(callback);
     }
 
@@ -843,7 +1742,7 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
                 callbackContext.sendPluginResult(result);
             }
         };
-        registerCallback(callbackContext, callback);
+        registerCallback(BackgroundGeolocation.EVENT_ACTIVITYCHANGE, callbackContext, callback);
         getAdapter().onActivityChange(callback);
     }
 
@@ -855,7 +1754,7 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
                 callbackContext.sendPluginResult(result);
             }
         };
-        registerCallback(callbackContext, callback);
+        registerCallback(BackgroundGeolocation.EVENT_PROVIDERCHANGE, callbackContext, callback);
         getAdapter().onLocationProviderChange(callback);
     }
     private void addScheduleListener(final CallbackContext callbackContext) {
@@ -866,60 +1765,103 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
                 callbackContext.sendPluginResult(result);
             }
         };
-        registerCallback(callbackContext, callback);
+        registerCallback(BackgroundGeolocation.EVENT_SCHEDULE, callbackContext, callback);
         getAdapter().onSchedule(callback);
 
     }
 
-    private void addLocationListener(final CallbackContext callbackContext) {
-        TSLocationCallback callback = new TSLocationCallback() {
-            @Override public void onLocation(TSLocation location) {
-                try {
-                    PluginResult result = new PluginResult(PluginResult.Status.OK, location.toJson());
-                    result.setKeepCallback(true);
-                    callbackContext.sendPluginResult(result);
-                } catch (JSONException e) {
-                    TSLog.logger.error(e.getMessage(), e);
-                }
-            }
-            @Override public void onError(Integer errorCode) {
-                PluginResult result = new PluginResult(PluginResult.Status.ERROR, errorCode);
-                result.setKeepCallback(true);
-                callbackContext.sendPluginResult(result);
+    private void addLocationListener(JSONObject options, final CallbackContext callbackContext) {
+        EventBatcher batcher = null;
+        int batchSize = options.optInt(FIELD_BATCH_SIZE, 0);
+        long batchLatency = options.optLong(FIELD_BATCH_LATENCY, 0);
+        if ((batchSize > 1) || (batchLatency > 0)) {
+            batcher = new EventBatcher(callbackContext,
+                    (batchSize > 0) ? batchSize : DEFAULT_BATCH_SIZE,
+                    (batchLatency > 0) ? batchLatency : DEFAULT_BATCH_LATENCY,
+                    getBatchScheduler());
+        }
+        synchronized (locationFanout) {
+            if (locationFanout.add(callbackContext, batcher, LocationCodec.isBinary(options))) {
+                TSLocationCallback callback = new TSLocationCallback() {
+                    @Override public void onLocation(final TSLocation location) {
+                        final double[] values = LocationCodec.values(location);
+                        if (!getLocationFilter().apply(location, values)) {
+                            return;
+                        }
+                        locationFanout.send(new EventRenderer() {
+                            @Override JSONObject renderJson() throws JSONException {
+                                JSONObject json = location.toJson();
+                                getLocationFilter().apply(location, json);
+                                return json;
+                            }
+                            @Override byte[] renderBinary() {
+                                return LocationCodec.encode(LocationCodec.TYPE_LOCATION, location, values);
+                            }
+                        });
+                    }
+                    @Override public void onError(Integer errorCode) {
+                        PluginResult result = new PluginResult(PluginResult.Status.ERROR, errorCode);
+                        result.setKeepCallback(true);
+                        locationFanout.send(result);
+                    }
+                };
+                locationFanout.setCallback(callback);
+                getAdapter().onLocation(callback);
             }
-        };
-        registerCallback(callbackContext, callback);
-        getAdapter().onLocation(callback);
+            registerCallback(BackgroundGeolocation.EVENT_LOCATION, callbackContext, locationFanout);
+        }
     }
 
-    private void registerCallback(CallbackContext cordovaCallback, Object tsCallback) {
-        cordovaCallbacks.add(new CordovaCallback(cordovaCallback.getCallbackId(), tsCallback));
+    private LocationFilter getLocationFilter() {
+        return LocationFilter.getInstance(cordova.getActivity().getApplicationContext());
     }
 
-    private void addMotionChangeListener(final CallbackContext callbackContext) {
-        TSLocationCallback callback = new TSLocationCallback() {
-            @Override public void onLocation(TSLocation location) {
-                JSONObject params = new JSONObject();
-                try {
-                    params.put("isMoving", location.getIsMoving());
-                    try {
-                        params.put("location", location.toJson());
-                        PluginResult result = new PluginResult(PluginResult.Status.OK, params);
-                        result.setKeepCallback(true);
-                        callbackContext.sendPluginResult(result);
-                    } catch (JSONException e) {
-                        TSLog.logger.error(e.getMessage(), e);
+    private synchronized ScheduledExecutorService getBatchScheduler() {
+        if (batchScheduler == null) {
+            batchScheduler = Executors.newSingleThreadScheduledExecutor();
+        }
+        return batchScheduler;
+    }
+
+    private void registerCallback(String event, CallbackContext cordovaCallback, Object tsCallback) {
+        cordovaCallbacks.add(new CordovaCallback(event, cordovaCallback.getCallbackId(), tsCallback));
+    }
+
+    private void registerCallback(String event, CallbackContext cordovaCallback, EventFanout fanout) {
+        cordovaCallbacks.add(new CordovaCallback(event, cordovaCallback.getCallbackId(), fanout.getCallback(), fanout));
+    }
+
+    private void addMotionChangeListener(JSONObject options, final CallbackContext callbackContext) {
+        synchronized (motionChangeFanout) {
+            if (motionChangeFanout.add(callbackContext, null, LocationCodec.isBinary(options))) {
+                TSLocationCallback callback = new TSLocationCallback() {
+                    @Override public void onLocation(final TSLocation location) {
+                        // motionchange locations are never rejected.
+                        final double[] values = LocationCodec.values(location);
+                        getLocationFilter().apply(location, values);
+                        motionChangeFanout.send(new EventRenderer() {
+                            @Override JSONObject renderJson() throws JSONException {
+                                JSONObject json = location.toJson();
+                                getLocationFilter().apply(location, json);
+                                JSONObject params = new JSONObject();
+                                params.put("isMoving", location.getIsMoving());
+                                params.put("location", json);
+                                return params;
+                            }
+                            @Override byte[] renderBinary() {
+                                return LocationCodec.encode(LocationCodec.TYPE_MOTIONCHANGE, location, values);
+                            }
+                        });
                     }
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-            }
-            @Override public void onError(Integer error) {
-                callbackContext.error(error);
+                    @Override public void onError(Integer error) {
+                        motionChangeFanout.send(new PluginResult(PluginResult.Status.ERROR, error));
+                    }
+                };
+                motionChangeFanout.setCallback(callback);
+                getAdapter().onMotionChange(callback);
             }
-        };
-        registerCallback(callbackContext, callback);
-        getAdapter().onMotionChange(callback);
+            registerCallback(BackgroundGeolocation.EVENT_MOTIONCHANGE, callbackContext, motionChangeFanout);
+        }
     }
 
     private void addHttpListener(final CallbackContext callbackContext) {
@@ -930,7 +1872,7 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
                 callbackContext.sendPluginResult(result);
             }
         };
-        registerCallback(callbackContext, callback);
+        registerCallback(BackgroundGeolocation.EVENT_HTTP, callbackContext, callback);
         getAdapter().onHttp(callback);
 
     }
@@ -945,13 +1887,14 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
             }
         };
 
-        registerCallback(callbackContext, callback);
+        registerCallback(BackgroundGeolocation.EVENT_AUTHORIZATION, callbackContext, callback);
         HttpService.getInstance(context).onAuthorization(callback);
     }
 
-    private void removeGeofence(String identifier, final CallbackContext callbackContext) {
+    private void removeGeofence(final String identifier, final CallbackContext callbackContext) {
         getAdapter().removeGeofence(identifier, new TSCallback() {
             @Override public void onSuccess() {
+                geofenceIndex.remove(identifier);
                 callbackContext.success();
             }
             @Override public void onFailure(String error) {
@@ -961,13 +1904,19 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
     }
 
     private void removeGeofences(final JSONArray identifiers, final CallbackContext callbackContext) {
-        List<String> rs = new ArrayList<String>();
+        final List<String> rs = new ArrayList<String>();
         try {
             for (int i = 0; i < identifiers.length(); i++) {
                 rs.add(identifiers.getString(i));
             }
             getAdapter().removeGeofences(rs, new TSCallback() {
                 @Override public void onSuccess() {
+                    // An empty list removes all geofences.
+                    if (rs.isEmpty()) {
+                        geofenceIndex.clear();
+                    } else {
+                        geofenceIndex.removeAll(rs);
+                    }
                     callbackContext.success();
                 }
                 @Override public void onFailure(String error) {
@@ -991,10 +1940,138 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         });
     }
 
-    private void setConfig(final JSONObject params, final CallbackContext callbackContext) throws JSONException {
+    /**
+     * Insert a list of locations in one bridge call.  Responds with one result per location, in order:
+     * {success:true, uuid} or {success:false, error}.  Blocks the LOCATION queue until every insert completes.
+     */
+    private void insertLocations(JSONArray records, CallbackContext callbackContext) throws JSONException {
+        int count = records.length();
+        final String[] uuids = new String[count];
+        final String[] errors = new String[count];
+        final CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            JSONObject params = records.optJSONObject(i);
+            if (params == null) {
+                errors[i] = "Invalid location";
+                latch.countDown();
+                continue;
+            }
+            final int index = i;
+            getAdapter().insertLocation(params, new TSInsertLocationCallback() {
+                @Override public void onSuccess(String uuid) {
+                    uuids[index] = uuid;
+                    latch.countDown();
+                }
+                @Override public void onFailure(String error) {
+                    errors[index] = error;
+                    latch.countDown();
+                }
+            });
+        }
+        awaitLocationBatch(latch);
+
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            JSONObject result = new JSONObject();
+            if (uuids[i] != null) {
+                result.put("success", true);
+                result.put("uuid", uuids[i]);
+            } else {
+                result.put("success", false);
+                result.put("error", (errors[i] != null) ? errors[i] : "Timeout");
+            }
+            results.put(result);
+        }
+        callbackContext.success(results);
+    }
+
+    /**
+     * Destroy a list of locations by uuid in one bridge call.  Responds with one result per uuid, in order:
+     * {uuid, success, error}.
+     */
+    private void destroyLocations(JSONArray uuids, CallbackContext callbackContext) throws JSONException {
+        int count = uuids.length();
+        final boolean[] destroyed = new boolean[count];
+        final String[] errors = new String[count];
+        final CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            // Only non-empty Strings are uuids:  JSONArray#getString would coerce null or a number into one.
+            Object uuid = uuids.opt(i);
+            if (!(uuid instanceof String) || ((String) uuid).isEmpty()) {
+                errors[i] = "Invalid uuid";
+                latch.countDown();
+                continue;
+            }
+            final int index = i;
+            getAdapter().destroyLocation((String) uuid, new TSCallback() {
+                @Override public void onSuccess() {
+                    destroyed[index] = true;
+                    latch.countDown();
+                }
+                @Override public void onFailure(String error) {
+                    errors[index] = error;
+                    latch.countDown();
+                }
+            });
+        }
+        awaitLocationBatch(latch);
+
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            JSONObject result = new JSONObject();
+            result.put("uuid", uuids.opt(i));
+            result.put("success", destroyed[i]);
+            if (!destroyed[i]) {
+                result.put("error", (errors[i] != null) ? errors[i] : "Timeout");
+            }
+            results.put(result);
+        }
+        callbackContext.success(results);
+    }
+
+    private void awaitLocationBatch(CountDownLatch latch) {
+        try {
+            if (!latch.await(LOCATION_BATCH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                AsyncLog.warn(TSLog.warn("Location batch timeout: " + latch.getCount() + " pending"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Apply only the fields which differ from the current config, so that only the subsystems affected by them are re-armed.
+     * Replies with the full State, or with just the changed fields {field: value} when requested ({changes: true}).  The
+     * plugin's own options (PLUGIN_CONFIG_FIELDS) are always applied, and reported as changed whenever provided.
+     */
+    private void setConfig(final JSONObject params, boolean changesOnly, final CallbackContext callbackContext) throws JSONException {
         TSConfig config = TSConfig.getInstance(cordova.getActivity().getApplicationContext());
-        config.updateWithJSONObject(params);
-        callbackContext.success(config.toJson());
+        JSONObject pluginOptions = new JSONObject();
+        for (String key : PLUGIN_CONFIG_FIELDS) {
+            if (params.has(key)) {
+                pluginOptions.put(key, params.get(key));
+            }
+        }
+        applyPluginOptions(params, false);
+        // Diffed against the cached State:  it's re-serialized only once the config has changed (including by the SDK itself, see
+        // #getStateVersion), rather than upon each call.
+        JSONObject changes = ConfigDiff.diff(getState(), params);
+        if (changes.length() > 0) {
+            config.updateWithJSONObject(changes);
+            invalidateState();
+        } else if (TSLog.logger.isDebugEnabled()) {
+            AsyncLog.debug(TSLog.info("setConfig:  no changes"));
+        }
+        if (!changesOnly) {
+            callbackContext.success(getState());
+            return;
+        }
+        Iterator<String> keys = pluginOptions.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            changes.put(key, pluginOptions.get(key));
+        }
+        callbackContext.success(changes);
     }
 
     private void destroyLocations(final CallbackContext callbackContext) {
@@ -1020,8 +2097,33 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
     }
 
     private void getLog(JSONObject params, final CallbackContext callbackContext) throws JSONException {
-        TSLog.getLog(parseSQLQuery(params), new TSGetLogCallback() {
-            @Override public void onSuccess(String log) {
+        if (params.optBoolean(LogExport.FIELD_FILE)) {
+            // Stream to a gzip file rather than building the whole log as a String.
+            try {
+                File file = LogExport.export(cordova.getActivity().getApplicationContext(), parseSQLQuery(params), LogExport.Filter.fromJson(params));
+                JSONObject result = new JSONObject();
+                result.put("uri", LogExport.toUri(file));
+                result.put("size", file.length());
+                callbackContext.success(result);
+            } catch (IOException e) {
+                AsyncLog.error(TSLog.error(e.getMessage()), e);
+                callbackContext.error(e.getMessage());
+            }
+            return;
+        }
+        LogExport.Filter filter = LogExport.Filter.fromJson(params);
+        if (!filter.isEmpty()) {
+            // Only the matching rows cross the bridge.
+            try {
+                callbackContext.success(LogExport.read(cordova.getActivity().getApplicationContext(), parseSQLQuery(params), filter));
+            } catch (IOException e) {
+                AsyncLog.error(TSLog.error(e.getMessage()), e);
+                callbackContext.error(e.getMessage());
+            }
+            return;
+        }
+        TSLog.getLog(parseSQLQuery(params), new TSGetLogCallback() {
+            @Override public void onSuccess(String log) {
                 callbackContext.success(log);
             }
             @Override public void onFailure(String error) {
@@ -1042,25 +2144,27 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
     }
 
     private void emailLog(String email, JSONObject params, final CallbackContext callbackContext) throws JSONException {
-        TSLog.emailLog(cordova.getActivity(), email, parseSQLQuery(params), new TSEmailLogCallback() {
-            @Override public void onSuccess() {
-                callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, true));
-            }
-            @Override public void onFailure(String error) {
-                callbackContext.error(error);
-            }
-        });
+        try {
+            LogExport.email(cordova.getActivity(), email, parseSQLQuery(params), LogExport.Filter.fromJson(params), getState());
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, true));
+        } catch (IOException e) {
+            AsyncLog.error(TSLog.error(e.getMessage()), e);
+            callbackContext.error(e.getMessage());
+        }
     }
 
     private void uploadLog(String url, JSONObject params, final CallbackContext callbackContext) throws JSONException {
-        TSLog.uploadLog(cordova.getActivity().getApplicationContext(), url, parseSQLQuery(params), new TSCallback() {
-            @Override public void onSuccess() {
+        try {
+            int status = LogExport.upload(cordova.getActivity().getApplicationContext(), url, parseSQLQuery(params), LogExport.Filter.fromJson(params), getState());
+            if (status >= 200 && status < 300) {
                 callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, true));
+            } else {
+                callbackContext.error("HTTP " + status);
             }
-            @Override public void onFailure(String error) {
-                callbackContext.error(error);
-            }
-        });
+        } catch (IOException e) {
+            AsyncLog.error(TSLog.error(e.getMessage()), e);
+            callbackContext.error(e.getMessage());
+        }
     }
 
     private SQLQuery parseSQLQuery(JSONObject params) throws JSONException {
@@ -1083,12 +2187,134 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
     private void log(JSONArray arguments, CallbackContext callbackContext) throws JSONException {
         String level = arguments.getString(0);
         String message = arguments.getString(1);
-        TSLog.log(level, message);
+        // Buffered:  written by AsyncLog's writer thread.
+        AsyncLog.log(level, message);
         callbackContext.success();
     }
 
-    private JSONObject getState() {
-        return TSConfig.getInstance(cordova.getActivity().getApplicationContext()).toJson();
+    /**
+     * Reply with the State, or just {modified: false, version} when options.ifChangedSince is the current version.
+     */
+    private void getState(JSONObject options, CallbackContext callbackContext) throws JSONException {
+        long version = getStateVersion();
+        if (options != null && options.has(FIELD_IF_CHANGED_SINCE) && options.getLong(FIELD_IF_CHANGED_SINCE) == version) {
+            JSONObject result = new JSONObject();
+            result.put("modified", false);
+            result.put("version", version);
+            callbackContext.success(result);
+            return;
+        }
+        callbackContext.success(getState());
+    }
+
+    /**
+     * The State, re-serialized only after its version has changed.
+     */
+    private synchronized JSONObject getState() throws JSONException {
+        long version = getStateVersion();
+        if (stateCache == null || stateCacheVersion != version) {
+            // Should the version change during #toJson, the next call re-serializes.
+            stateCache = TSConfig.getInstance(cordova.getActivity().getApplicationContext()).toJson();
+            stateCache.put("version", version);
+            stateCacheVersion = version;
+        }
+        return stateCache;
+    }
+
+    /**
+     * Reply with the State, served from the cache until it changes.
+     */
+    private void replyState(CallbackContext callbackContext) {
+        try {
+            callbackContext.success(getState());
+        } catch (JSONException e) {
+            callbackContext.error(e.getMessage());
+        }
+    }
+
+    private void invalidateState() {
+        stateVersion.incrementAndGet();
+    }
+
+    /**
+     * The State's version, first bumped should the SDK have changed the config by a path which fires no event (eg: TSConfig's
+     * setters, used by startGeofences (trackingMode) and the authorization token refresh).
+     */
+    private synchronized long getStateVersion() {
+        int fingerprint = getStateFingerprint();
+        if (fingerprint != stateFingerprint) {
+            stateFingerprint = fingerprint;
+            invalidateState();
+        }
+        return stateVersion.get();
+    }
+
+    /**
+     * A cheap hash of the config fields which the SDK changes by itself:  a few getters rather than #toJson.
+     */
+    private int getStateFingerprint() {
+        TSConfig config = TSConfig.getInstance(cordova.getActivity().getApplicationContext());
+        TSAuthorization authorization = config.getAuthorization();
+        return Arrays.hashCode(new Object[] {
+                config.getEnabled(),
+                config.getTrackingMode(),
+                config.getIsMoving(),
+                config.getOdometer(),
+                config.getSchedulerEnabled(),
+                config.getDidDeviceReboot(),
+                config.getMaxBatchSize(),
+                (authorization != null) ? authorization.getAccessToken() : null,
+                (authorization != null) ? authorization.getRefreshToken() : null,
+                (authorization != null) ? authorization.getExpires() : 0L
+        });
+    }
+
+    /**
+     * The SDK changes some State by itself (eg: odometer, isMoving, enabled, authorization):  invalidate the State cache upon those
+     * events.
+     */
+    private void addStateListeners() {
+        BackgroundGeolocation adapter = getAdapter();
+        TSLocationCallback locationCallback = new TSLocationCallback() {
+            @Override public void onLocation(TSLocation location) {
+                invalidateState();
+                try {
+                    // Cached as delivered:  smoothed once, here, while the LocationFilter's estimate belongs to this fix.
+                    JSONObject json = location.toJson();
+                    if (getLocationFilter().apply(location, json)) {
+                        positionCoalescer.record(location, json);
+                    }
+                } catch (JSONException e) {
+                    AsyncLog.error(TSLog.error(e.getMessage()));
+                }
+            }
+            @Override public void onError(Integer error) { }
+        };
+        adapter.onLocation(locationCallback);
+        adapter.onMotionChange(locationCallback);
+        adapter.onEnabledChange(new TSEnabledChangeCallback() {
+            @Override public void onEnabledChange(boolean enabled) {
+                invalidateState();
+            }
+        });
+        adapter.onSchedule(new TSScheduleCallback() {
+            @Override public void onSchedule(ScheduleEvent event) {
+                invalidateState();
+            }
+        });
+        adapter.onHttp(new TSHttpResponseCallback() {
+            @Override public void onHttpResponse(HttpResponse response) {
+                // A 401 refreshes the authorization token.
+                if (response.status == 401) {
+                    invalidateState();
+                }
+            }
+        });
+        HttpService.getInstance(cordova.getActivity().getApplicationContext()).onAuthorization(new TSAuthorizationCallback() {
+            @Override public void onResponse(AuthorizationEvent event) {
+                invalidateState();
+            }
+        });
     }
 
     private void getSensors(CallbackContext callbackContext) {
@@ -1221,11 +2447,112 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
         }
     }
 
+    /**
+     * Optional options {} provided as first argument.  Older Javascript API versions provide none.
+     */
+    private JSONObject optOptions(JSONArray data) {
+        JSONObject options = data.optJSONObject(0);
+        return (options != null) ? options : new JSONObject();
+    }
+
     private JSONObject setHeadlessJobService(JSONObject params) throws JSONException {
         params.put("headlessJobService", getClass().getPackage().getName() + "." + HEADLESS_JOB_SERVICE_CLASS);
         return params;
     }
 
+    /**
+     * Extract the Config options handled by the plugin rather than TSConfig (Config.headlessRules, Config.locationSmoothing, Config.simplifyTolerance,
+     * Config.syncEncoding).
+     * When resetting, absent options are cleared.
+     */
+    private void applyPluginOptions(JSONObject params, boolean reset) throws JSONException {
+        Context context = cordova.getActivity().getApplicationContext();
+        if (params.has(HeadlessRules.FIELD_RULES)) {
+            HeadlessRules.getInstance(context).setRules(context, params.optJSONArray(HeadlessRules.FIELD_RULES));
+            params.remove(HeadlessRules.FIELD_RULES);
+        } else if (reset) {
+            HeadlessRules.getInstance(context).setRules(context, null);
+        }
+        if (params.has(LocationFilter.FIELD_LOCATION_SMOOTHING)) {
+            Object options = params.get(LocationFilter.FIELD_LOCATION_SMOOTHING);
+            if (options instanceof JSONObject || Boolean.TRUE.equals(options)) {
+                HeadlessRules.getInstance(context).setLocationSmoothing(context, (options instanceof JSONObject) ? (JSONObject) options : new JSONObject());
+            } else {
+                HeadlessRules.getInstance(context).setLocationSmoothing(context, null);
+            }
+            params.remove(LocationFilter.FIELD_LOCATION_SMOOTHING);
+        } else if (reset) {
+            HeadlessRules.getInstance(context).setLocationSmoothing(context, null);
+        }
+        if (params.has(TrajectorySimplifier.FIELD_SIMPLIFY_TOLERANCE)) {
+            float tolerance = (float) params.optDouble(TrajectorySimplifier.FIELD_SIMPLIFY_TOLERANCE, 0);
+            HeadlessRules.getInstance(context).setSimplifyTolerance(context, tolerance);
+            params.remove(TrajectorySimplifier.FIELD_SIMPLIFY_TOLERANCE);
+            TSConfig config = TSConfig.getInstance(context);
+            boolean autoSync = params.has("autoSync") ? params.optBoolean("autoSync") : Boolean.TRUE.equals(config.getAutoSync());
+            int threshold = params.has("autoSyncThreshold") ? params.optInt("autoSyncThreshold") : ((config.getAutoSyncThreshold() != null) ? config.getAutoSyncThreshold() : 0);
+            if (tolerance > 0 && autoSync && threshold <= 0) {
+                AsyncLog.warn(TSLog.warn("simplifyTolerance: with autoSync and autoSyncThreshold 0, locations are uploaded before they're simplified"));
+            }
+        } else if (reset) {
+            HeadlessRules.getInstance(context).setSimplifyTolerance(context, 0);
+        }
+        if (params.has(AdaptiveBatchController.FIELD_ADAPTIVE_BATCH_SIZE)) {
+            Object options = params.get(AdaptiveBatchController.FIELD_ADAPTIVE_BATCH_SIZE);
+            if (options instanceof JSONObject || Boolean.TRUE.equals(options)) {
+                getPreferences().edit().putString(AdaptiveBatchController.FIELD_ADAPTIVE_BATCH_SIZE, (options instanceof JSONObject) ? options.toString() : "{}").apply();
+            } else {
+                getPreferences().edit().remove(AdaptiveBatchController.FIELD_ADAPTIVE_BATCH_SIZE).apply();
+            }
+            params.remove(AdaptiveBatchController.FIELD_ADAPTIVE_BATCH_SIZE);
+            synchronized (this) { batchController = null; }
+        } else if (reset) {
+            getPreferences().edit().remove(AdaptiveBatchController.FIELD_ADAPTIVE_BATCH_SIZE).apply();
+            synchronized (this) { batchController = null; }
+        }
+        if (params.has(CompactSync.FIELD_SYNC_ENCODING)) {
+            getPreferences().edit().putString(CompactSync.FIELD_SYNC_ENCODING, params.optString(CompactSync.FIELD_SYNC_ENCODING)).apply();
+            params.remove(CompactSync.FIELD_SYNC_ENCODING);
+        } else if (reset) {
+            getPreferences().edit().remove(CompactSync.FIELD_SYNC_ENCODING).apply();
+        }
+        if (params.has(CompactSync.FIELD_SYNC_CONCURRENCY)) {
+            getPreferences().edit().putInt(CompactSync.FIELD_SYNC_CONCURRENCY, params.optInt(CompactSync.FIELD_SYNC_CONCURRENCY, 1)).apply();
+            params.remove(CompactSync.FIELD_SYNC_CONCURRENCY);
+        } else if (reset) {
+            getPreferences().edit().remove(CompactSync.FIELD_SYNC_CONCURRENCY).apply();
+        }
+        if (params.has(AsyncLog.FIELD_LOG_BUFFER)) {
+            JSONObject options = params.optJSONObject(AsyncLog.FIELD_LOG_BUFFER);
+            if (options != null) {
+                getPreferences().edit().putString(AsyncLog.FIELD_LOG_BUFFER, options.toString()).apply();
+            } else {
+                getPreferences().edit().remove(AsyncLog.FIELD_LOG_BUFFER).apply();
+            }
+            params.remove(AsyncLog.FIELD_LOG_BUFFER);
+            configureLogBuffer();
+        } else if (reset) {
+            getPreferences().edit().remove(AsyncLog.FIELD_LOG_BUFFER).apply();
+            configureLogBuffer();
+        }
+    }
+
+    /**
+     * Apply the persisted Config.logBuffer to AsyncLog.
+     */
+    private void configureLogBuffer() {
+        String options = getPreferences().getString(AsyncLog.FIELD_LOG_BUFFER, null);
+        try {
+            AsyncLog.configure((options != null) ? new JSONObject(options) : null);
+        } catch (JSONException e) {
+            AsyncLog.error(TSLog.error(e.getMessage()), e);
+        }
+    }
+
+    private SharedPreferences getPreferences() {
+        return cordova.getActivity().getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
     private void handlePlayServicesConnectError(Integer errorCode) {
         Activity activity = cordova.getActivity();
         ExtensionApiAvailability.getInstance().getErrorDialog(activity, errorCode, 1001).show();
@@ -1257,17 +2584,715 @@ public class CDVBackgroundGeolocation extends CordovaPlugin {
 
     public void onDestroy() {
         Log.i(TAG, "CDVBackgroundGeolocation#onDestoy");
+        synchronized (this) {
+            if (batchScheduler != null) {
+                batchScheduler.shutdownNow();
+                batchScheduler = null;
+            }
+            for (ExecutorService executor : mExecutors.values()) {
+                executor.shutdown();
+            }
+            mExecutors.clear();
+        }
+        AsyncLog.getInstance().flush();
         getAdapter().onActivityDestroy();
         super.onDestroy();
     }
 
-    private class CordovaCallback {
-        public String callbackId;
-        public Object callback;
+    /**
+     * Where an action executes.  Actions sharing a serial queue keep the order in which they were called.
+     */
+    private enum Dispatch {
+        // On the calling Cordova bridge thread.
+        INLINE,
+        // Shared, bounded worker pool.  No ordering.
+        POOL,
+        // Serial queue for config / state changes (#ready, #setConfig, #start, #getState, etc).
+        CONFIG,
+        // Serial queue for the location database.
+        LOCATION,
+        // Serial queue for geofence operations.
+        GEOFENCE,
+        // Serial queue for the logger.
+        LOG,
+        // Bounded pool for #sync's compact uploads in flight (Config.syncConcurrency).
+        UPLOAD
+    }
+
+    /**
+     * A bridge action handler, keyed by action-name in the dispatch-table built by #registerActions.
+     */
+    private abstract static class Action {
+        final Dispatch dispatch;
+        // Does the action change the plugin State (see #getState)?
+        final boolean mutatesState;
+
+        Action() {
+            this(Dispatch.INLINE);
+        }
+
+        Action(Dispatch dispatch) {
+            this(dispatch, false);
+        }
+
+        Action(Dispatch dispatch, boolean mutatesState) {
+            this.dispatch = dispatch;
+            this.mutatesState = mutatesState;
+        }
+
+        abstract void execute(JSONArray data, CallbackContext callbackContext) throws JSONException;
+    }
+
+    /**
+     * Records from #getLocations / #sync awaiting delivery in pages:  #getLocations reads each page from the database (LocationStore),
+     * following the last record id delivered;  #sync's records, already destroyed, are held until delivered.
+     */
+    private static class LocationCursor {
+        final int pageSize;
+        final int total;
+        // #getLocations
+        final boolean descending;
+        long lastId;
+        // #sync
+        final List<LocationModel> records;
+        int offset;
+
+        LocationCursor(boolean descending, int total, int pageSize) {
+            this.records = null;
+            this.descending = descending;
+            this.total = total;
+            this.pageSize = pageSize;
+        }
+
+        LocationCursor(List<LocationModel> records, int pageSize) {
+            // Own the list so delivered records can be released.
+            this.records = new ArrayList<LocationModel>(records);
+            this.descending = false;
+            this.total = records.size();
+            this.pageSize = pageSize;
+        }
+    }
+
+    private static class CordovaCallback {
+        public final String event;
+        public final String callbackId;
+        public final Object callback;
+        public final EventFanout fanout;
+
+        public CordovaCallback(String _event, String _callbackId, Object _callback) {
+            this(_event, _callbackId, _callback, null);
+        }
 
-        public CordovaCallback(String _callbackId, Object _callback) {
+        public CordovaCallback(String _event, String _callbackId, Object _callback, EventFanout _fanout) {
+            event       = _event;
             callbackId  = _callbackId;
             callback    = _callback;
+            fanout      = _fanout;
+        }
+    }
+
+    /**
+     * Registry of Javascript listeners keyed by Cordova callbackId, with a per-event index.  Safe for registration /
+     * removal from any thread while events are firing.
+     */
+    private static class CallbackRegistry {
+        // Keyed by lower-cased callbackId:  callbackIds are matched case-insensitively, as EventFanout#remove does.
+        private final ConcurrentHashMap<String, CordovaCallback> callbacks = new ConcurrentHashMap<String, CordovaCallback>();
+        private final ConcurrentHashMap<String, Set<String>> events = new ConcurrentHashMap<String, Set<String>>();
+
+        private static String key(String callbackId) {
+            return callbackId.toLowerCase(Locale.US);
+        }
+
+        void add(CordovaCallback cordovaCallback) {
+            String key = key(cordovaCallback.callbackId);
+            callbacks.put(key, cordovaCallback);
+            Set<String> callbackIds = events.get(cordovaCallback.event);
+            if (callbackIds == null) {
+                Set<String> created = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                callbackIds = events.putIfAbsent(cordovaCallback.event, created);
+                if (callbackIds == null) {
+                    callbackIds = created;
+                }
+            }
+            callbackIds.add(key);
+        }
+
+        CordovaCallback remove(String callbackId) {
+            if (callbackId == null) {
+                return null;
+            }
+            String key = key(callbackId);
+            CordovaCallback cordovaCallback = callbacks.remove(key);
+            if (cordovaCallback != null) {
+                Set<String> callbackIds = events.get(cordovaCallback.event);
+                if (callbackIds != null) {
+                    callbackIds.remove(key);
+                }
+            }
+            return cordovaCallback;
+        }
+
+        /**
+         * @return the number of Javascript listeners currently registered for event.
+         */
+        int count(String event) {
+            Set<String> callbackIds = events.get(event);
+            return (callbackIds != null) ? callbackIds.size() : 0;
+        }
+
+        void clear() {
+            callbacks.clear();
+            events.clear();
+        }
+    }
+
+    /**
+     * Coalesces #getCurrentPosition requests:
+     * - a request providing maximumAge is answered at once from the last fix (of any request, or of tracking) when it's recent
+     *   and accurate enough, unless it provides extras or persist: true (a cached fix can't carry them, nor be persisted anew).
+     *   Cached and fresh fixes alike are smoothed by the LocationFilter (Config.locationSmoothing).
+     * - a request compatible with one in flight (same persist / extras, with no better desiredAccuracy nor more samples) joins it
+     *   rather than starting its own sampling session.  A joined request still times-out after its own timeout.
+     */
+    private static class PositionCoalescer {
+        // Accuracy (meters) a cached fix must meet for desiredAccuracy HIGH / NAVIGATION (<= 0).
+        private static final float HIGH_ACCURACY_METERS = 50;
+        private static final int DEFAULT_SAMPLES = 3;
+        private static final int DEFAULT_TIMEOUT = 30;
+        private static final int ERROR_TIMEOUT = 408;
+
+        private final List<Session> sessions = new ArrayList<Session>();
+        // The last fix, and its JSON as delivered (smoothed by the LocationFilter).
+        private TSLocation lastFix;
+        private JSONObject lastFixJson;
+
+        /**
+         * @return the Session to start, or null when the request was answered from the cache or joined a Session in flight.
+         */
+        synchronized Session acquire(JSONObject options, final CallbackContext callbackContext, ScheduledExecutorService scheduler) throws JSONException {
+            if (answerFromCache(options, callbackContext)) {
+                return null;
+            }
+            for (final Session session : sessions) {
+                if (session.accepts(options)) {
+                    session.waiters.add(callbackContext);
+                    session.timeouts.put(callbackContext, scheduler.schedule(new Runnable() {
+                        @Override public void run() {
+                            timeout(session, callbackContext);
+                        }
+                    }, options.optInt("timeout", DEFAULT_TIMEOUT), TimeUnit.SECONDS));
+                    return null;
+                }
+            }
+            Session session = new Session(options);
+            session.waiters.add(callbackContext);
+            sessions.add(session);
+            return session;
+        }
+
+        synchronized void record(TSLocation location, JSONObject json) {
+            lastFix = location;
+            lastFixJson = json;
+        }
+
+        void complete(Session session, TSLocation location, LocationFilter filter) {
+            List<CallbackContext> waiters = finish(session);
+            try {
+                JSONObject json = location.toJson();
+                // Smoothed as the location listeners' fixes are.  A requested fix rejected as an outlier is answered unfiltered (and
+                // not cached).
+                if (filter.apply(location, json)) {
+                    record(location, json);
+                }
+                for (CallbackContext waiter : waiters) {
+                    waiter.success(json);
+                }
+            } catch (JSONException e) {
+                AsyncLog.error(e.getMessage(), e);
+                for (CallbackContext waiter : waiters) {
+                    waiter.error(e.getMessage());
+                }
+            }
+        }
+
+        void fail(Session session, int error) {
+            for (CallbackContext waiter : finish(session)) {
+                waiter.error(error);
+            }
+        }
+
+        private synchronized List<CallbackContext> finish(Session session) {
+            sessions.remove(session);
+            for (ScheduledFuture<?> timeout : session.timeouts.values()) {
+                timeout.cancel(false);
+            }
+            return new ArrayList<CallbackContext>(session.waiters);
+        }
+
+        private synchronized void timeout(Session session, CallbackContext callbackContext) {
+            session.timeouts.remove(callbackContext);
+            if (session.waiters.remove(callbackContext)) {
+                callbackContext.error(ERROR_TIMEOUT);
+            }
+        }
+
+        private boolean answerFromCache(JSONObject options, CallbackContext callbackContext) throws JSONException {
+            long maximumAge = options.optLong("maximumAge", 0);
+            // A fix from the cache can't carry the request's extras, nor be persisted as a new record (persist: true).
+            if (maximumAge <= 0 || lastFix == null || options.has("extras") || options.optBoolean("persist", false)) {
+                return false;
+            }
+            if (System.currentTimeMillis() - lastFix.getLocation().getTime() > maximumAge) {
+                return false;
+            }
+            float accuracy = Float.MAX_VALUE;
+            if (options.has("desiredAccuracy")) {
+                int desiredAccuracy = options.getInt("desiredAccuracy");
+                accuracy = (desiredAccuracy <= 0) ? HIGH_ACCURACY_METERS : desiredAccuracy;
+            }
+            if (lastFix.getLocation().getAccuracy() > accuracy) {
+                return false;
+            }
+            // As delivered:  the filter isn't run again upon an old fix.
+            callbackContext.success(lastFixJson);
+            return true;
+        }
+
+        private static class Session {
+            // desiredAccuracy:  lower is better (NAVIGATION -2, HIGH -1, then meters).  MAX_VALUE when unspecified.
+            final int desiredAccuracy;
+            final int samples;
+            final boolean persist;
+            final String extras;
+            final List<CallbackContext> waiters = new ArrayList<CallbackContext>();
+            final Map<CallbackContext, ScheduledFuture<?>> timeouts = new HashMap<CallbackContext, ScheduledFuture<?>>();
+
+            Session(JSONObject options) {
+                desiredAccuracy = options.optInt("desiredAccuracy", Integer.MAX_VALUE);
+                samples = options.optInt("samples", DEFAULT_SAMPLES);
+                persist = options.optBoolean("persist", true);
+                extras = extrasOf(options);
+            }
+
+            boolean accepts(JSONObject options) {
+                return persist == options.optBoolean("persist", true)
+                        && ((extras == null) ? extrasOf(options) == null : extras.equals(extrasOf(options)))
+                        && samples >= options.optInt("samples", DEFAULT_SAMPLES)
+                        && desiredAccuracy <= options.optInt("desiredAccuracy", Integer.MAX_VALUE);
+            }
+
+            private static String extrasOf(JSONObject options) {
+                JSONObject extras = options.optJSONObject("extras");
+                return (extras != null) ? extras.toString() : null;
+            }
+        }
+    }
+
+    /**
+     * Multiplexes #watchPosition subscribers onto a single SDK watch, running at the tightest interval and best desiredAccuracy
+     * requested by any of them.  Each subscriber receives locations throttled to its own interval and may stop individually
+     * (by watchId);  the SDK watch is restarted only when the aggregate interval / desiredAccuracy / persist / extras change.
+     */
+    private static class WatchMultiplexer {
+        private static final long DEFAULT_INTERVAL = 1000;
+        // Locations don't arrive exactly on schedule:  deliver once 90% of a subscriber's interval has elapsed.
+        private static final double INTERVAL_TOLERANCE = 0.9;
+
+        private final Map<String, Subscriber> subscribers = new LinkedHashMap<String, Subscriber>();
+        // Aggregate options of the running SDK watch (null when not watching).
+        private String running;
+        private int generation;
+
+        synchronized void add(BackgroundGeolocation adapter, Context context, CallbackContext callbackContext, JSONObject options) throws JSONException {
+            subscribers.put(callbackContext.getCallbackId(), new Subscriber(callbackContext, options));
+            update(adapter, context);
+        }
+
+        /**
+         * @return the callbackIds of the removed subscribers, for Javascript to release.
+         */
+        synchronized JSONArray remove(BackgroundGeolocation adapter, Context context, int watchId) {
+            JSONArray callbackIds = new JSONArray();
+            Iterator<Subscriber> iterator = subscribers.values().iterator();
+            while (iterator.hasNext()) {
+                Subscriber subscriber = iterator.next();
+                if (watchId < 0 || subscriber.watchId == watchId) {
+                    callbackIds.put(subscriber.callbackContext.getCallbackId());
+                    iterator.remove();
+                }
+            }
+            try {
+                update(adapter, context);
+            } catch (JSONException e) {
+                AsyncLog.error(e.getMessage(), e);
+            }
+            return callbackIds;
+        }
+
+        private void update(final BackgroundGeolocation adapter, Context context) throws JSONException {
+            if (subscribers.isEmpty()) {
+                if (running != null) {
+                    running = null;
+                    generation++;
+                    adapter.stopWatchPosition(new TSCallback() {
+                        @Override public void onSuccess() {}
+                        @Override public void onFailure(String error) {
+                            AsyncLog.warn(TSLog.warn("stopWatchPosition failed: " + error));
+                        }
+                    });
+                }
+                return;
+            }
+            long interval = Long.MAX_VALUE;
+            int desiredAccuracy = Integer.MAX_VALUE;
+            Boolean persist = null;
+            JSONObject extras = null;
+            for (Subscriber subscriber : subscribers.values()) {
+                interval = Math.min(interval, subscriber.interval);
+                if (subscriber.desiredAccuracy != null) {
+                    desiredAccuracy = Math.min(desiredAccuracy, subscriber.desiredAccuracy);
+                }
+                if (subscriber.persist != null) {
+                    persist = (persist == null) ? subscriber.persist : (persist || subscriber.persist);
+                }
+                if (subscriber.extras != null) {
+                    if (extras == null) {
+                        extras = new JSONObject();
+                    }
+                    Iterator<String> keys = subscriber.extras.keys();
+                    while (keys.hasNext()) {
+                        String key = keys.next();
+                        extras.put(key, subscriber.extras.get(key));
+                    }
+                }
+            }
+            String aggregate = interval + ":" + desiredAccuracy + ":" + persist + ":" + extras;
+            if (aggregate.equals(running)) {
+                return;
+            }
+            TSWatchPositionRequest.Builder builder = new TSWatchPositionRequest.Builder(context);
+            builder.setInterval(interval);
+            if (desiredAccuracy != Integer.MAX_VALUE)   { builder.setDesiredAccuracy(desiredAccuracy); }
+            if (persist != null)                        { builder.setPersist(persist); }
+            if (extras != null)                         { builder.setExtras(extras); }
+
+            final int session = ++generation;
+            builder.setCallback(new TSLocationCallback() {
+                @Override public void onLocation(TSLocation location) {
+                    deliver(session, location);
+                }
+                @Override public void onError(Integer error) {
+                    fail(session, error);
+                }
+            });
+            final TSWatchPositionRequest request = builder.build();
+            running = aggregate;
+            // Always stop first:  the SDK runs one watch at a time and stopping is asynchronous, so this keeps stop / start in order.
+            adapter.stopWatchPosition(new TSCallback() {
+                @Override public void onSuccess() {
+                    start(adapter, session, request);
+                }
+                @Override public void onFailure(String error) {
+                    start(adapter, session, request);
+                }
+            });
+        }
+
+        private void start(BackgroundGeolocation adapter, int session, TSWatchPositionRequest request) {
+            synchronized (this) {
+                if (session != generation) {
+                    // Superseded while stopping.
+                    return;
+                }
+            }
+            adapter.watchPosition(request);
+        }
+
+        private void deliver(int session, TSLocation location) {
+            List<CallbackContext> recipients = new ArrayList<CallbackContext>();
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                if (session != generation) {
+                    return;
+                }
+                for (Subscriber subscriber : subscribers.values()) {
+                    if (now - subscriber.lastDelivered >= (long) (subscriber.interval * INTERVAL_TOLERANCE)) {
+                        subscriber.lastDelivered = now;
+                        recipients.add(subscriber.callbackContext);
+                    }
+                }
+            }
+            if (recipients.isEmpty()) {
+                return;
+            }
+            try {
+                JSONObject json = location.toJson();
+                for (CallbackContext callbackContext : recipients) {
+                    PluginResult result = new PluginResult(PluginResult.Status.OK, json);
+                    result.setKeepCallback(true);
+                    callbackContext.sendPluginResult(result);
+                }
+            } catch (JSONException e) {
+                AsyncLog.debug(e.getMessage(), e);
+            }
+        }
+
+        private void fail(int session, Integer error) {
+            List<CallbackContext> recipients;
+            synchronized (this) {
+                if (session != generation) {
+                    return;
+                }
+                recipients = new ArrayList<CallbackContext>();
+                for (Subscriber subscriber : subscribers.values()) {
+                    recipients.add(subscriber.callbackContext);
+                }
+            }
+            // The watch carries on after an error:  keep the callbacks.
+            for (CallbackContext callbackContext : recipients) {
+                PluginResult result = new PluginResult(PluginResult.Status.ERROR, error);
+                result.setKeepCallback(true);
+                callbackContext.sendPluginResult(result);
+            }
+        }
+
+        private static class Subscriber {
+            final CallbackContext callbackContext;
+            final int watchId;
+            final long interval;
+            final Integer desiredAccuracy;
+            final Boolean persist;
+            final JSONObject extras;
+            long lastDelivered;
+
+            Subscriber(CallbackContext callbackContext, JSONObject options) throws JSONException {
+                this.callbackContext = callbackContext;
+                watchId = options.optInt("watchId", -1);
+                interval = Math.max(0, options.optLong("interval", DEFAULT_INTERVAL));
+                desiredAccuracy = options.has("desiredAccuracy") ? options.getInt("desiredAccuracy") : null;
+                persist = options.has("persist") ? options.getBoolean("persist") : null;
+                extras = options.optJSONObject("extras");
+            }
+        }
+    }
+
+    /**
+     * An event rendered lazily for EventFanout:  as JSON, and / or encoded with LocationCodec for {encoding: "binary"} listeners.
+     */
+    private static abstract class EventRenderer {
+        private JSONObject json;
+        private byte[] binary;
+        private boolean encoded;
+
+        abstract JSONObject renderJson() throws JSONException;
+
+        /**
+         * @return null when the event can't be encoded (it's delivered as JSON).
+         */
+        abstract byte[] renderBinary();
+
+        JSONObject json() throws JSONException {
+            if (json == null) {
+                json = renderJson();
+            }
+            return json;
+        }
+
+        byte[] binary() {
+            if (!encoded) {
+                binary = renderBinary();
+                encoded = true;
+            }
+            return binary;
+        }
+    }
+
+    /**
+     * A single native listener shared by all the Javascript listeners of an event.  Each event is rendered once into a
+     * PluginResult which is sent to every registered CallbackContext (once per encoding:  JSON, or binary for listeners
+     * registered with {encoding: "binary"}).  Listeners registered with an EventBatcher receive the rendered JSON event
+     * through their batcher instead.
+     */
+    private static class EventFanout {
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<Subscriber>();
+        private Object callback;
+
+        synchronized boolean add(CallbackContext callbackContext) {
+            return add(callbackContext, null, false);
+        }
+
+        /**
+         * @param binary deliver events encoded with LocationCodec (when the event fits).
+         * @return true when this is the first listener, ie: the native listener must be created with #setCallback.
+         */
+        synchronized boolean add(CallbackContext callbackContext, EventBatcher batcher, boolean binary) {
+            subscribers.add(new Subscriber(callbackContext, batcher, binary));
+            return (callback == null);
+        }
+
+        /**
+         * @return true when the last listener was removed, ie: the native listener should be removed.
+         */
+        synchronized boolean remove(String callbackId) {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.callbackContext.getCallbackId().equalsIgnoreCase(callbackId)) {
+                    subscriber.cancel();
+                    subscribers.remove(subscriber);
+                    break;
+                }
+            }
+            if (subscribers.isEmpty() && (callback != null)) {
+                callback = null;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void clear() {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.cancel();
+            }
+            subscribers.clear();
+            callback = null;
+        }
+
+        synchronized void setCallback(Object nativeCallback) {
+            callback = nativeCallback;
+        }
+
+        synchronized Object getCallback() {
+            return callback;
+        }
+
+        void send(PluginResult result) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.callbackContext.sendPluginResult(result);
+            }
+        }
+
+        /**
+         * Render the event only in the encodings its subscribers asked for, each once.
+         */
+        void send(EventRenderer renderer) {
+            PluginResult jsonResult = null;
+            PluginResult binaryResult = null;
+            try {
+                for (Subscriber subscriber : subscribers) {
+                    if (subscriber.batcher != null) {
+                        subscriber.batcher.add(renderer.json());
+                        continue;
+                    }
+                    if (subscriber.binary && (binaryResult != null || renderer.binary() != null)) {
+                        if (binaryResult == null) {
+                            binaryResult = new PluginResult(PluginResult.Status.OK, renderer.binary());
+                            binaryResult.setKeepCallback(true);
+                        }
+                        subscriber.callbackContext.sendPluginResult(binaryResult);
+                    } else {
+                        if (jsonResult == null) {
+                            jsonResult = new PluginResult(PluginResult.Status.OK, renderer.json());
+                            jsonResult.setKeepCallback(true);
+                        }
+                        subscriber.callbackContext.sendPluginResult(jsonResult);
+                    }
+                }
+            } catch (JSONException e) {
+                AsyncLog.error(e.getMessage(), e);
+            }
+        }
+
+        private static class Subscriber {
+            final CallbackContext callbackContext;
+            final EventBatcher batcher;
+            final boolean binary;
+
+            Subscriber(CallbackContext callbackContext, EventBatcher batcher, boolean binary) {
+                this.callbackContext = callbackContext;
+                this.batcher = batcher;
+                this.binary = binary;
+            }
+
+            void cancel() {
+                if (batcher != null) {
+                    batcher.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Buffers rendered events for a single Javascript listener and delivers them as one JSONArray once maxBatchSize
+     * events are buffered or maxLatency ms have elapsed since the first buffered event, whichever comes first.
+     */
+    private static class EventBatcher implements Runnable {
+        private final CallbackContext callbackContext;
+        private final int maxBatchSize;
+        private final long maxLatency;
+        private final ScheduledExecutorService scheduler;
+        private JSONArray buffer = new JSONArray();
+        private ScheduledFuture<?> timer;
+        private boolean cancelled;
+
+        EventBatcher(CallbackContext callbackContext, int maxBatchSize, long maxLatency, ScheduledExecutorService scheduler) {
+            this.callbackContext = callbackContext;
+            this.maxBatchSize = maxBatchSize;
+            this.maxLatency = maxLatency;
+            this.scheduler = scheduler;
+        }
+
+        synchronized void add(JSONObject event) {
+            if (cancelled) {
+                return;
+            }
+            buffer.put(event);
+            if (buffer.length() >= maxBatchSize) {
+                flush();
+            } else if (timer == null) {
+                try {
+                    timer = scheduler.schedule(this, maxLatency, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Plugin destroyed.
+                    flush();
+                }
+            }
+        }
+
+        @Override public void run() {
+            flush();
+        }
+
+        synchronized void flush() {
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+            if (buffer.length() == 0) {
+                return;
+            }
+            PluginResult result = new PluginResult(PluginResult.Status.OK, buffer);
+            result.setKeepCallback(true);
+            buffer = new JSONArray();
+            callbackContext.sendPluginResult(result);
+        }
+
+        /**
+         * The listener was removed:  deliver what's buffered as its last result (empty when nothing is), which releases the
+         * Javascript callback.
+         */
+        synchronized void cancel() {
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            PluginResult result = new PluginResult(PluginResult.Status.OK, buffer);
+            result.setKeepCallback(false);
+            buffer = new JSONArray();
+            callbackContext.sendPluginResult(result);
         }
     }
 }
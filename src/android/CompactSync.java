@@ -0,0 +1,359 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.content.Context;
+
+import com.transistorsoft.locationmanager.adapter.TSConfig;
+import com.transistorsoft.locationmanager.config.TSAuthorization;
+import com.transistorsoft.locationmanager.data.LocationModel;
+import com.transistorsoft.locationmanager.event.AuthorizationEvent;
+import com.transistorsoft.locationmanager.logger.TSLog;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CompactSync
+ * Compact HTTP upload encoding, selected with Config.syncEncoding: "compact".  Rather than one JSON object per location (repeating
+ * every key, activity, battery and extras), a batch is encoded as:
+ *
+ * - columns:  one array per field, so each key is sent once per batch.
+ * - deltas:  timestamp, latitude, longitude and odometer are quantized to integers, each sent as the difference from the previous location.
+ * - dictionary:  event, activity type and all remaining fields (extras, etc) are sent as an index into "dict" (-1 when absent).
+ * - gzip:  the body is gzipped (Content-Encoding: gzip).
+ *
+ * Body (before gzip):
+ *
+ *  {
+ *    "encoding": "tsl-compact-1",
+ *    "count": 2,
+ *    "params": {...},                  // Config.params, once per batch.
+ *    "dict": ["motionchange", "still", "{\"extras\":{\"route\":7}}"],
+ *    "uuid": ["...", "..."],
+ *    "t":    [1700000000000, 1000],    // ms;  first absolute, then delta.
+ *    "lat":  [45519219, 12],           // degrees * 1e6;  first absolute, then delta.
+ *    "lng":  [-73616785, -7],
+ *    "acc":  [50, 42],                 // meters * 10
+ *    "spd":  [0, 125],                 // m/s * 100 (-1 unknown)
+ *    "hdg":  [0, 1805],                // degrees * 10 (-1 unknown)
+ *    "alt":  [120, 121],               // meters * 10
+ *    "odo":  [1500, 3],                // meters;  first absolute, then delta.
+ *    "mov":  [0, 1],
+ *    "evt":  [0, -1],
+ *    "act":  [1, 1],
+ *    "actc": [100, 100],
+ *    "bat":  [85, 85],                 // battery level * 100 (-1 unknown)
+ *    "chg":  [0, 0],
+ *    "rest": [2, 2]                    // remaining fields, as a JSON object string.
+ *  }
+ *
+ * The server decodes a location i by accumulating the delta columns up to i and reversing the quantization.
+ *
+ * As with the standard encoding, the batch is nested under Config.httpRootProperty ({"location": {"encoding": ...}}), or is the
+ * body itself when httpRootProperty is ".".  A 401 response refreshes the authorization token (Config.authorization.refreshUrl)
+ * and the batch is re-sent once.
+ */
+public class CompactSync {
+    public static final String FIELD_SYNC_ENCODING  = "syncEncoding";
+    public static final String ENCODING_COMPACT     = "compact";
+    public static final String ENCODING_VERSION     = "tsl-compact-1";
+    public static final String FIELD_SYNC_CONCURRENCY = "syncConcurrency";
+    public static final int MAX_SYNC_CONCURRENCY    = 4;
+
+    private static final double COORD_SCALE = 1e6;
+    // Config.httpRootProperty which places the batch at the root of the body.
+    private static final String ROOT_PROPERTY_NONE = ".";
+    private static final long REFRESH_TIMEOUT = 60000;
+    // Serializes token refreshes among concurrent uploads.
+    private static final Object sRefreshLock = new Object();
+
+    private static final String[] COLUMNS = {"uuid", "t", "lat", "lng", "acc", "spd", "hdg", "alt", "odo", "mov", "evt", "act", "actc", "bat", "chg", "rest"};
+
+    /**
+     * Parse a location record for encoding.  Returns null when the record isn't a JSON object (eg: Config.locationTemplate).
+     */
+    public static JSONObject parse(LocationModel record) {
+        Object json = record.json;
+        if (json instanceof JSONObject) {
+            return (JSONObject) json;
+        }
+        if (json instanceof String) {
+            try {
+                return new JSONObject((String) json);
+            } catch (JSONException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Encode a batch of locations into the columnar form documented above.
+     */
+    public static JSONObject toColumns(List<JSONObject> records, JSONObject params) throws JSONException {
+        Map<String, JSONArray> columns = new HashMap<String, JSONArray>();
+        for (String column : COLUMNS) {
+            columns.put(column, new JSONArray());
+        }
+        Dictionary dict = new Dictionary();
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        long prevTime = 0, prevLat = 0, prevLng = 0, prevOdometer = 0;
+        for (JSONObject record : records) {
+            JSONObject coords = record.optJSONObject("coords");
+            if (coords == null) { coords = new JSONObject(); }
+            JSONObject activity = record.optJSONObject("activity");
+            if (activity == null) { activity = new JSONObject(); }
+            JSONObject battery = record.optJSONObject("battery");
+            if (battery == null) { battery = new JSONObject(); }
+
+            long time = parseTime(iso, record.optString("timestamp"));
+            long lat = Math.round(coords.optDouble("latitude", 0) * COORD_SCALE);
+            long lng = Math.round(coords.optDouble("longitude", 0) * COORD_SCALE);
+            long odometer = Math.round(record.optDouble("odometer", 0));
+
+            columns.get("uuid").put(record.optString("uuid"));
+            columns.get("t").put(time - prevTime);
+            columns.get("lat").put(lat - prevLat);
+            columns.get("lng").put(lng - prevLng);
+            columns.get("odo").put(odometer - prevOdometer);
+            prevTime = time;
+            prevLat = lat;
+            prevLng = lng;
+            prevOdometer = odometer;
+
+            columns.get("acc").put(Math.round(coords.optDouble("accuracy", -0.1) * 10));
+            columns.get("spd").put(Math.round(coords.optDouble("speed", -0.01) * 100));
+            columns.get("hdg").put(Math.round(coords.optDouble("heading", -0.1) * 10));
+            columns.get("alt").put(Math.round(coords.optDouble("altitude", 0) * 10));
+            columns.get("mov").put(record.optBoolean("is_moving") ? 1 : 0);
+            columns.get("evt").put(dict.indexOf(record.optString("event", null)));
+            columns.get("act").put(dict.indexOf(activity.optString("type", null)));
+            columns.get("actc").put(activity.optInt("confidence", -1));
+            columns.get("bat").put(Math.round(battery.optDouble("level", -0.01) * 100));
+            columns.get("chg").put(battery.optBoolean("is_charging") ? 1 : 0);
+            columns.get("rest").put(dict.indexOf(rest(record)));
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("encoding", ENCODING_VERSION);
+        result.put("count", records.size());
+        if (params != null && params.length() > 0) {
+            result.put("params", params);
+        }
+        result.put("dict", dict.values);
+        for (String column : COLUMNS) {
+            result.put(column, columns.get(column));
+        }
+        return result;
+    }
+
+    /**
+     * Encode and gzip a batch of locations, nested under rootProperty (null or "." for none).
+     */
+    public static byte[] encode(List<JSONObject> records, JSONObject params, String rootProperty) throws JSONException, IOException {
+        JSONObject body = toColumns(records, params);
+        if (rootProperty != null && !rootProperty.isEmpty() && !ROOT_PROPERTY_NONE.equals(rootProperty)) {
+            body = new JSONObject().put(rootProperty, body);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+        try {
+            gzip.write(body.toString().getBytes("UTF-8"));
+        } finally {
+            gzip.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * POST an encoded batch to Config.url with Config.method / headers.  Upon 401, refresh the authorization token and re-send once.
+     * Returns the HTTP status.
+     * @param onRefresh run once the authorization token has been refreshed (it's committed to the config).
+     */
+    public static int post(Context context, TSConfig config, byte[] body, Runnable onRefresh) throws IOException {
+        String accessToken = getAccessToken(config);
+        int status = send(config, body, accessToken);
+        if (status == 401 && refreshAuthorization(context, config, accessToken, onRefresh)) {
+            status = send(config, body, getAccessToken(config));
+        }
+        return status;
+    }
+
+    /**
+     * Refresh the authorization token which was rejected, unless a concurrent upload already has.  Blocks until refreshed.
+     * Returns true when there's a new token to retry with.
+     */
+    private static boolean refreshAuthorization(Context context, TSConfig config, String rejectedToken, final Runnable onRefresh) {
+        synchronized (sRefreshLock) {
+            TSAuthorization authorization = config.getAuthorization();
+            if (authorization == null) {
+                return false;
+            }
+            String accessToken = authorization.getAccessToken();
+            if (accessToken != null && !accessToken.equals(rejectedToken)) {
+                return true;
+            }
+            if (!authorization.canRefreshAuthorizationToken()) {
+                return false;
+            }
+            final CountDownLatch latch = new CountDownLatch(1);
+            final boolean[] refreshed = new boolean[1];
+            authorization.refreshAuthorizationToken(context, new TSAuthorization.Callback() {
+                @Override public void invoke(AuthorizationEvent event) {
+                    refreshed[0] = event.isSuccessful();
+                    if (refreshed[0]) {
+                        onRefresh.run();
+                    } else {
+                        AsyncLog.warn(TSLog.warn("CompactSync failed to refresh authorization: " + event.getError()));
+                    }
+                    latch.countDown();
+                }
+            });
+            try {
+                if (!latch.await(REFRESH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    return false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return refreshed[0];
+        }
+    }
+
+    private static String getAccessToken(TSConfig config) {
+        TSAuthorization authorization = config.getAuthorization();
+        return (authorization != null) ? authorization.getAccessToken() : null;
+    }
+
+    private static int send(TSConfig config, byte[] body, String accessToken) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(config.getUrl()).openConnection();
+        try {
+            int timeout = (config.getHttpTimeout() != null) ? config.getHttpTimeout() : 60000;
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setRequestMethod(config.getMethod());
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setRequestProperty("X-Location-Encoding", ENCODING_VERSION);
+
+            JSONObject headers = config.getHeaders();
+            if (headers != null) {
+                Iterator<String> keys = headers.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    connection.setRequestProperty(key, headers.optString(key));
+                }
+            }
+            if (accessToken != null && !accessToken.isEmpty()) {
+                connection.setRequestProperty("Authorization", "Bearer " + accessToken);
+            }
+
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+            int status = connection.getResponseCode();
+            // Drain the response so the connection may be re-used.
+            InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                byte[] buffer = new byte[1024];
+                while (in.read(buffer) != -1) { }
+                in.close();
+            }
+            return status;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static long parseTime(SimpleDateFormat iso, String timestamp) {
+        try {
+            return iso.parse(timestamp).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The fields of a location not encoded by a column, as a JSON string (null when none).
+     */
+    private static String rest(JSONObject record) throws JSONException {
+        JSONObject rest = new JSONObject();
+        Iterator<String> keys = record.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if ("uuid".equals(key) || "timestamp".equals(key) || "odometer".equals(key) || "is_moving".equals(key) || "event".equals(key)) {
+                continue;
+            }
+            Object value = record.get(key);
+            if ("coords".equals(key)) {
+                value = without((JSONObject) value, "latitude", "longitude", "accuracy", "speed", "heading", "altitude");
+            } else if ("activity".equals(key)) {
+                value = without((JSONObject) value, "type", "confidence");
+            } else if ("battery".equals(key)) {
+                value = without((JSONObject) value, "level", "is_charging");
+            }
+            if (value != null) {
+                rest.put(key, value);
+            }
+        }
+        return (rest.length() > 0) ? rest.toString() : null;
+    }
+
+    private static JSONObject without(JSONObject object, String... fields) throws JSONException {
+        JSONObject result = new JSONObject();
+        Iterator<String> keys = object.keys();
+        outer:
+        while (keys.hasNext()) {
+            String key = keys.next();
+            for (String field : fields) {
+                if (field.equals(key)) { continue outer; }
+            }
+            result.put(key, object.get(key));
+        }
+        return (result.length() > 0) ? result : null;
+    }
+
+    private static class Dictionary {
+        final JSONArray values = new JSONArray();
+        final Map<String, Integer> index = new HashMap<String, Integer>();
+
+        int indexOf(String value) {
+            if (value == null || value.isEmpty()) {
+                return -1;
+            }
+            Integer i = index.get(value);
+            if (i == null) {
+                i = values.length();
+                values.put(value);
+                index.put(value, i);
+            }
+            return i;
+        }
+    }
+}
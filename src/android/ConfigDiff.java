@@ -0,0 +1,50 @@
+package com.transistorsoft.cordova.bggeo;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * ConfigDiff
+ * The fields of a #setConfig which differ from the current config, so that only those are applied and only the subsystems affected
+ * by them are re-armed.  Pure:  the caller provides the current config (the cached State).
+ */
+public class ConfigDiff {
+    // State fields the SDK changes by itself, at any time:  #setConfig always applies them.
+    static final Set<String> VOLATILE_STATE_FIELDS = new HashSet<String>(Arrays.asList(
+            "enabled", "isMoving", "trackingMode", "odometer", "schedulerEnabled", "didLaunchInBackground", "didDeviceReboot"
+    ));
+
+    /**
+     * @return the fields of params which are absent from current or differ from it {field: value}.  VOLATILE_STATE_FIELDS are never
+     * considered unchanged.
+     */
+    public static JSONObject diff(JSONObject current, JSONObject params) throws JSONException {
+        JSONObject changes = new JSONObject();
+        Iterator<String> keys = params.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object value = params.get(key);
+            if (VOLATILE_STATE_FIELDS.contains(key) || !current.has(key) || !valueEquals(current.get(key), value)) {
+                changes.put(key, value);
+            }
+        }
+        return changes;
+    }
+
+    static boolean valueEquals(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return ((Number) a).doubleValue() == ((Number) b).doubleValue();
+        }
+        if (a instanceof JSONObject || a instanceof JSONArray) {
+            // Key-order differences are only reported as (harmless) changes.
+            return (b != null) && a.getClass().equals(b.getClass()) && a.toString().equals(b.toString());
+        }
+        return a.equals(b);
+    }
+}
@@ -0,0 +1,349 @@
+package com.transistorsoft.cordova.bggeo;
+
+import com.transistorsoft.locationmanager.geofence.TSGeofence;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * GeofenceIndex
+ * Grid index of stored geofences for proximity / bounding-box queries.  Each geofence is filed under every
+ * cell its circle's bounding-box overlaps.  It mirrors the geofence store through the plugin's add / remove
+ * actions and is loaded from the store on first query.
+ * Every mutation bumps a revision, recorded per geofence (and per removed geofence, as a tombstone) so that
+ * #since can answer with only what changed.
+ */
+public class GeofenceIndex {
+    // Cell size in degrees (~5.5km of latitude).
+    private static final double CELL_SIZE = 0.05;
+    private static final double METERS_PER_DEGREE = 111320;
+    private static final double EARTH_RADIUS = 6371008.8;
+    private static final int COLUMNS = (int) Math.ceil(360 / CELL_SIZE);
+
+    private final Map<String, TSGeofence> geofences = new HashMap<String, TSGeofence>();
+    private final Map<Long, Set<String>> cells = new HashMap<Long, Set<String>>();
+    // Max removed identifiers remembered for #since.
+    private static final int MAX_TOMBSTONES = 1000;
+
+    private final Map<String, Revision> revisions = new HashMap<String, Revision>();
+    private final LinkedHashMap<String, Revision> tombstones = new LinkedHashMap<String, Revision>();
+    private boolean loaded;
+    // Incremented on every mutation, so a load racing with a mutation is not trusted.  Seeded from the clock so
+    // revisions handed out by a previous launch are older than any of this one.
+    private long revision = System.currentTimeMillis();
+    // Revision of the last load:  changes before it are unknown.
+    private long baseRevision = revision;
+    // Revision of the newest discarded tombstone:  removals before it are unknown.
+    private long floorRevision;
+
+    static class Revision {
+        final long created;
+        long changed;
+
+        Revision(long created) {
+            this.created = created;
+            this.changed = created;
+        }
+    }
+
+    static class Match {
+        final TSGeofence geofence;
+        final double distance;
+
+        Match(TSGeofence geofence, double distance) {
+            this.geofence = geofence;
+            this.distance = distance;
+        }
+    }
+
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    synchronized long getRevision() {
+        return revision;
+    }
+
+    synchronized void load(List<TSGeofence> records, long fromRevision) {
+        reset();
+        for (TSGeofence geofence : records) {
+            index(geofence);
+            revisions.put(geofence.getIdentifier(), new Revision(baseRevision));
+        }
+        loaded = (fromRevision == revision);
+    }
+
+    synchronized void put(TSGeofence geofence) {
+        revision++;
+        if (!loaded) { return; }
+        touch(geofence.getIdentifier());
+        index(geofence);
+    }
+
+    synchronized void putAll(List<TSGeofence> records) {
+        revision++;
+        if (!loaded) { return; }
+        for (TSGeofence geofence : records) {
+            touch(geofence.getIdentifier());
+            index(geofence);
+        }
+    }
+
+    synchronized void remove(String identifier) {
+        revision++;
+        if (!loaded) { return; }
+        unindex(identifier);
+        tombstone(identifier);
+    }
+
+    synchronized void removeAll(List<String> identifiers) {
+        revision++;
+        if (!loaded) { return; }
+        for (String identifier : identifiers) {
+            unindex(identifier);
+            tombstone(identifier);
+        }
+    }
+
+    synchronized void clear() {
+        revision++;
+        if (!loaded) {
+            reset();
+            loaded = true;
+            return;
+        }
+        for (String identifier : new ArrayList<String>(geofences.keySet())) {
+            tombstone(identifier);
+        }
+        geofences.clear();
+        cells.clear();
+    }
+
+    synchronized JSONObject since(long since) throws JSONException {
+        boolean reset = (since < baseRevision) || (since < floorRevision) || (since > revision);
+        JSONArray added = new JSONArray();
+        JSONArray modified = new JSONArray();
+        JSONArray removed = new JSONArray();
+        for (Map.Entry<String, Revision> entry : revisions.entrySet()) {
+            Revision r = entry.getValue();
+            if (reset || r.created > since) {
+                added.put(geofences.get(entry.getKey()).toJson());
+            } else if (r.changed > since) {
+                modified.put(geofences.get(entry.getKey()).toJson());
+            }
+        }
+        if (!reset) {
+            for (Map.Entry<String, Revision> entry : tombstones.entrySet()) {
+                Revision r = entry.getValue();
+                // Skip geofences added and removed since:  the client never saw them.
+                if (r.changed > since && r.created <= since) {
+                    removed.put(entry.getKey());
+                }
+            }
+        }
+        JSONObject result = new JSONObject();
+        result.put("revision", revision);
+        result.put("reset", reset);
+        result.put("added", added);
+        result.put("modified", modified);
+        result.put("removed", removed);
+        return result;
+    }
+
+    private void reset() {
+        geofences.clear();
+        cells.clear();
+        revisions.clear();
+        tombstones.clear();
+        baseRevision = revision;
+    }
+
+    private void touch(String identifier) {
+        Revision r = revisions.get(identifier);
+        if (r == null) {
+            tombstones.remove(identifier);
+            revisions.put(identifier, new Revision(revision));
+        } else {
+            r.changed = revision;
+        }
+    }
+
+    private void tombstone(String identifier) {
+        Revision r = revisions.remove(identifier);
+        if (r == null) { return; }
+        r.changed = revision;
+        tombstones.put(identifier, r);
+        Iterator<Map.Entry<String, Revision>> iterator = tombstones.entrySet().iterator();
+        while (tombstones.size() > MAX_TOMBSTONES) {
+            floorRevision = iterator.next().getValue().changed;
+            iterator.remove();
+        }
+    }
+
+    synchronized List<Match> near(double latitude, double longitude, double radius, int limit) {
+        double dLat = radius / METERS_PER_DEGREE;
+        double dLng = radius / metersPerDegreeLongitude(latitude);
+        List<Match> matches = new ArrayList<Match>();
+        for (TSGeofence geofence : candidates(latitude - dLat, longitude - dLng, latitude + dLat, longitude + dLng)) {
+            // The geofence's center must lie within radius.
+            double distance = distance(latitude, longitude, geofence.getLatitude(), geofence.getLongitude());
+            if (distance <= radius) {
+                matches.add(new Match(geofence, distance));
+            }
+        }
+        Collections.sort(matches, new Comparator<Match>() {
+            @Override public int compare(Match a, Match b) {
+                return Double.compare(a.distance, b.distance);
+            }
+        });
+        return (limit > 0 && matches.size() > limit) ? new ArrayList<Match>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * A box with west > east crosses the antimeridian.
+     */
+    synchronized List<TSGeofence> inBounds(double south, double west, double north, double east) {
+        List<TSGeofence> result = new ArrayList<TSGeofence>();
+        for (TSGeofence geofence : candidates(south, west, north, east)) {
+            // Distance from the circle's center to the nearest point of the box.
+            double latitude = Math.max(south, Math.min(north, geofence.getLatitude()));
+            double longitude = nearestLongitude(geofence.getLongitude(), west, east);
+            if (distance(latitude, longitude, geofence.getLatitude(), geofence.getLongitude()) <= geofence.getRadius()) {
+                result.add(geofence);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Geofences filed under the cells overlapping the box.  Falls back to a scan when the box spans more cells
+     * than there are geofences.  A box with west > east crosses the antimeridian:  it's the two ranges
+     * west -> 180 and -180 -> east.
+     */
+    private Iterable<TSGeofence> candidates(double south, double west, double north, double east) {
+        if (west > east) {
+            east += 360;
+        }
+        int minRow = row(south), maxRow = row(north);
+        int[] columns = columns(west, east);
+        long cellCount = (long) (maxRow - minRow + 1) * (columns[1] - columns[0] + 1);
+        if (cellCount > geofences.size()) {
+            return geofences.values();
+        }
+        Set<String> identifiers = new HashSet<String>();
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = columns[0]; col <= columns[1]; col++) {
+                Set<String> cell = cells.get(key(row, Math.floorMod(col, COLUMNS)));
+                if (cell != null) { identifiers.addAll(cell); }
+            }
+        }
+        List<TSGeofence> result = new ArrayList<TSGeofence>(identifiers.size());
+        for (String identifier : identifiers) {
+            result.add(geofences.get(identifier));
+        }
+        return result;
+    }
+
+    private void index(TSGeofence geofence) {
+        // Adding a geofence with an existing identifier replaces it.
+        unindex(geofence.getIdentifier());
+        geofences.put(geofence.getIdentifier(), geofence);
+        for (long key : keys(geofence)) {
+            Set<String> cell = cells.get(key);
+            if (cell == null) {
+                cell = new HashSet<String>();
+                cells.put(key, cell);
+            }
+            cell.add(geofence.getIdentifier());
+        }
+    }
+
+    private void unindex(String identifier) {
+        TSGeofence geofence = geofences.remove(identifier);
+        if (geofence == null) { return; }
+        for (long key : keys(geofence)) {
+            Set<String> cell = cells.get(key);
+            if (cell != null) {
+                cell.remove(identifier);
+                if (cell.isEmpty()) { cells.remove(key); }
+            }
+        }
+    }
+
+    private List<Long> keys(TSGeofence geofence) {
+        double dLat = geofence.getRadius() / METERS_PER_DEGREE;
+        double dLng = geofence.getRadius() / metersPerDegreeLongitude(geofence.getLatitude());
+        int[] columns = columns(geofence.getLongitude() - dLng, geofence.getLongitude() + dLng);
+        List<Long> keys = new ArrayList<Long>();
+        for (int row = row(geofence.getLatitude() - dLat); row <= row(geofence.getLatitude() + dLat); row++) {
+            for (int col = columns[0]; col <= columns[1]; col++) {
+                keys.add(key(row, Math.floorMod(col, COLUMNS)));
+            }
+        }
+        return keys;
+    }
+
+    private static int row(double latitude) {
+        return (int) Math.floor((Math.max(-90, Math.min(90, latitude)) + 90) / CELL_SIZE);
+    }
+
+    /**
+     * @return the {first, last} column spanned by west -> east (west <= east), unwrapped:  a span running past the
+     * antimeridian continues beyond [0, COLUMNS), to be wrapped with Math#floorMod.
+     */
+    private static int[] columns(double west, double east) {
+        if (east - west >= 360) {
+            return new int[] {0, COLUMNS - 1};
+        }
+        return new int[] {
+                (int) Math.floor((west + 180) / CELL_SIZE),
+                (int) Math.floor((east + 180) / CELL_SIZE)
+        };
+    }
+
+    /**
+     * @return the longitude of the span west -> east (crossing the antimeridian when west > east) nearest to longitude.
+     */
+    private static double nearestLongitude(double longitude, double west, double east) {
+        boolean inside = (west <= east) ? (longitude >= west && longitude <= east) : (longitude >= west || longitude <= east);
+        if (inside) {
+            return longitude;
+        }
+        return (degreesBetween(longitude, west) <= degreesBetween(longitude, east)) ? west : east;
+    }
+
+    private static double degreesBetween(double lng1, double lng2) {
+        double delta = Math.abs(lng1 - lng2) % 360;
+        return (delta > 180) ? 360 - delta : delta;
+    }
+
+    private static long key(int row, int col) {
+        return (long) row * COLUMNS + col;
+    }
+
+    private static double metersPerDegreeLongitude(double latitude) {
+        return METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+    }
+
+    /**
+     * Haversine distance in meters.
+     */
+    private static double distance(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,281 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.transistorsoft.locationmanager.adapter.BackgroundGeolocation;
+import com.transistorsoft.locationmanager.adapter.callback.TSBeforeInsertBlock;
+import com.transistorsoft.locationmanager.location.TSLocation;
+import com.transistorsoft.locationmanager.logger.TSLog;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HeadlessRules
+ * Declarative rules, provided with Config.headlessRules (#ready / #setConfig), evaluated natively so that no Javascript
+ * (nor WebView) is required to filter events while the app is terminated:
+ *
+ *  {type: "maxAccuracy", accuracy: 100}                        Don't persist (nor upload) locations with accuracy > 100 meters.
+ *  {type: "stationarySample", every: 5}                        Persist only every 5th stationary location.
+ *  {type: "throttle", event: "heartbeat", interval: 3600000}   Route at most one heartbeat per hour to BackgroundGeolocationHeadlessTask.
+ *
+ * Location rules are evaluated before each location is persisted (with BackgroundGeolocation#setBeforeInsertBlock), followed by the
+ * LocationFilter (Config.locationSmoothing) and the TrajectorySimplifier (Config.simplifyTolerance).  Throttle rules are evaluated by BackgroundGeolocationHeadlessTask before routing an
+ * event.  Rules are persisted so they remain in effect after the app is terminated.
+ *
+ * The before-insert block is process-wide:  location rules apply in all modes (foreground, background and terminated), not only
+ * headless.  The block is installed only while there are location rules, and only ever replaced or removed by this class.  The SDK
+ * holds a single block:  a host app's own block must be registered with #setBeforeInsertBlock, which chains it after the rules,
+ * rather than upon the adapter (where it'd replace the rules, or be replaced by them).
+ */
+public class HeadlessRules implements TSBeforeInsertBlock {
+    public static final String FIELD_RULES = "headlessRules";
+
+    private static final String PREFS_NAME = "TSHeadlessRules";
+    private static final String PREF_RULES = "rules";
+    private static final String PREF_LAST_ROUTED = "lastRouted.";
+    private static final String PREF_STATIONARY_COUNT = "stationaryCount";
+
+    private static final String TYPE_MAX_ACCURACY = "maxAccuracy";
+    private static final String TYPE_STATIONARY_SAMPLE = "stationarySample";
+    private static final String TYPE_THROTTLE = "throttle";
+
+    private static HeadlessRules sInstance;
+
+    public static synchronized HeadlessRules getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new HeadlessRules(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Register the host app's own before-insert block, evaluated after the location rules (upon the JSON they produce).  null removes
+     * it.
+     */
+    public static void setBeforeInsertBlock(Context context, TSBeforeInsertBlock block) {
+        HeadlessRules rules = getInstance(context);
+        synchronized (rules) {
+            rules.mDelegate = block;
+            rules.mInstalled = true;
+            rules.installBeforeInsertBlock(context);
+        }
+    }
+
+    /**
+     * Load the persisted rules and install the location rules upon the adapter.  Safe to call for every event.  Called as the
+     * process starts by HeadlessRulesProvider, so that the rules apply to a process launched without the WebView.
+     */
+    public static HeadlessRules install(Context context) {
+        HeadlessRules rules = getInstance(context);
+        rules.installBeforeInsertBlock(context);
+        return rules;
+    }
+
+    private final SharedPreferences mPrefs;
+    private final LocationFilter mFilter;
+    private final TrajectorySimplifier mSimplifier;
+    private JSONArray mRules = new JSONArray();
+    // Location rules.  0 disables.
+    private float mMaxAccuracy;
+    private int mStationaryEvery;
+    private int mStationaryCount;
+    // Throttle rules:  event-name -> min interval in millis.
+    private final Map<String, Long> mThrottles = new HashMap<String, Long>();
+    private final Map<String, Long> mLastRouted = new HashMap<String, Long>();
+    private boolean mInstalled;
+    // The block this class installed upon the adapter (null when none).
+    private TSBeforeInsertBlock mBlockSet;
+    // The host app's block (#setBeforeInsertBlock).
+    private TSBeforeInsertBlock mDelegate;
+
+    private HeadlessRules(Context context) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mFilter = LocationFilter.getInstance(context);
+        mSimplifier = new TrajectorySimplifier(context);
+        String json = mPrefs.getString(PREF_RULES, null);
+        if (json != null) {
+            try {
+                apply(new JSONArray(json));
+            } catch (JSONException e) {
+                AsyncLog.error(TSLog.error("Failed to load headless rules: " + e.getMessage()), e);
+            }
+        }
+        // Headless events can each arrive in a fresh process.
+        mStationaryCount = mPrefs.getInt(PREF_STATIONARY_COUNT, 0);
+    }
+
+    /**
+     * Replace the rules.  null (or empty) removes all rules.
+     */
+    public synchronized void setRules(Context context, JSONArray rules) throws JSONException {
+        if (rules == null) {
+            rules = new JSONArray();
+        }
+        apply(rules);
+        mPrefs.edit().putString(PREF_RULES, rules.toString()).apply();
+        if (mInstalled) {
+            installBeforeInsertBlock(context);
+        }
+    }
+
+    public synchronized JSONArray getRules() {
+        return mRules;
+    }
+
+    /**
+     * Set Config.simplifyTolerance (meters).  0 disables trajectory simplification.
+     */
+    public synchronized void setSimplifyTolerance(Context context, float tolerance) {
+        mSimplifier.setTolerance(tolerance);
+        if (mInstalled) {
+            installBeforeInsertBlock(context);
+        }
+    }
+
+    /**
+     * Set Config.locationSmoothing.  null disables the LocationFilter.
+     */
+    public synchronized void setLocationSmoothing(Context context, JSONObject options) {
+        mFilter.configure(options);
+        if (mInstalled) {
+            installBeforeInsertBlock(context);
+        }
+    }
+
+    public TrajectorySimplifier getSimplifier() {
+        return mSimplifier;
+    }
+
+    /**
+     * Should a headless event be routed to its handler?  Applies the throttle rules.
+     */
+    public synchronized boolean shouldRoute(String event) {
+        Long interval = mThrottles.get(event);
+        if (interval == null) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Long last = mLastRouted.get(event);
+        if (last == null) {
+            last = mPrefs.getLong(PREF_LAST_ROUTED + event, 0);
+        }
+        if (now - last < interval) {
+            return false;
+        }
+        mLastRouted.put(event, now);
+        // Headless events can each arrive in a fresh process.
+        mPrefs.edit().putLong(PREF_LAST_ROUTED + event, now).apply();
+        return true;
+    }
+
+    @Override
+    public JSONObject onBeforeInsert(TSLocation location) {
+        TSBeforeInsertBlock delegate;
+        synchronized (this) {
+            delegate = mDelegate;
+        }
+        if (!hasLocationRules() && delegate != null) {
+            // Rules removed since the block was installed.
+            return delegate.onBeforeInsert(location);
+        }
+        if (!accept(location)) {
+            if (TSLog.logger.isDebugEnabled()) {
+                AsyncLog.debug(TSLog.info("HeadlessRules dropped location: " + location.getUUID()));
+            }
+            return null;
+        }
+        try {
+            JSONObject json = location.toJson();
+            if (!mFilter.apply(location, json)) {
+                if (TSLog.logger.isDebugEnabled()) {
+                    AsyncLog.debug(TSLog.info("LocationFilter rejected location: " + location.getUUID()));
+                }
+                return null;
+            }
+            if (delegate != null) {
+                json = delegate.onBeforeInsert(location);
+                if (json == null) {
+                    return null;
+                }
+            }
+            JSONObject coords = json.optJSONObject("coords");
+            if (coords != null) {
+                mSimplifier.offer(location, coords.optDouble("latitude"), coords.optDouble("longitude"));
+            }
+            return json;
+        } catch (JSONException e) {
+            AsyncLog.error(TSLog.error(e.getMessage()), e);
+            return null;
+        }
+    }
+
+    private synchronized boolean accept(TSLocation location) {
+        if (mMaxAccuracy > 0 && location.getLocation().getAccuracy() > mMaxAccuracy) {
+            return false;
+        }
+        if (mStationaryEvery > 1 && !location.getIsMoving()) {
+            int count = mStationaryCount++;
+            // Persisted as the throttle state is, so that the count spans headless launches.
+            mPrefs.edit().putInt(PREF_STATIONARY_COUNT, mStationaryCount).apply();
+            return (count % mStationaryEvery) == 0;
+        }
+        return true;
+    }
+
+    private synchronized boolean hasLocationRules() {
+        return (mMaxAccuracy > 0) || (mStationaryEvery > 1) || mFilter.isEnabled() || mSimplifier.isEnabled();
+    }
+
+    /**
+     * Install this block while there are location rules (or smoothing / simplification), else the host app's block (if any).  The
+     * adapter's block is only changed when this class set it, or has one to set.
+     */
+    private synchronized void installBeforeInsertBlock(Context context) {
+        mInstalled = true;
+        TSBeforeInsertBlock block = hasLocationRules() ? this : mDelegate;
+        if (block == mBlockSet) {
+            return;
+        }
+        BackgroundGeolocation.getInstance(context.getApplicationContext()).setBeforeInsertBlock(block);
+        mBlockSet = block;
+    }
+
+    /**
+     * Parse (and validate) the rules.  The current rules are untouched when invalid.
+     */
+    private void apply(JSONArray rules) throws JSONException {
+        float maxAccuracy = 0;
+        int stationaryEvery = 0;
+        Map<String, Long> throttles = new HashMap<String, Long>();
+
+        for (int i = 0; i < rules.length(); i++) {
+            JSONObject rule = rules.getJSONObject(i);
+            String type = rule.getString("type");
+            if (TYPE_MAX_ACCURACY.equals(type)) {
+                maxAccuracy = (float) rule.getDouble("accuracy");
+            } else if (TYPE_STATIONARY_SAMPLE.equals(type)) {
+                stationaryEvery = rule.getInt("every");
+            } else if (TYPE_THROTTLE.equals(type)) {
+                throttles.put(rule.getString("event"), rule.getLong("interval"));
+            } else {
+                throw new JSONException("Unknown headless rule type: " + type);
+            }
+        }
+        mRules = rules;
+        mMaxAccuracy = maxAccuracy;
+        if (stationaryEvery != mStationaryEvery) {
+            mStationaryCount = 0;
+            mPrefs.edit().putInt(PREF_STATIONARY_COUNT, 0).apply();
+        }
+        mStationaryEvery = stationaryEvery;
+        mThrottles.clear();
+        mThrottles.putAll(throttles);
+        mLastRouted.clear();
+    }
+}
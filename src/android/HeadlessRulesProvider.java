@@ -0,0 +1,56 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.transistorsoft.locationmanager.logger.TSLog;
+
+/**
+ * HeadlessRulesProvider
+ * Installs the HeadlessRules before-insert block as the app's process starts.  Android creates an app's ContentProviders
+ * before Application#onCreate and before any of its services, so the location rules, LocationFilter and TrajectorySimplifier
+ * are in effect for a process launched by the SDK alone (eg: after the app was terminated, or at boot), before the SDK persists
+ * its first location, and whether or not the WebView loads or an event is routed to BackgroundGeolocationHeadlessTask.
+ *
+ * It serves no data:  it's registered (not exported) in the AndroidManifest by plugin.xml.
+ */
+public class HeadlessRulesProvider extends ContentProvider {
+    @Override
+    public boolean onCreate() {
+        try {
+            // Does nothing more than read the persisted rules when none are configured.
+            HeadlessRules.install(getContext());
+        } catch (Exception e) {
+            // Never prevent the app from starting.
+            AsyncLog.error(TSLog.error("Failed to install headless rules: " + e.getMessage()), e);
+        }
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return null;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        return 0;
+    }
+}
@@ -0,0 +1,172 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.location.Location;
+
+import com.transistorsoft.locationmanager.location.TSLocation;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * LocationCodec
+ * Compact binary encoding of location, motionchange and heartbeat events, for listeners registered with {encoding: "binary"}.
+ * Each event is delivered as an ArrayBuffer, decoded by www/API.js (decodeEvent), rather than as JSON built, stringified and
+ * re-parsed by the WebView.
+ *
+ * Field for field, the decoded event matches its JSON counterpart (but for location.timestamp, decoded as a Date):  the values are
+ * read from the SDK's own rendering of the location (TSLocation#toJson, rendered once and cached), so rounding and the -1 of unknown
+ * values are the same, and they're carried as float64.
+ *
+ * Layout (little-endian), a fixed 120 byte header followed by length-prefixed UTF-8 strings:
+ *
+ *   0  uint8    type (TYPE_*)
+ *   1  uint8    version
+ *   2  uint16   flags (FLAG_*)
+ *   4  float64  timestamp (epoch millis)
+ *  12  float64  coords.latitude
+ *  20  float64  coords.longitude
+ *  28  float64  coords.accuracy
+ *  36  float64  coords.speed
+ *  44  float64  coords.speed_accuracy
+ *  52  float64  coords.heading
+ *  60  float64  coords.heading_accuracy
+ *  68  float64  coords.altitude
+ *  76  float64  coords.ellipsoidal_altitude
+ *  84  float64  coords.altitude_accuracy
+ *  92  float64  odometer
+ * 100  float64  age (when FLAG_AGE)
+ * 108  float64  battery.level
+ * 116  uint8    activity.confidence
+ * 117  uint8[3] reserved
+ * 120  uint8 length, uuid  |  uint8 length, event  |  uint8 length, activity.type  |  uint16 length, extras (JSON)
+ *
+ * Locations which don't fit the layout (eg: carrying a geofence, provider or timestampMeta) encode to null:  they're delivered as JSON.
+ */
+public class LocationCodec {
+    public static final String FIELD_ENCODING = "encoding";
+    public static final String ENCODING_BINARY = "binary";
+
+    public static final int TYPE_LOCATION = 1;
+    public static final int TYPE_MOTIONCHANGE = 2;
+    public static final int TYPE_HEARTBEAT = 3;
+
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 120;
+
+    private static final int FLAG_IS_MOVING = 1;
+    private static final int FLAG_SAMPLE = 2;
+    private static final int FLAG_IS_CHARGING = 4;
+    private static final int FLAG_MOCK = 8;
+    private static final int FLAG_IS_HEARTBEAT = 16;
+    private static final int FLAG_AGE = 32;
+
+    private static final String FIELD_COORDS = "coords";
+    private static final String FIELD_ODOMETER = "odometer";
+    private static final String FIELD_BATTERY = "battery";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] EMPTY = new byte[0];
+
+    public static boolean isBinary(JSONObject options) {
+        return (options != null) && ENCODING_BINARY.equals(options.optString(FIELD_ENCODING));
+    }
+
+    /**
+     * The values which the LocationFilter may replace:  {latitude, longitude, speed, odometer}, as rendered to JSON.
+     */
+    public static double[] values(TSLocation location) {
+        try {
+            JSONObject json = location.toJson();
+            JSONObject coords = json.getJSONObject(FIELD_COORDS);
+            return new double[] {
+                    coords.getDouble("latitude"),
+                    coords.getDouble("longitude"),
+                    coords.optDouble("speed", -1),
+                    json.optDouble(FIELD_ODOMETER, 0)
+            };
+        } catch (JSONException e) {
+            Location fix = location.getLocation();
+            Float odometer = location.getOdometer();
+            return new double[] {
+                    fix.getLatitude(),
+                    fix.getLongitude(),
+                    fix.hasSpeed() ? fix.getSpeed() : -1,
+                    (odometer != null) ? odometer : 0
+            };
+        }
+    }
+
+    /**
+     * @param values from #values (filtered by LocationFilter#apply).
+     * @return the encoded event, or null when the location doesn't fit the layout.
+     */
+    public static byte[] encode(int type, TSLocation location, double[] values) {
+        JSONObject json;
+        try {
+            json = location.toJson();
+        } catch (JSONException e) {
+            return null;
+        }
+        JSONObject coords = json.optJSONObject(FIELD_COORDS);
+        if (coords == null || json.has("geofence") || json.has("provider") || json.has("timestampMeta")) {
+            return null;
+        }
+        byte[] uuid = bytes(location.getUUID());
+        byte[] event = bytes(location.getEvent());
+        byte[] activity = bytes(location.getActivityName());
+        JSONObject extras = location.getExtras();
+        byte[] extrasJson = ((extras != null) && (extras.length() > 0)) ? bytes(extras.toString()) : EMPTY;
+        if (uuid.length > 0xff || event.length > 0xff || activity.length > 0xff || extrasJson.length > 0xffff) {
+            return null;
+        }
+        JSONObject battery = json.optJSONObject(FIELD_BATTERY);
+        int flags = 0;
+        if (location.getIsMoving())             { flags |= FLAG_IS_MOVING; }
+        if (location.isSample())                { flags |= FLAG_SAMPLE; }
+        if (location.getBatteryIsCharging())    { flags |= FLAG_IS_CHARGING; }
+        if (json.optBoolean("mock"))            { flags |= FLAG_MOCK; }
+        if (json.optBoolean("is_heartbeat"))    { flags |= FLAG_IS_HEARTBEAT; }
+        if (json.has("age"))                    { flags |= FLAG_AGE; }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 5 + uuid.length + event.length + activity.length + extrasJson.length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) type);
+        buffer.put((byte) VERSION);
+        buffer.putShort((short) flags);
+        buffer.putDouble(location.getLocation().getTime());
+        buffer.putDouble(values[0]);
+        buffer.putDouble(values[1]);
+        buffer.putDouble(coords.optDouble("accuracy", -1));
+        buffer.putDouble(values[2]);
+        buffer.putDouble(coords.optDouble("speed_accuracy", -1));
+        buffer.putDouble(coords.optDouble("heading", -1));
+        buffer.putDouble(coords.optDouble("heading_accuracy", -1));
+        buffer.putDouble(coords.optDouble("altitude", -1));
+        buffer.putDouble(coords.optDouble("ellipsoidal_altitude", -1));
+        buffer.putDouble(coords.optDouble("altitude_accuracy", -1));
+        buffer.putDouble(values[3]);
+        buffer.putDouble(json.optDouble("age", 0));
+        buffer.putDouble((battery != null) ? battery.optDouble("level", -1) : location.getBatteryLevel());
+        buffer.put((byte) location.getActivityConfidence());
+        buffer.position(HEADER_SIZE);
+        putString(buffer, uuid);
+        putString(buffer, event);
+        putString(buffer, activity);
+        buffer.putShort((short) extrasJson.length);
+        buffer.put(extrasJson);
+        return buffer.array();
+    }
+
+    private static byte[] bytes(String value) {
+        return (value != null) ? value.getBytes(UTF8) : EMPTY;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        buffer.put((byte) value.length);
+        buffer.put(value);
+    }
+}
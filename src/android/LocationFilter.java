@@ -0,0 +1,388 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Location;
+
+import com.transistorsoft.locationmanager.location.TSLocation;
+import com.transistorsoft.locationmanager.logger.TSLog;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * LocationFilter
+ * Streaming Kalman filter smoothing location and speed, configured with Config.locationSmoothing (true, or {maxAccuracy, maxSpeed,
+ * processNoise}).  Drives a filtered odometer (#getOdometer / #setOdometer) accumulating the distance between filtered positions.
+ *
+ * A constant-velocity model on a local tangent plane (meters, east / north) about an origin near the track.  Both axes share one
+ * 2x2 covariance since fixes carry a single (isotropic) accuracy.  Position fixes are measurements with variance accuracy^2;  Doppler
+ * speed / bearing, when provided, is a velocity measurement.
+ *
+ * Fixes are rejected as outliers (neither persisted nor delivered to onLocation) when:
+ * - accuracy > maxAccuracy.
+ * - the speed implied by the distance from the filtered position (less the fix's accuracy) exceeds maxSpeed.
+ * Locations carrying an event (motionchange, geofence, heartbeat...) are never rejected.  After MAX_CONSECUTIVE_REJECTS rejections,
+ * the filter assumes a genuine jump (eg: leaving a tunnel) and restarts from the fix.
+ *
+ * The state is a fixed set of fields:  nothing is allocated per fix.  #update is free of Android calls so recorded traces can be
+ * replayed through it offline.
+ */
+public class LocationFilter {
+    public static final String FIELD_LOCATION_SMOOTHING = "locationSmoothing";
+
+    private static final String PREFS_NAME = "TSLocationFilter";
+    private static final String PREF_OPTIONS = "options";
+    private static final String PREF_ODOMETER = "odometer";
+
+    private static final float DEFAULT_MAX_ACCURACY = 100;
+    private static final float DEFAULT_MAX_SPEED = 70;
+    private static final float DEFAULT_PROCESS_NOISE = 2;
+    private static final int MAX_CONSECUTIVE_REJECTS = 3;
+    // A gap longer than this (millis) restarts the filter.
+    private static final long MAX_GAP = 10 * 60 * 1000;
+    // Re-center the tangent plane beyond this distance (meters) from the origin.
+    private static final double MAX_ORIGIN_DISTANCE = 100000;
+    // Variance ((m/s)^2) of a Doppler velocity measurement.
+    private static final double VELOCITY_VARIANCE = 1;
+    // Min interval (millis) between persisting the odometer.
+    private static final long ODOMETER_PERSIST_INTERVAL = 10000;
+    // Results kept by uuid:  the same fix is applied both before insert and to onLocation.
+    private static final int RESULTS = 4;
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    private static LocationFilter sInstance;
+
+    public static synchronized LocationFilter getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new LocationFilter(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private final SharedPreferences mPrefs;
+
+    // Config
+    private boolean mEnabled;
+    private float mMaxAccuracy = DEFAULT_MAX_ACCURACY;
+    private float mMaxSpeed = DEFAULT_MAX_SPEED;
+    private double mProcessNoise = DEFAULT_PROCESS_NOISE * DEFAULT_PROCESS_NOISE;
+
+    // State:  position (x, y) and velocity (vx, vy) in meters on the tangent plane;  covariance [[pxx, pxv], [pxv, pvv]].
+    private boolean mInitialized;
+    private double mOriginLat;
+    private double mOriginLng;
+    private double mOriginCos;
+    private double mX, mY, mVx, mVy;
+    private double mPxx, mPxv, mPvv;
+    private long mTime;
+    private int mConsecutiveRejects;
+
+    // Odometer
+    private double mOdometer;
+    private double mOdometerX, mOdometerY;
+    private long mOdometerPersistedAt;
+
+    // Results by uuid
+    private final String[] mUUIDs = new String[RESULTS];
+    private final double[] mLats = new double[RESULTS];
+    private final double[] mLngs = new double[RESULTS];
+    private final double[] mSpeeds = new double[RESULTS];
+    private final double[] mOdometers = new double[RESULTS];
+    private final boolean[] mRejected = new boolean[RESULTS];
+    private int mResultIndex;
+
+    private long mAccepted;
+    private long mRejectedCount;
+
+    LocationFilter(Context context) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mOdometer = mPrefs.getFloat(PREF_ODOMETER, 0);
+        String options = mPrefs.getString(PREF_OPTIONS, null);
+        if (options != null) {
+            try {
+                apply(new JSONObject(options));
+            } catch (JSONException e) {
+                AsyncLog.error(TSLog.error("Failed to load locationSmoothing: " + e.getMessage()), e);
+            }
+        }
+    }
+
+    /**
+     * Configure with Config.locationSmoothing.  null disables.
+     */
+    public synchronized void configure(JSONObject options) {
+        if (options != null) {
+            apply(options);
+            mPrefs.edit().putString(PREF_OPTIONS, options.toString()).apply();
+        } else {
+            mEnabled = false;
+            mPrefs.edit().remove(PREF_OPTIONS).apply();
+        }
+        mInitialized = false;
+    }
+
+    public synchronized boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public synchronized double getOdometer() {
+        return mOdometer;
+    }
+
+    public synchronized void setOdometer(double odometer) {
+        mOdometer = odometer;
+        mOdometerX = mX;
+        mOdometerY = mY;
+        persistOdometer(0);
+    }
+
+    /**
+     * Filter a location and render the result upon its JSON:  coords.latitude / longitude / speed and odometer are replaced by
+     * their filtered values.
+     * @return false when the location is rejected as an outlier.
+     */
+    public synchronized boolean apply(TSLocation location, JSONObject json) throws JSONException {
+        if (!mEnabled) {
+            return true;
+        }
+        int slot = process(location);
+        if (mRejected[slot]) {
+            return false;
+        }
+        JSONObject coords = json.optJSONObject("coords");
+        if (coords != null) {
+            coords.put("latitude", mLats[slot]);
+            coords.put("longitude", mLngs[slot]);
+            coords.put("speed", mSpeeds[slot]);
+        }
+        json.put("odometer", mOdometers[slot]);
+        return true;
+    }
+
+    /**
+     * Filter a location, rendering the result upon values {latitude, longitude, speed, odometer} (LocationCodec#values).
+     * @return false when the location is rejected as an outlier.
+     */
+    public synchronized boolean apply(TSLocation location, double[] values) {
+        if (!mEnabled) {
+            return true;
+        }
+        int slot = process(location);
+        if (mRejected[slot]) {
+            return false;
+        }
+        values[0] = mLats[slot];
+        values[1] = mLngs[slot];
+        values[2] = mSpeeds[slot];
+        values[3] = mOdometers[slot];
+        return true;
+    }
+
+    public synchronized JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("enabled", mEnabled);
+        json.put("maxAccuracy", mMaxAccuracy);
+        json.put("maxSpeed", mMaxSpeed);
+        json.put("processNoise", Math.sqrt(mProcessNoise));
+        json.put("accepted", mAccepted);
+        json.put("rejected", mRejectedCount);
+        json.put("odometer", mOdometer);
+        return json;
+    }
+
+    /**
+     * Advance the filter with a fix.
+     * @param mayReject false for fixes which must be accepted (they carry an event).
+     * @return false when the fix is rejected as an outlier.
+     */
+    boolean update(double lat, double lng, float accuracy, long time, boolean hasVelocity, float speed, float bearing, boolean moving, boolean mayReject) {
+        if (!mInitialized || (time - mTime) > MAX_GAP) {
+            restart(lat, lng, accuracy, time, moving);
+            mAccepted++;
+            return true;
+        }
+        double dt = (time - mTime) / 1000.0;
+        if (dt <= 0) {
+            // Duplicate / out-of-order fix:  report the current estimate.
+            mAccepted++;
+            return true;
+        }
+        double zx = toX(lng);
+        double zy = toY(lat);
+        if (mayReject) {
+            double distance = Math.max(0, Math.hypot(zx - mX, zy - mY) - accuracy);
+            if (accuracy > mMaxAccuracy || (distance / dt) > mMaxSpeed) {
+                if (++mConsecutiveRejects < MAX_CONSECUTIVE_REJECTS) {
+                    mRejectedCount++;
+                    return false;
+                }
+                // Consistently "impossible":  the fixes are right, the filter is wrong.
+                restart(lat, lng, accuracy, time, moving);
+                mAccepted++;
+                return true;
+            }
+        }
+        mConsecutiveRejects = 0;
+        mAccepted++;
+
+        // Predict.
+        double dt2 = dt * dt;
+        double q = mProcessNoise;
+        mX += mVx * dt;
+        mY += mVy * dt;
+        double pxx = mPxx + 2 * dt * mPxv + dt2 * mPvv + q * dt2 * dt2 / 4;
+        double pxv = mPxv + dt * mPvv + q * dt2 * dt / 2;
+        double pvv = mPvv + q * dt2;
+
+        // Position measurement.
+        double r = Math.max(1, (double) accuracy * accuracy);
+        double s = pxx + r;
+        double kx = pxx / s;
+        double kv = pxv / s;
+        double ex = zx - mX;
+        double ey = zy - mY;
+        mX += kx * ex;
+        mY += kx * ey;
+        mVx += kv * ex;
+        mVy += kv * ey;
+        mPxx = (1 - kx) * pxx;
+        mPxv = (1 - kx) * pxv;
+        mPvv = pvv - kv * pxv;
+
+        // Velocity measurement (Doppler).
+        if (hasVelocity) {
+            double radians = Math.toRadians(bearing);
+            s = mPvv + VELOCITY_VARIANCE;
+            kx = mPxv / s;
+            kv = mPvv / s;
+            double evx = speed * Math.sin(radians) - mVx;
+            double evy = speed * Math.cos(radians) - mVy;
+            mX += kx * evx;
+            mY += kx * evy;
+            mVx += kv * evx;
+            mVy += kv * evy;
+            pxx = mPxx - kx * mPxv;
+            pxv = mPxv - kx * mPvv;
+            mPvv = mPvv - kv * mPvv;
+            mPxx = pxx;
+            mPxv = pxv;
+        }
+        mTime = time;
+
+        if (moving) {
+            mOdometer += Math.hypot(mX - mOdometerX, mY - mOdometerY);
+        }
+        mOdometerX = mX;
+        mOdometerY = mY;
+
+        if (Math.abs(mX) > MAX_ORIGIN_DISTANCE || Math.abs(mY) > MAX_ORIGIN_DISTANCE) {
+            recenter();
+        }
+        return true;
+    }
+
+    double getLatitude() {
+        return mOriginLat + Math.toDegrees(mY / EARTH_RADIUS);
+    }
+
+    double getLongitude() {
+        return mOriginLng + Math.toDegrees(mX / (EARTH_RADIUS * mOriginCos));
+    }
+
+    double getSpeed() {
+        return Math.hypot(mVx, mVy);
+    }
+
+    private void restart(double lat, double lng, float accuracy, long time, boolean moving) {
+        if (mInitialized && moving) {
+            // Count the straight-line distance across the gap / jump.
+            mOdometer += Math.hypot(toX(lng) - mOdometerX, toY(lat) - mOdometerY);
+        }
+        mInitialized = true;
+        mOriginLat = lat;
+        mOriginLng = lng;
+        mOriginCos = Math.max(1e-6, Math.cos(Math.toRadians(lat)));
+        mX = mY = mVx = mVy = 0;
+        mPxx = Math.max(1, (double) accuracy * accuracy);
+        mPxv = 0;
+        mPvv = DEFAULT_MAX_SPEED * DEFAULT_MAX_SPEED / 4;
+        mTime = time;
+        mConsecutiveRejects = 0;
+        mOdometerX = mOdometerY = 0;
+    }
+
+    private void recenter() {
+        double lat = getLatitude();
+        double lng = getLongitude();
+        mOriginLat = lat;
+        mOriginLng = lng;
+        mOriginCos = Math.max(1e-6, Math.cos(Math.toRadians(lat)));
+        mOdometerX -= mX;
+        mOdometerY -= mY;
+        mX = mY = 0;
+    }
+
+    private double toX(double lng) {
+        return Math.toRadians(lng - mOriginLng) * EARTH_RADIUS * mOriginCos;
+    }
+
+    private double toY(double lat) {
+        return Math.toRadians(lat - mOriginLat) * EARTH_RADIUS;
+    }
+
+    /**
+     * @return the result slot of the location, advancing the filter unless it's already been applied.
+     */
+    private int process(TSLocation location) {
+        String uuid = location.getUUID();
+        int slot = find(uuid);
+        if (slot < 0) {
+            Location fix = location.getLocation();
+            boolean accepted = update(fix.getLatitude(), fix.getLongitude(), fix.getAccuracy(), fix.getTime(),
+                    fix.hasSpeed() && fix.hasBearing(), fix.getSpeed(), fix.getBearing(),
+                    location.getIsMoving(), location.getEvent() == null);
+            slot = store(uuid, accepted);
+            persistOdometer(fix.getTime());
+        }
+        return slot;
+    }
+
+    private int find(String uuid) {
+        if (uuid != null) {
+            for (int i = 0; i < RESULTS; i++) {
+                if (uuid.equals(mUUIDs[i])) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int store(String uuid, boolean accepted) {
+        int slot = mResultIndex;
+        mResultIndex = (mResultIndex + 1) % RESULTS;
+        mUUIDs[slot] = uuid;
+        mRejected[slot] = !accepted;
+        mLats[slot] = getLatitude();
+        mLngs[slot] = getLongitude();
+        mSpeeds[slot] = getSpeed();
+        mOdometers[slot] = mOdometer;
+        return slot;
+    }
+
+    private void persistOdometer(long time) {
+        if (time == 0 || (time - mOdometerPersistedAt) >= ODOMETER_PERSIST_INTERVAL) {
+            mOdometerPersistedAt = time;
+            mPrefs.edit().putFloat(PREF_ODOMETER, (float) mOdometer).apply();
+        }
+    }
+
+    private void apply(JSONObject options) {
+        mEnabled = true;
+        mMaxAccuracy = (float) options.optDouble("maxAccuracy", DEFAULT_MAX_ACCURACY);
+        mMaxSpeed = (float) options.optDouble("maxSpeed", DEFAULT_MAX_SPEED);
+        double noise = options.optDouble("processNoise", DEFAULT_PROCESS_NOISE);
+        mProcessNoise = noise * noise;
+    }
+}
@@ -0,0 +1,87 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.transistorsoft.locationmanager.data.LocationModel;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LocationStore
+ * Reads the SDK's location database a page at a time.  The SDK only offers the whole table (LocationDAO#all), so #getLocations
+ * {pageSize} and the compact #sync read its table directly, read-only, by keyset:  each page is the next `limit` records after
+ * the last record id read, in the order of Config.locationsOrderDirection, as LocationDAO#all orders them.  Memory is bounded
+ * by the page, regardless of the size of the database.
+ *
+ * Records are returned as the SDK's LocationModel, without its DAO:  destroy them through the adapter (by uuid), not
+ * LocationModel#destroy.
+ */
+public class LocationStore {
+    private static final String DATABASE = "transistor_location_manager";
+    private static final String TABLE = "locations";
+    private static final String[] COLUMNS = {"id", "uuid", "timestamp", "data"};
+
+    /**
+     * Read up to limit records following the record afterId (0:  from the first record) in ascending / descending id order.
+     * Returns an empty list when the database doesn't exist yet.
+     */
+    public static List<LocationModel> read(Context context, long afterId, boolean descending, int limit) {
+        List<LocationModel> records = new ArrayList<LocationModel>();
+        SQLiteDatabase db = open(context);
+        if (db == null) {
+            return records;
+        }
+        Cursor cursor = null;
+        try {
+            String selection = null;
+            String[] args = null;
+            if (afterId > 0) {
+                selection = descending ? "id < ?" : "id > ?";
+                args = new String[] {String.valueOf(afterId)};
+            }
+            cursor = db.query(TABLE, COLUMNS, selection, args, null, null, "id " + (descending ? "DESC" : "ASC"), String.valueOf(limit));
+            while (cursor.moveToNext()) {
+                byte[] data = cursor.getBlob(3);
+                records.add(new LocationModel(null, cursor.getInt(0), cursor.getString(1), cursor.getString(2), (data != null) ? new String(data) : null));
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            db.close();
+        }
+        return records;
+    }
+
+    /**
+     * The number of records in the database.
+     */
+    public static int count(Context context) {
+        SQLiteDatabase db = open(context);
+        if (db == null) {
+            return 0;
+        }
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE, null);
+            return cursor.moveToNext() ? cursor.getInt(0) : 0;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            db.close();
+        }
+    }
+
+    private static SQLiteDatabase open(Context context) {
+        File file = context.getDatabasePath(DATABASE);
+        if (!file.exists()) {
+            return null;
+        }
+        return SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+    }
+}
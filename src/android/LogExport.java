@@ -0,0 +1,499 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.core.content.FileProvider;
+
+import com.transistorsoft.locationmanager.adapter.TSConfig;
+import com.transistorsoft.locationmanager.data.SQLQuery;
+import com.transistorsoft.locationmanager.logger.TSLog;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * LogExport
+ * Streams the log database to gzip, a row at a time, rather than building the whole log as a String (which, with verbose logging over
+ * several days, can be tens of MB):
+ *
+ * - #export:  to a gzip file in the cache dir, returned as a file URI (#getLog {file: true}).
+ * - #email:  attaches that file to an email (#emailLog).
+ * - #upload:  multipart-POSTs the log, gzipped straight from the database cursor to the connection (#uploadLog).
+ *
+ * Memory is bounded by BUFFER_SIZE, regardless of the size of the log.
+ *
+ * Filtered queries (Filter) run upon a plugin-owned index of the log (INDEX_DATABASE):  the SDK's log database is only ever read.  The
+ * index is brought up to date from the log's new rows as a filtered query is made, never as records are logged, so logging costs no
+ * more than the SDK's own insert.
+ */
+public class LogExport {
+    public static final String FIELD_FILE = "file";
+
+    private static final String FILENAME = "background-geolocation.log.gz";
+    private static final String FILE_PROVIDER_AUTHORITY = ".tslocationmanager.fileprovider";
+    private static final String TABLE = "logging_event";
+    private static final String INDEX_DATABASE = "background-geolocation-log-index.db";
+    private static final String INDEX_TABLE = "log";
+    private static final String FTS_TABLE = "log_fts";
+    // Left in the SDK's log database by earlier versions of this plugin.
+    private static final String LEGACY_FTS_TABLE = "logging_event_fts";
+    private static final String[] COLUMNS = {"timestmp", "formatted_message", "caller_class", "caller_method"};
+    private static final int BUFFER_SIZE = 8192;
+    private static final String CRLF = "\r\n";
+
+    private static boolean sIndexCreated;
+    private static boolean sFullText;
+    private static boolean sLegacyDropped;
+
+    /**
+     * Write the log to a gzip file in the cache dir (replacing the previous export).
+     */
+    public static File export(Context context, SQLQuery query, Filter filter) throws IOException {
+        File file = new File(context.getCacheDir(), FILENAME);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            write(context, query, filter, out);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Export the log and attach it to an email with the device's mail client.
+     */
+    public static void email(Context context, String email, SQLQuery query, Filter filter, JSONObject state) throws IOException {
+        File file = export(context, query, filter);
+        Uri uri = FileProvider.getUriForFile(context, context.getPackageName() + FILE_PROVIDER_AUTHORITY, file);
+
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("message/rfc822");
+        intent.putExtra(Intent.EXTRA_EMAIL, new String[]{email});
+        intent.putExtra(Intent.EXTRA_SUBJECT, "BackgroundGeolocation log");
+        intent.putExtra(Intent.EXTRA_TEXT, state.toString());
+        intent.putExtra(Intent.EXTRA_STREAM, uri);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+        Intent chooser = Intent.createChooser(intent, "Send log");
+        chooser.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        context.startActivity(chooser);
+    }
+
+    /**
+     * Multipart-POST the log to url, with the form fields state, model, manufacturer, platform and version.  Returns the HTTP status.
+     */
+    public static int upload(Context context, String url, SQLQuery query, Filter filter, JSONObject state) throws IOException {
+        String boundary = "----TSLocationManager" + System.currentTimeMillis();
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            TSConfig config = TSConfig.getInstance(context);
+            int timeout = (config.getHttpTimeout() != null) ? config.getHttpTimeout() : 60000;
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            // The body is never held in memory.
+            connection.setChunkedStreamingMode(BUFFER_SIZE);
+            connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+            JSONObject headers = config.getHeaders();
+            if (headers != null) {
+                Iterator<String> keys = headers.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    connection.setRequestProperty(key, headers.optString(key));
+                }
+            }
+
+            OutputStream out = connection.getOutputStream();
+            try {
+                writeField(out, boundary, "state", state.toString());
+                writeField(out, boundary, "model", Build.MODEL);
+                writeField(out, boundary, "manufacturer", Build.MANUFACTURER);
+                writeField(out, boundary, "platform", "Android");
+                writeField(out, boundary, "version", Build.VERSION.RELEASE);
+                out.write(("--" + boundary + CRLF
+                        + "Content-Disposition: form-data; name=\"log\"; filename=\"" + FILENAME + "\"" + CRLF
+                        + "Content-Type: application/gzip" + CRLF + CRLF).getBytes("UTF-8"));
+                write(context, query, filter, new FilterOutputStream(out) {
+                    // The gzip stream mustn't close the connection's.
+                    @Override public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); }
+                    @Override public void close() throws IOException { flush(); }
+                });
+                out.write((CRLF + "--" + boundary + "--" + CRLF).getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+            int status = connection.getResponseCode();
+            InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                byte[] buffer = new byte[1024];
+                while (in.read(buffer) != -1) { }
+                in.close();
+            }
+            return status;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    public static String toUri(File file) {
+        return Uri.fromFile(file).toString();
+    }
+
+    /**
+     * The log records matching query / filter as a String (#getLog with a Filter, which TSLog#getLog doesn't support).
+     */
+    public static String read(Context context, SQLQuery query, Filter filter) throws IOException {
+        StringWriter writer = new StringWriter();
+        writeRecords(context, query, filter, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Stream the log records matching query / filter through gzip to out.  Closes out.
+     */
+    private static void write(Context context, SQLQuery query, Filter filter, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(out, BUFFER_SIZE), "UTF-8"), BUFFER_SIZE);
+        try {
+            writeRecords(context, query, filter, writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write the log records matching query / filter, in the format of TSLog#getLog:  read from the SDK's log database when unfiltered,
+     * from the index otherwise.
+     */
+    private static void writeRecords(Context context, SQLQuery query, Filter filter, Writer writer) throws IOException {
+        SQLiteDatabase db = null;
+        Cursor cursor = null;
+        try {
+            String table = TABLE;
+            boolean fullText = false;
+            if (filter.isEmpty()) {
+                db = SQLiteDatabase.openDatabase(TSLog.getDatabaseFile().getPath(), null, SQLiteDatabase.OPEN_READONLY);
+            } else {
+                synchronized (LogExport.class) {
+                    db = openIndex(context);
+                    updateIndex(db);
+                    fullText = sFullText;
+                }
+                table = INDEX_TABLE;
+            }
+
+            List<String> args = new ArrayList<String>();
+            StringBuilder selection = new StringBuilder();
+            if (query.getStart() > 0) {
+                and(selection, "timestmp >= ?");
+                args.add(String.valueOf(query.getStart()));
+            }
+            if (query.getEnd() > 0) {
+                and(selection, "timestmp <= ?");
+                args.add(String.valueOf(query.getEnd()));
+            }
+            filter.appendSelection(selection, args, fullText);
+            String order = "timestmp " + ((query.getOrder() == SQLQuery.ORDER_DESC) ? "DESC" : "ASC") + ", event_id";
+            String limit = (query.getLimit() > 0) ? String.valueOf(query.getLimit()) : null;
+            cursor = db.query(table, COLUMNS, (selection.length() > 0) ? selection.toString() : null, args.toArray(new String[args.size()]), null, null, order, limit);
+
+            SimpleDateFormat format = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+            Date date = new Date();
+            while (cursor.moveToNext()) {
+                date.setTime(cursor.getLong(0));
+                String time = format.format(date);
+                writer.write(time);
+                writer.write(" [");
+                writer.write(abbreviate(cursor.getString(2)));
+                writer.write(' ');
+                writer.write(String.valueOf(cursor.getString(3)));
+                writer.write("]\n");
+                String message = cursor.getString(1);
+                if (message != null) {
+                    for (String line : message.split("\n")) {
+                        writer.write(time);
+                        writer.write(' ');
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            }
+        } catch (SQLiteException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            if (db != null) {
+                db.close();
+            }
+        }
+    }
+
+    /**
+     * Open the index, creating its schema:  the log's columns plus the logging class's simple name (tag), indexed by
+     * (level_string, timestmp) and (tag, timestmp), and a full-text index of formatted_message.  Its triggers are upon the index's
+     * own table.  Falls back to LIKE (sFullText false) when FTS4 is unavailable.
+     */
+    private static SQLiteDatabase openIndex(Context context) {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(INDEX_DATABASE), null);
+        if (!sIndexCreated) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS " + INDEX_TABLE + " (event_id INTEGER PRIMARY KEY, timestmp INTEGER, level_string TEXT, "
+                    + "tag TEXT, caller_class TEXT, caller_method TEXT, formatted_message TEXT)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_TABLE + "_level_time ON " + INDEX_TABLE + " (level_string, timestmp)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_TABLE + "_tag_time ON " + INDEX_TABLE + " (tag, timestmp)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_TABLE + "_time ON " + INDEX_TABLE + " (timestmp)");
+            try {
+                db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + FTS_TABLE + " USING fts4(content=\"" + INDEX_TABLE + "\", formatted_message)");
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE + "_ai AFTER INSERT ON " + INDEX_TABLE + " BEGIN "
+                        + "INSERT INTO " + FTS_TABLE + " (docid, formatted_message) VALUES (new.event_id, new.formatted_message); END");
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS " + FTS_TABLE + "_bd BEFORE DELETE ON " + INDEX_TABLE + " BEGIN "
+                        + "DELETE FROM " + FTS_TABLE + " WHERE docid = old.event_id; END");
+                sFullText = true;
+            } catch (SQLiteException e) {
+                AsyncLog.warn(TSLog.warn("Log full-text index unavailable: " + e.getMessage()));
+                sFullText = false;
+            }
+            sIndexCreated = true;
+        }
+        return db;
+    }
+
+    /**
+     * Bring the index up to date with the SDK's log database, read-only:  drop the records the SDK has since purged (or all of them,
+     * should the log have been destroyed or re-created) and copy the rows logged since the last update, streamed from a cursor in one
+     * transaction.
+     */
+    private static void updateIndex(SQLiteDatabase index) {
+        String path = TSLog.getDatabaseFile().getPath();
+        dropLegacyIndexes(path);
+        SQLiteDatabase log = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+        Cursor cursor = null;
+        SQLiteStatement statement = null;
+        index.beginTransaction();
+        try {
+            long min = -1;
+            long max = -1;
+            cursor = log.rawQuery("SELECT MIN(event_id), MAX(event_id) FROM " + TABLE, null);
+            if (cursor.moveToNext() && !cursor.isNull(0)) {
+                min = cursor.getLong(0);
+                max = cursor.getLong(1);
+            }
+            cursor.close();
+            statement = index.compileStatement("SELECT IFNULL(MAX(event_id), -1) FROM " + INDEX_TABLE);
+            long indexed = statement.simpleQueryForLong();
+            statement.close();
+            if (max < indexed) {
+                index.delete(INDEX_TABLE, null, null);
+                indexed = -1;
+            }
+            index.delete(INDEX_TABLE, "event_id < ?", new String[]{String.valueOf(min)});
+
+            cursor = log.rawQuery("SELECT event_id, timestmp, level_string, caller_class, caller_method, formatted_message FROM " + TABLE
+                    + " WHERE event_id > ? ORDER BY event_id", new String[]{String.valueOf(indexed)});
+            statement = index.compileStatement("INSERT INTO " + INDEX_TABLE
+                    + " (event_id, timestmp, level_string, tag, caller_class, caller_method, formatted_message) VALUES (?, ?, ?, ?, ?, ?, ?)");
+            while (cursor.moveToNext()) {
+                statement.clearBindings();
+                statement.bindLong(1, cursor.getLong(0));
+                statement.bindLong(2, cursor.getLong(1));
+                bind(statement, 3, cursor.getString(2));
+                bind(statement, 4, simpleName(cursor.getString(3)));
+                bind(statement, 5, cursor.getString(3));
+                bind(statement, 6, cursor.getString(4));
+                bind(statement, 7, cursor.getString(5));
+                statement.executeInsert();
+            }
+            index.setTransactionSuccessful();
+        } finally {
+            index.endTransaction();
+            if (statement != null) {
+                statement.close();
+            }
+            if (cursor != null) {
+                cursor.close();
+            }
+            log.close();
+        }
+    }
+
+    /**
+     * Earlier versions of this plugin indexed the SDK's log table itself, with triggers which charged every log insert with the
+     * full-text index.  Drop those (once per process;  the database is only opened for writing when they exist).
+     */
+    private static void dropLegacyIndexes(String path) {
+        if (sLegacyDropped) {
+            return;
+        }
+        boolean exists;
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+        try {
+            Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE name IN (?, ?, ?, ?, ?)", new String[]{
+                    LEGACY_FTS_TABLE, LEGACY_FTS_TABLE + "_ai", LEGACY_FTS_TABLE + "_bd", "ts_log_level_time", "ts_log_caller"});
+            try {
+                exists = cursor.moveToNext();
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            db.close();
+        }
+        if (exists) {
+            db = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READWRITE);
+            try {
+                db.execSQL("DROP TRIGGER IF EXISTS " + LEGACY_FTS_TABLE + "_ai");
+                db.execSQL("DROP TRIGGER IF EXISTS " + LEGACY_FTS_TABLE + "_bd");
+                db.execSQL("DROP TABLE IF EXISTS " + LEGACY_FTS_TABLE);
+                db.execSQL("DROP INDEX IF EXISTS ts_log_level_time");
+                db.execSQL("DROP INDEX IF EXISTS ts_log_caller");
+            } finally {
+                db.close();
+            }
+        }
+        sLegacyDropped = true;
+    }
+
+    private static void bind(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    /**
+     * com.transistorsoft.locationmanager.http.HttpService -> HttpService
+     */
+    private static String simpleName(String className) {
+        return (className != null) ? className.substring(className.lastIndexOf('.') + 1) : null;
+    }
+
+    private static void and(StringBuilder selection, String clause) {
+        if (selection.length() > 0) {
+            selection.append(" AND ");
+        }
+        selection.append(clause);
+    }
+
+    /**
+     * com.transistorsoft.locationmanager.http.HttpService -> c.t.l.h.HttpService
+     */
+    private static String abbreviate(String className) {
+        if (className == null) {
+            return "";
+        }
+        String[] parts = className.split("\\.");
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < parts.length - 1; i++) {
+            if (!parts[i].isEmpty()) {
+                result.append(parts[i].charAt(0)).append('.');
+            }
+        }
+        return result.append(parts[parts.length - 1]).toString();
+    }
+
+    private static void writeField(OutputStream out, String boundary, String name, String value) throws IOException {
+        out.write(("--" + boundary + CRLF
+                + "Content-Disposition: form-data; name=\"" + name + "\"" + CRLF + CRLF
+                + ((value != null) ? value : "") + CRLF).getBytes("UTF-8"));
+    }
+
+    /**
+     * Filters of #getLog / #emailLog / #uploadLog beyond SQLQuery's start / end / order / limit:
+     * - level:  minimum level, one of "debug", "info", "warn", "error".
+     * - tag:  the logging class, by simple name (eg: "HttpService") or fully-qualified.
+     * - text:  full-text match within the message.
+     */
+    public static class Filter {
+        private static final String[] LEVELS = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR"};
+
+        final String level;
+        final String tag;
+        final String text;
+
+        public static Filter fromJson(JSONObject params) {
+            return new Filter(params.optString("level", null), params.optString("tag", null), params.optString("text", null));
+        }
+
+        Filter(String level, String tag, String text) {
+            this.level = empty(level) ? null : level.toUpperCase(Locale.US);
+            this.tag = empty(tag) ? null : tag;
+            this.text = empty(text) ? null : text;
+        }
+
+        public boolean isEmpty() {
+            return level == null && tag == null && text == null;
+        }
+
+        void appendSelection(StringBuilder selection, List<String> args, boolean fullText) {
+            if (level != null) {
+                int min = Arrays.asList(LEVELS).indexOf(level);
+                if (min < 0) {
+                    throw new SQLiteException("Invalid log level: " + level);
+                }
+                StringBuilder in = new StringBuilder();
+                for (int i = min; i < LEVELS.length; i++) {
+                    in.append((in.length() > 0) ? ", ?" : "?");
+                    args.add(LEVELS[i]);
+                }
+                and(selection, "level_string IN (" + in + ")");
+            }
+            if (tag != null) {
+                // Both served by the (tag, timestmp) index.
+                if (tag.indexOf('.') >= 0) {
+                    and(selection, "tag = ? AND caller_class = ?");
+                    args.add(simpleName(tag));
+                    args.add(tag);
+                } else {
+                    and(selection, "tag = ?");
+                    args.add(tag);
+                }
+            }
+            if (text != null) {
+                if (fullText) {
+                    and(selection, "event_id IN (SELECT docid FROM " + FTS_TABLE + " WHERE " + FTS_TABLE + " MATCH ?)");
+                    // A phrase query:  the text is matched as-is.
+                    args.add("\"" + text.replace("\"", "\"\"") + "\"");
+                } else {
+                    and(selection, "formatted_message LIKE ? ESCAPE '\\'");
+                    args.add("%" + escapeLike(text) + "%");
+                }
+            }
+        }
+
+        private static String escapeLike(String value) {
+            return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        }
+
+        private static boolean empty(String value) {
+            return value == null || value.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.transistorsoft.locationmanager.adapter.BackgroundGeolocation;
+import com.transistorsoft.locationmanager.adapter.callback.TSCallback;
+import com.transistorsoft.locationmanager.location.TSLocation;
+import com.transistorsoft.locationmanager.logger.TSLog;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * TrajectorySimplifier
+ * Streaming line-simplification of the persisted track, configured with Config.simplifyTolerance (meters;  0 disables).
+ *
+ * A sliding-window ("opening window") error-bound filter:  the window opens at the last kept location (the anchor).  Each new
+ * location is persisted as the window's tail.  When every location inside the window lies within the tolerance of the segment
+ * anchor -> new location, the previous tail adds nothing to the route's shape and is destroyed;  otherwise the previous tail is kept
+ * and becomes the new anchor.  So the database holds the kept locations plus the current tail.
+ *
+ * Only records still in the database are simplified:  the SDK's store is closed, so the tail can't be held back from upload.  A
+ * tail uploaded before the next location arrives (autoSync with autoSyncThreshold 0) is sent as-is, and destroying it then fails
+ * harmlessly.  Hence the uploaded track is simplified with a manual #sync (autoSync: false) or an autoSyncThreshold spanning
+ * several locations;  the "removed" count reports only the records actually destroyed.
+ *
+ * Locations carrying an event (motionchange, geofence, heartbeat, providerchange), samples and stationary locations are always kept
+ * and restart the window.  The window is fixed-size (MAX_WINDOW), so the work per location is bounded and allocation-free.
+ *
+ * Evaluated from the HeadlessRules before-insert block, after the location rules have accepted the location (and the LocationFilter
+ * has smoothed it).
+ */
+public class TrajectorySimplifier {
+    public static final String FIELD_SIMPLIFY_TOLERANCE = "simplifyTolerance";
+
+    private static final String PREFS_NAME = "TSTrajectorySimplifier";
+    private static final String PREF_TOLERANCE = "tolerance";
+
+    // Max locations spanned by a window before the tail is kept regardless.
+    private static final int MAX_WINDOW = 64;
+    // A gap longer than this (millis) between locations restarts the window.
+    private static final long MAX_GAP = 5 * 60 * 1000;
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    private final Context mContext;
+    private final SharedPreferences mPrefs;
+    private float mTolerance;
+
+    // Anchor:  the last kept location.
+    private boolean mHasAnchor;
+    private double mAnchorLat;
+    private double mAnchorLng;
+    // Window:  locations after the anchor;  the last is the tail.
+    private final double[] mLats = new double[MAX_WINDOW];
+    private final double[] mLngs = new double[MAX_WINDOW];
+    private int mSize;
+    private String mTailUUID;
+    private long mTailTime;
+
+    private long mReceived;
+    private long mRemoved;
+    private double mMaxError;
+
+    TrajectorySimplifier(Context context) {
+        mContext = context.getApplicationContext();
+        mPrefs = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mTolerance = mPrefs.getFloat(PREF_TOLERANCE, 0);
+    }
+
+    public synchronized boolean isEnabled() {
+        return mTolerance > 0;
+    }
+
+    public synchronized void setTolerance(float tolerance) {
+        tolerance = Math.max(0, tolerance);
+        if (tolerance != mTolerance) {
+            mTolerance = tolerance;
+            mHasAnchor = false;
+            mSize = 0;
+            mPrefs.edit().putFloat(PREF_TOLERANCE, tolerance).apply();
+        }
+    }
+
+    /**
+     * Offer a location about to be persisted, at (lat, lng) (smoothed by the LocationFilter, when enabled).  May destroy the
+     * previously persisted tail.
+     */
+    public void offer(TSLocation location, double lat, double lng) {
+        String redundant = null;
+        synchronized (this) {
+            if (mTolerance <= 0) {
+                return;
+            }
+            mReceived++;
+            long time = location.getLocation().getTime();
+
+            boolean breaksWindow = !mHasAnchor
+                    || location.getEvent() != null
+                    || location.isSample()
+                    || !location.getIsMoving()
+                    || (mSize > 0 && (time - mTailTime) > MAX_GAP);
+
+            if (breaksWindow) {
+                anchor(lat, lng);
+            } else if (mSize == 0) {
+                append(lat, lng, location.getUUID(), time);
+            } else if (mSize < MAX_WINDOW && fits(lat, lng)) {
+                // The tail lies on the segment anchor -> location:  replace it.
+                redundant = mTailUUID;
+                append(lat, lng, location.getUUID(), time);
+            } else {
+                // Keep the tail:  it's the new anchor.
+                anchor(mLats[mSize - 1], mLngs[mSize - 1]);
+                append(lat, lng, location.getUUID(), time);
+            }
+        }
+        if (redundant != null) {
+            destroy(redundant);
+        }
+    }
+
+    public synchronized JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("tolerance", mTolerance);
+        json.put("received", mReceived);
+        json.put("removed", mRemoved);
+        json.put("kept", mReceived - mRemoved);
+        json.put("maxError", mMaxError);
+        return json;
+    }
+
+    private void anchor(double lat, double lng) {
+        mHasAnchor = true;
+        mAnchorLat = lat;
+        mAnchorLng = lng;
+        mSize = 0;
+        mTailUUID = null;
+    }
+
+    private void append(double lat, double lng, String uuid, long time) {
+        mLats[mSize] = lat;
+        mLngs[mSize] = lng;
+        mSize++;
+        mTailUUID = uuid;
+        mTailTime = time;
+    }
+
+    /**
+     * Do all the window's locations lie within the tolerance of the segment anchor -> (lat, lng)?  Distances are computed upon an
+     * equirectangular projection about the anchor, which is accurate to well under a meter over a window's extent.
+     */
+    private boolean fits(double lat, double lng) {
+        double cos = Math.cos(Math.toRadians(mAnchorLat));
+        double bx = project(lng - mAnchorLng) * cos;
+        double by = project(lat - mAnchorLat);
+        double lengthSquared = bx * bx + by * by;
+        double error = 0;
+        for (int i = 0; i < mSize; i++) {
+            double px = project(mLngs[i] - mAnchorLng) * cos;
+            double py = project(mLats[i] - mAnchorLat);
+            double t = (lengthSquared > 0) ? Math.max(0, Math.min(1, (px * bx + py * by) / lengthSquared)) : 0;
+            double dx = px - t * bx;
+            double dy = py - t * by;
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if (distance > mTolerance) {
+                return false;
+            }
+            error = Math.max(error, distance);
+        }
+        mMaxError = Math.max(mMaxError, error);
+        return true;
+    }
+
+    private static double project(double degrees) {
+        return Math.toRadians(degrees) * EARTH_RADIUS;
+    }
+
+    private void destroy(final String uuid) {
+        BackgroundGeolocation.getInstance(mContext).destroyLocation(uuid, new TSCallback() {
+            @Override public void onSuccess() {
+                synchronized (TrajectorySimplifier.this) {
+                    mRemoved++;
+                }
+                if (TSLog.logger.isDebugEnabled()) {
+                    AsyncLog.debug(TSLog.info("TrajectorySimplifier removed location: " + uuid));
+                }
+            }
+            @Override public void onFailure(String error) {
+                // Already uploaded (and destroyed) by #sync:  nothing to simplify.
+                AsyncLog.debug(TSLog.info("TrajectorySimplifier failed to remove location " + uuid + ": " + error));
+            }
+        });
+    }
+}
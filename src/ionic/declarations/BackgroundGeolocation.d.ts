@@ -24,6 +24,13 @@
 /// <reference path="interfaces/AuthorizationEvent.d.ts" />
 /// <reference path="interfaces/TransistorAuthorizationToken.d.ts" />
 /// <reference path="interfaces/Subscription.d.ts" />
+/// <reference path="interfaces/LocationPage.d.ts" />
+/// <reference path="interfaces/LocationBatchOptions.d.ts" />
+/// <reference path="interfaces/GeofenceImport.d.ts" />
+/// <reference path="interfaces/GeofenceBounds.d.ts" />
+/// <reference path="interfaces/GeofencesDiff.d.ts" />
+/// <reference path="interfaces/LocationBatchResult.d.ts" />
+/// <reference path="interfaces/SyncDiagnostics.d.ts" />
 declare module "cordova-background-geolocation-lt" {
   /**
   * Primary API of the SDK.
@@ -350,9 +357,44 @@ declare module "cordova-background-geolocation-lt" {
     *
     * For example, you might use these samples to progressively update the user's position on a map.  You can detect these *samples* in your `callback` via `location.sample == true`.  If you're manually `POST`ing location to your server, you should ignore these locations.
     *
+    * ### ℹ️ Binary encoding
+    *
+    * __`[Android only]`__ Provide [[EventListenerOptions]] `{encoding: "binary"}` to receive locations in a compact binary encoding, cheaper to
+    * deliver than JSON at high frequency.  Your `callback` receives the decoded [[Location]] as usual.
+    *
+    * @event location
+    */
+    static onLocation(success: (location:Location)=>void, failure?:(errorCode: LocationError) => void, options?:EventListenerOptions):Subscription;
+    static onLocation(success: (location:Location)=>void, options:EventListenerOptions):Subscription;
+
+    /**
+    * __Android only__ Subscribe to location events, delivered in batches.
+    *
+    * Rather than crossing the native bridge (and waking your Javascript) for each recorded location, locations are buffered
+    * natively and delivered as an `Array` once [[LocationBatchOptions.batchSize]] locations are buffered or
+    * [[LocationBatchOptions.batchLatency]] milliseconds have elapsed since the first buffered location.  Useful when tracking
+    * continuously with a short [[locationUpdateInterval]].
+    *
+    * On platforms without native batching, your `callback` receives an `Array` containing a single location.
+    *
+    * Locations still buffered when the subscription is removed (or [[removeListeners]] is called) are delivered to your `callback`
+    * as a final batch.
+    *
+    * @example
+    * ```typescript
+    * const subscription = BackgroundGeolocation.onLocationBatch((locations) => {
+    *   console.log("[onLocationBatch] ", locations.length);
+    * }, (error) => {
+    *   console.log("[onLocationBatch] ERROR: ", error);
+    * }, {
+    *   batchSize: 20,
+    *   batchLatency: 30000
+    * });
+    * ```
+    *
     * @event location
     */
-    static onLocation(success: (location:Location)=>void, failure?:(errorCode: LocationError) => void):Subscription;
+    static onLocationBatch(success: (locations:Array<Location>)=>void, failure?:(errorCode: LocationError) => void, options?:LocationBatchOptions):Subscription;
 
     /**
     * Subscribe to Geofence transition events.
@@ -404,7 +446,7 @@ declare module "cordova-background-geolocation-lt" {
     *
     * @event motionchange
     */
-    static onMotionChange(callback: (event:MotionChangeEvent) => void): Subscription;
+    static onMotionChange(callback: (event:MotionChangeEvent) => void, options?:EventListenerOptions): Subscription;
 
     /**
     * Subscribe to HTTP responses from your server [[Config.url]].
@@ -509,7 +551,7 @@ declare module "cordova-background-geolocation-lt" {
     * -  The [[Location]] provided by the [[HeartbeatEvent]] is only the last-known location.  The *heartbeat* event does not actively engage location-services.  If you wish to get the current location in your `callback`, use [[getCurrentPosition]].
     * @event heartbeat
     */
-    static onHeartbeat(callback: (event: HeartbeatEvent) => void): Subscription;
+    static onHeartbeat(callback: (event: HeartbeatEvent) => void, options?:EventListenerOptions): Subscription;
 
     /**
     * Subscribe to changes in actively monitored geofences.
@@ -757,6 +799,12 @@ declare module "cordova-background-geolocation-lt" {
     *
     * The supplied [[Config]] will be appended to the current configuration and applied in realtime.
     *
+    * __`🤖 Android`__ Only the fields which differ from the current configuration are applied (re-arming only the subsystems affected by them).
+    * Provide `{changes: true}` to receive only those changed fields `{field: value}` rather than the complete [[State]].  The Android-only
+    * options implemented by the plugin itself ([[Config.headlessRules]], [[Config.locationSmoothing]], [[Config.simplifyTolerance]],
+    * [[Config.adaptiveBatchSize]], [[Config.syncEncoding]], [[Config.syncConcurrency]], [[Config.logBuffer]]) are reported whenever
+    * provided.  iOS ignores `{changes: true}` and always resolves the complete [[State]].
+    *
     * @example
     * ```typescript
     * BackgroundGeolocation.setConfig({
@@ -767,9 +815,13 @@ declare module "cordova-background-geolocation-lt" {
     * }).then((state) => {
     *   console.log("[setConfig] success: ", state);
     * })
+    *
+    * // Receive only the changed fields (Android).
+    * let changes = await BackgroundGeolocation.setConfig({distanceFilter: 50}, {changes: true});
     * ```
     */
     static setConfig(config: Config, success?:(state:State) => void, failure?:Function): Promise<State>;
+    static setConfig(config: Config, options:{changes?:boolean}): Promise<Config>;
 
     /**
     * Resets the plugin configuration to documented default-values.
@@ -885,8 +937,23 @@ declare module "cordova-background-geolocation-lt" {
     * let state = await BackgroundGeolocation.getState();
     * console.log("[state] ", state.enabled, state.trackingMode);
     * ```
+    *
+    * __`🤖 Android`__ The [[State]] is cached natively and tagged with a [[State.version]], which changes whenever the [[State]] does.  Provide
+    * `{ifChangedSince: version}` to receive just `{modified: false, version}` when nothing has changed since, rather than the whole [[State]].
+    *
+    * ⚠️ On iOS, the [[State]] carries no `version` and `getState({ifChangedSince})` rejects:  it is unsupported.
+    *
+    * @example
+    * ```typescript
+    * // Poll upon each screen resume.
+    * let result = await BackgroundGeolocation.getState({ifChangedSince: this.state.version});
+    * if (result.modified !== false) {
+    *   this.state = result;
+    * }
+    * ```
     */
     static getState(success?: (state:State) => void, failure?: (error:string) => void): Promise<State>;
+    static getState(options:{ifChangedSince?:number}): Promise<State|{modified:false, version:number}>;
 
     /**
     * Initiate the configured [[schedule]].
@@ -1084,8 +1151,26 @@ declare module "cordova-background-geolocation-lt" {
     *   BackgroundGeolocation.stopWatchPosition();
     * }
     * ```
+    *
+    * ### ℹ️ Multiple watches
+    * Each call returns a `watchId`.  Any number of watches may run at once, each with its own [[WatchPositionRequest.interval]] and
+    * [[WatchPositionRequest.desiredAccuracy]]:  they share a single native location-request running at the shortest `interval` and best
+    * `desiredAccuracy` requested, and each watch receives locations no more often than its own `interval`.  Provide the `watchId` to
+    * [[stopWatchPosition]] to stop just that watch.
+    *
+    * @example
+    * ```typescript
+    * // Fast updates for the map.
+    * let mapWatch = BackgroundGeolocation.watchPosition(onMapLocation, onError, {interval: 1000});
+    * // Slow updates for a status widget;  shares the map's location-request.
+    * let widgetWatch = BackgroundGeolocation.watchPosition(onWidgetLocation, onError, {interval: 30000});
+    * .
+    * .
+    * // Stop the map watch only:  the widget keeps receiving updates every 30s.
+    * BackgroundGeolocation.stopWatchPosition(mapWatch);
+    * ```
     */
-    static watchPosition(success: (location:Location) => void, failure?: (errorCode:LocationError) => void, options?: WatchPositionRequest): void;
+    static watchPosition(success: (location:Location) => void, failure?: (errorCode:LocationError) => void, options?: WatchPositionRequest): number;
 
     /**
     * Stop watch-position updates initiated from [[watchPosition]].
@@ -1107,11 +1192,21 @@ declare module "cordova-background-geolocation-lt" {
     *   BackgroundGeolocation.stopWatchPosition();
     * }
     * ```
+    *
+    * Provide the `watchId` returned by [[watchPosition]] to stop only that watch;  otherwise all watches are stopped.
+    *
+    * ```typescript
+    * let watchId = BackgroundGeolocation.watchPosition(onLocation, onError, {interval: 1000});
+    * .
+    * .
+    * BackgroundGeolocation.stopWatchPosition(watchId);
+    * ```
     * ### ℹ️ See also:
-    * - [[stopWatchPosition]]
+    * - [[watchPosition]]
     *
     */
     static stopWatchPosition(success?: Function, failure?: Function): Promise<void>;
+    static stopWatchPosition(watchId: number, success?: Function, failure?: Function): Promise<void>;
 
     /**
     * Retrieve a List of [[Location]] currently stored in the SDK's SQLite database.
@@ -1120,8 +1215,25 @@ declare module "cordova-background-geolocation-lt" {
     * ```typescript
     * let locations = await BackgroundGeolocation.getLocations();
     * ```
+    *
+    * ### Paging
+    *
+    * With a large backlog of records, provide a `pageSize` to receive the records in bounded pages rather than one large `Array`.
+    * Each page provides a `cursor` for fetching the next page.  The final page provides `cursor: null`.
+    *
+    * @example
+    * ```typescript
+    * let page = await BackgroundGeolocation.getLocations({pageSize: 500});
+    * while (true) {
+    *   console.log("[getLocations] ", page.locations.length, "of", page.total);
+    *   if (!page.cursor) break;
+    *   page = await BackgroundGeolocation.getLocations({cursor: page.cursor});
+    * }
+    * ```
+    * ⚠️ Only a small number of un-drained cursors are retained.  An abandoned cursor is eventually discarded.
     */
     static getLocations(success?:(locations:Array<Object>) => void, failure?:Function): Promise<Array<Object>>;
+    static getLocations(options:LocationPageRequest): Promise<LocationPage>;
 
     /**
     * Retrieve the count of all locations current stored in the SDK's SQLite database.
@@ -1143,6 +1255,19 @@ declare module "cordova-background-geolocation-lt" {
     */
     static destroyLocations(success?:Function, failure?:Function): Promise<void>;
 
+    /**
+    * __`🤖 Android only`__ Destroy a list of locations by [[Location.uuid]] in one call.  Resolves one result per uuid, in order.
+    * An entry which isn't a non-empty string resolves `{success: false, error: "Invalid uuid"}`.
+    *
+    * ⚠️ On iOS, the `Promise` rejects:  destroying by uuid is unsupported.  Use [[destroyLocation]] per uuid.
+    *
+    * @example
+    * ```typescript
+    * let results = await BackgroundGeolocation.destroyLocations(uploaded.map((location) => location.uuid));
+    * ```
+    */
+    static destroyLocations(uuids:Array<string>, success?:(results:Array<LocationBatchResult>) => void, failure?:Function): Promise<Array<LocationBatchResult>>;
+
     /**
     * Destroy a single location by [[Location.uuid]]
     *
@@ -1155,6 +1280,34 @@ declare module "cordova-background-geolocation-lt" {
 
     static insertLocation(params:Location, success?:(location:Location) => void, failure?:Function): Promise<Location>;
 
+    /**
+    * __`🤖 Android only`__ Insert a list of [[Location]] in one call, eg: importing a recorded track.  Resolves one
+    * result per location, in order.  A failed location does not fail the others.
+    *
+    * ⚠️ On iOS, the `Promise` rejects:  `insertLocations` is unsupported.  Use [[insertLocation]] per location.
+    *
+    * @example
+    * ```typescript
+    * let results = await BackgroundGeolocation.insertLocations(track);
+    * let failed = results.filter((result) => !result.success);
+    * ```
+    */
+    static insertLocations(locations:Array<Location>, success?:(results:Array<LocationBatchResult>) => void, failure?:Function): Promise<Array<LocationBatchResult>>;
+
+    /**
+    * __`🤖 Android only`__ Fetch the state of the adaptive sync batch controller enabled with [[Config.adaptiveBatchSize]]:
+    * its current batch size, measured latency, throughput (records / second) and failure counts.
+    *
+    * ⚠️ On iOS, the `Promise` rejects:  `getSyncDiagnostics` is unsupported.
+    *
+    * @example
+    * ```typescript
+    * let diagnostics = await BackgroundGeolocation.getSyncDiagnostics();
+    * console.log("[getSyncDiagnostics] ", diagnostics.controller.batchSize, diagnostics.controller.throughput);
+    * ```
+    */
+    static getSyncDiagnostics(success?:(diagnostics:SyncDiagnostics) => void, failure?:Function): Promise<SyncDiagnostics>;
+
     /**
     * Manually execute upload to configured [[Config.url]]
     *
@@ -1178,8 +1331,17 @@ declare module "cordova-background-geolocation-lt" {
     *
     * ```
     *  ℹ️ For more information, see the [[HttpEvent | HTTP Guide]]
+    *
+    * The synced records may be received in pages, as with [[getLocations]]:
+    * ```typescript
+    * let page = await BackgroundGeolocation.sync({pageSize: 500});
+    * while (page.cursor) {
+    *   page = await BackgroundGeolocation.sync({cursor: page.cursor});
+    * }
+    * ```
     */
     static sync(success?:(locations:Array<Object>) => void, failure?:Function): Promise<Array<Object>>;
+    static sync(options:LocationPageRequest): Promise<LocationPage>;
 
     /**
     * Retrieve the current distance-traveled ("odometer").
@@ -1198,6 +1360,7 @@ declare module "cordova-background-geolocation-lt" {
     *
     * ### ⚠️ Warning:
     * - Odometer calculations are dependent upon the accuracy of received locations.  If location accuracy is poor, this will necessarily introduce error into odometer calculations.
+    *   __`[Android only]`__ With [[Config.locationSmoothing]], the odometer accumulates the distance between *filtered* positions instead.
     */
     static getOdometer(success?:(odometer:number) => void, failure?:Function): Promise<number>;
 
@@ -1295,6 +1458,27 @@ declare module "cordova-background-geolocation-lt" {
     */
     static addGeofences(geofences: Array<Geofence>, success?: Function, failure?: Function): Promise<void>;
 
+    /**
+    * __`🤖 Android only`__ Bulk-imports a large list of [[Geofence]] (eg: thousands).
+    *
+    * Unlike [[addGeofences]], a bad geofence does not fail the whole batch:  each geofence is accepted or rejected
+    * individually and reported in [[GeofenceImportResult.results]].  Geofences are parsed in parallel and committed
+    * in chunks of [[GeofenceImportOptions.chunkSize]], with `onProgress` called after each chunk.
+    *
+    * ⚠️ On iOS, the `Promise` rejects:  `importGeofences` is unsupported.  Use [[addGeofences]].
+    *
+    * @example
+    * ```typescript
+    * let result = await BackgroundGeolocation.importGeofences(geofences, {chunkSize: 500}, (progress) => {
+    *   console.log("[importGeofences] ", progress.processed, "/", progress.total);
+    * });
+    * result.results.filter((item) => !item.accepted).forEach((item) => {
+    *   console.log("[importGeofences] rejected: ", item.identifier, item.error);
+    * });
+    * ```
+    */
+    static importGeofences(geofences: Array<Geofence>, options?: GeofenceImportOptions, onProgress?:(progress:GeofenceImportProgress) => void): Promise<GeofenceImportResult>;
+
     /**
     * Removes a [[Geofence]] having the given [[Geofence.identifier]].
     *
@@ -1338,6 +1522,58 @@ declare module "cordova-background-geolocation-lt" {
     */
     static getGeofences(success?:(geofences:Array<Geofence>) => void, failure?: (error:string) => void): Promise<Array<Geofence>>;
 
+    /**
+    * __`🤖 Android only`__ Fetch the [[Geofence]] whose center lies within `radius` meters of a point, nearest first.
+    *
+    * The query runs against a native spatial index, so only the matching geofences cross the bridge.  Each
+    * result carries `distance`:  meters from the point to the geofence center.
+    *
+    * ⚠️ On iOS, the `Promise` rejects:  `getGeofencesNear` is unsupported.
+    *
+    * @example
+    * ```typescript
+    * let geofences = await BackgroundGeolocation.getGeofencesNear(45.51921926, -73.61678581, 5000, 20);
+    * ```
+    */
+    static getGeofencesNear(latitude:number, longitude:number, radius:number, limit?:number, success?:(geofences:Array<Geofence>) => void, failure?: (error:string) => void): Promise<Array<Geofence>>;
+
+    /**
+    * __`🤖 Android only`__ Fetch the [[Geofence]] whose circle intersects a bounding-box.
+    *
+    * A box whose `west` is greater than its `east` crosses the antimeridian (eg: `west: 170, east: -170`).
+    *
+    * ⚠️ On iOS, the `Promise` rejects:  `getGeofencesInBounds` is unsupported.
+    *
+    * @example
+    * ```typescript
+    * let geofences = await BackgroundGeolocation.getGeofencesInBounds({
+    *   north: 45.55, south: 45.45, east: -73.55, west: -73.65
+    * });
+    * ```
+    */
+    static getGeofencesInBounds(bounds:GeofenceBounds, success?:(geofences:Array<Geofence>) => void, failure?: (error:string) => void): Promise<Array<Geofence>>;
+
+    /**
+    * __`🤖 Android only`__ Fetch only the [[Geofence]] changes since a previous revision, to keep a local mirror of
+    * the geofence store without re-loading it with [[getGeofences]].
+    *
+    * Pass `0` (or a revision from a previous launch) to receive `reset: true` with every geofence in `added`.
+    *
+    * ⚠️ On iOS, the `Promise` rejects:  `getGeofencesSince` is unsupported.  Use [[getGeofences]] with [[onGeofencesChange]].
+    *
+    * @example
+    * ```typescript
+    * let mirror = {};
+    * let revision = 0;
+    * let diff = await BackgroundGeolocation.getGeofencesSince(revision);
+    * if (diff.reset) { mirror = {}; }
+    * diff.added.concat(diff.modified).forEach((geofence) => { mirror[geofence.identifier] = geofence; });
+    * diff.removed.forEach((identifier) => { delete mirror[identifier]; });
+    * revision = diff.revision;
+    * ```
+    */
+    static getGeofencesSince(revision:number, success?:(diff:GeofencesDiff) => void, failure?: (error:string) => void): Promise<GeofencesDiff>;
+
     /**
     * Fetch a single [[Geofence]] by identifier from the SDK's database.
     *
@@ -109,8 +109,13 @@ declare module "cordova-background-geolocation-lt" {
   | [[autoSyncThreshold]] | `Integer` | __Default: `0`__.  The minimum number of persisted records to trigger an [[autoSync]] action. |
   | [[batchSync]] | `Boolean` | __Default: `false`__.  If you've enabled HTTP feature by configuring an [[url]], [[batchSync]]: true will POST all the locations currently stored in native SQLite datbase to your server in a single HTTP POST request.|
   | [[maxBatchSize]] | `Integer` | __Default: `-1`__.  If you've enabled HTTP feature by configuring an [[url]] and [[batchSync]]: true, this parameter will limit the number of records attached to each batch.|
+  | [[syncEncoding]] | `String` | __`[Android only]`__ Set `"compact"` to upload with [[BackgroundGeolocation.sync]] in a compact, gzipped encoding.  Requires [[autoSync]] `false`. |
+  | [[syncConcurrency]] | `Integer` | __`[Android only]`__ Maximum concurrent upload requests with [[syncEncoding]] `compact`.  Default `1`. |
+  | [[adaptiveBatchSize]] | `Boolean\|Object` | __`[Android only]`__ Adapt [[maxBatchSize]] to measured HTTP latency and throughput. |
   | [[maxDaysToPersist]] | `Integer` |  __Default: `1`__.  Maximum number of days to store a geolocation in plugin's SQLite database.|
   | [[maxRecordsToPersist]] | `Integer` |  __Default: `-1`__.  Maximum number of records to persist in plugin's SQLite database.  Defaults to `-1` (no limit).  To disable persisting locations, set this to `0`|
+  | [[locationSmoothing]] | `Boolean\|LocationSmoothing` | __`[Android only]`__ __Default: `false`__.  Smooth locations and the odometer with a Kalman filter, rejecting outliers. |
+  | [[simplifyTolerance]] | `Number` | __`[Android only]`__ __Default: `0`__.  Simplify the persisted track, within this tolerance in meters.  `0` disables. |
   | [[locationsOrderDirection]] | `String` |  __Default: `ASC`__.  Controls the order that locations are selected from the database (and synced to your server).  Defaults to ascending (`ASC`), where oldest locations are synced first.  Descending (`DESC`) syncs latest locations first.|
 
 
@@ -138,6 +143,7 @@ declare module "cordova-background-geolocation-lt" {
   | [[foregroundService]] | `Boolean` | __Default: `false`__.  Set `true` to make the plugin *mostly* immune to OS termination due to memory pressure from other apps. |
   | [[enableHeadless]] | `Boolean` | __Default: `false`__.  Set to `true` to enable "Headless" mode when the user terminates the application.  In this mode, you can respond to all the plugin's events in the native Android environment.  For more information, see the wiki for [Android Headless Mode](github:wiki/Android-Headless-Mode) |
   | [[notification]]  | [[Notification]] | Configures the required persistent [[Notification]] of the foreground service. |
+  | [[headlessRules]] | `Array<HeadlessRule>` | Native rules filtering locations before they're persisted and throttling headless events. |
 
 
   ## Geofencing Options
@@ -164,6 +170,7 @@ declare module "cordova-background-geolocation-lt" {
   | [[debug]] | `Boolean` | __Default: `false`__.  When enabled, the plugin will emit sounds & notifications for life-cycle events of background-geolocation |
   | [[logLevel]] | `Integer` | __Default: `LOG_LEVEL_VERBOSE`__.  Sets the verbosity of the plugin's logs from `LOG_LEVEL_OFF` to `LOG_LEVEL_VERBOSE` |
   | [[logMaxDays]] | `Integer` | __Default: `3`__.  Maximum days to persist a log-entry in database. |
+  | [[logBuffer]] | `Object` | __`[Android only]`__ Size and overflow policy of the asynchronous log buffer. |
   *
   */
   interface Config {
@@ -951,6 +958,74 @@ declare module "cordova-background-geolocation-lt" {
     */
     maxBatchSize?: number;
 
+    /**
+    * __`[Android only]`__ Set `"compact"` to have [[BackgroundGeolocation.sync]] upload locations in a compact encoding.
+    * @break
+    *
+    * Rather than one JSON object per location, each batch of [[maxBatchSize]] locations is sent as one array per field, with
+    * timestamps and coordinates delta-encoded, repeated values (event, activity, extras) dictionary-encoded, and the body gzipped
+    * (`Content-Encoding: gzip`, `X-Location-Encoding: tsl-compact-1`).  Your server must decode this format:  see `CompactSync.java`.
+    *
+    * The batch is nested under [[httpRootProperty]] (`{"location": {"encoding": "tsl-compact-1", ...}}`), or is the body itself with
+    * `httpRootProperty: "."`.  Batches are read in [[locationsOrderDirection]].  With [[batchSync]] __`false`__, each request carries
+    * one location.  A `401` response refreshes the token with [[Authorization.refreshUrl]] and re-sends the batch once.
+    *
+    * ### ℹ️ Note:
+    * - Applies only to [[BackgroundGeolocation.sync]], and requires [[autoSync]] __`false`__:  with `autoSync: true`, `#sync` uses the
+    *   standard encoding.  The compact uploader can't share the native uploader's record locking, so both running together could
+    *   send the same locations twice.
+    * - Ignored when [[locationTemplate]] is configured.
+    * - The records to upload are read from the database a batch at a time, as each batch is encoded.
+    * - [[params]] are sent as the batch's `params` field, not merged into the root of the body.
+    * - ⚠️ On iOS, `syncEncoding` is unsupported and ignored (with a console warning):  [[BackgroundGeolocation.sync]] uploads the standard encoding.
+    */
+    syncEncoding?: string;
+
+    /**
+    * __`[Android only]`__ The maximum number of batches uploaded concurrently by [[BackgroundGeolocation.sync]] with [[syncEncoding]] `"compact"` (`1` - `4`; default `1`).
+    * @break
+    *
+    * Uploads are pipelined:  the next batch is encoded while up to `syncConcurrency` batches are in flight.  Batches are acknowledged (destroyed from the database)
+    * in the order they were read, once the server has accepted them.  Batches are sized by [[maxBatchSize]] (see also [[adaptiveBatchSize]]).
+    *
+    * ⚠️ With `syncConcurrency > 1`, your server may receive batches out of order:  sort by `t` (timestamp) if order matters.
+    *
+    * `#sync` stops at the first failed batch and rejects with its error.  Batches after it which were already in flight stay in the
+    * database, even when your server accepted them, and are sent again by the next `#sync`:  de-duplicate by `uuid`.
+    *
+    * @example
+    * ```typescript
+    * BackgroundGeolocation.setConfig({
+    *   syncEncoding: "compact",
+    *   maxBatchSize: 500,
+    *   syncConcurrency: 3
+    * });
+    * ```
+    */
+    syncConcurrency?: number;
+
+    /**
+    * __`[Android only]`__ Adapt [[maxBatchSize]] to measured upload latency, throughput and failures.
+    * @break
+    *
+    * The batch size grows while requests complete well within `targetLatency`, shrinks in proportion when they're slower, and halves upon
+    * failure (timeout, network error, `5xx`), converging upon the largest batch which completes within `targetLatency`.  Requires [[batchSync]].
+    *
+    * Latency is measured per request only by the compact [[syncEncoding]];  the default encoding's uploads only shrink the batch size upon failure.
+    * Inspect the controller with [[BackgroundGeolocation.getSyncDiagnostics]].
+    *
+    * Provide `true`, or `{minBatchSize, maxBatchSize, targetLatency}` (defaults `10`, `1000`, `5000` ms).
+    *
+    * @example
+    * ```typescript
+    * BackgroundGeolocation.setConfig({
+    *   batchSync: true,
+    *   adaptiveBatchSize: {minBatchSize: 50, maxBatchSize: 2000, targetLatency: 3000}
+    * });
+    * ```
+    */
+    adaptiveBatchSize?: boolean|{minBatchSize?:number, maxBatchSize?:number, targetLatency?:number};
+
     /**
     * Optional custom template for rendering [[Location]] JSON request data in HTTP requests.
     * @break
@@ -1175,6 +1250,66 @@ declare module "cordova-background-geolocation-lt" {
     */
     maxRecordsToPersist?: number;
 
+    /**
+    * __`[Android only]`__ Simplify the persisted track:  locations which add nothing to the shape of the route (within `simplifyTolerance` meters) are not kept.
+    * @break
+    *
+    * __Default: `0`__ (disabled).
+    *
+    * While moving in a straight line, only the first and latest locations are kept:  each new location replaces the previous one when every location
+    * since the last kept one lies within `simplifyTolerance` meters of the line joining them.  This reduces database growth and the size of
+    * [[BackgroundGeolocation.sync]] uploads, without losing the route's turns.
+    *
+    * Locations carrying an event (eg: `motionchange`, `geofence`, `heartbeat`) and stationary locations are always kept.
+    *
+    * @example
+    * ```typescript
+    * BackgroundGeolocation.ready({
+    *   simplifyTolerance: 10
+    * });
+    * ```
+    *
+    * ### ℹ️ Note:
+    * - Every location is still delivered to [[BackgroundGeolocation.onLocation]].
+    * - Only locations still in the database are simplified:  the latest location is persisted (and may be uploaded) before the next one shows
+    * whether it was needed.  With [[autoSync]] and [[autoSyncThreshold]] `0`, each location is uploaded as soon as it's recorded, so your server
+    * receives the full track.  Simplification applies to uploads with a manual [[BackgroundGeolocation.sync]] ([[autoSync]] `false`), or with an
+    * [[autoSyncThreshold]] spanning several locations.
+    * - [[BackgroundGeolocation.getSyncDiagnostics]] reports the locations received and actually removed from the database (`simplifier`).
+    */
+    simplifyTolerance?: number;
+
+    /**
+    * __`[Android only]`__ Smooth location and speed with a native Kalman filter, reject outlying locations and drive a filtered odometer.
+    * @break
+    *
+    * __Default: `false`__.  Provide `true` for the defaults, or a [[LocationSmoothing]] to tune the filter.
+    *
+    * Each location's `coords.latitude`, `coords.longitude`, `coords.speed` and `odometer` are replaced by their filtered values, both in
+    * [[BackgroundGeolocation.onLocation]] and in the database (hence [[BackgroundGeolocation.sync]]).  A location is rejected as an outlier &mdash;
+    * neither persisted nor provided to [[BackgroundGeolocation.onLocation]] &mdash; when its accuracy exceeds [[LocationSmoothing.maxAccuracy]] or
+    * when reaching it from the filtered position implies a speed above [[LocationSmoothing.maxSpeed]].  Locations carrying an event (eg: `motionchange`,
+    * `geofence`, `heartbeat`) are never rejected.
+    *
+    * [[BackgroundGeolocation.getOdometer]] reports the filtered odometer, which accumulates the distance between filtered positions rather
+    * than between raw fixes, so GPS jitter no longer inflates it.
+    *
+    * @example
+    * ```typescript
+    * BackgroundGeolocation.ready({
+    *   locationSmoothing: {
+    *     maxAccuracy: 50,
+    *     maxSpeed: 40
+    *   }
+    * });
+    * ```
+    *
+    * ### ℹ️ Note:
+    * - [[State.odometer]] (and [[Config.odometer]]) remain the SDK's raw odometer.
+    * - [[BackgroundGeolocation.getSyncDiagnostics]] reports the locations accepted and rejected (`smoothing`).
+    */
+    locationSmoothing?: boolean|LocationSmoothing;
+
     /**
     * Allows you to specify which events to persist to the SDK's internal database:  locations | geofences | all (default).
     *
@@ -1672,6 +1807,31 @@ declare module "cordova-background-geolocation-lt" {
     */
     logMaxDays?: number;
 
+    /**
+    * __`[Android only]`__ Size and overflow policy of the asynchronous log buffer.
+    * @break
+    *
+    * Log messages (from [[Logger]] and the plugin itself) are appended to a bounded, in-memory buffer and written to the log database in batches
+    * by a background thread, so that logging never blocks the caller.  When the buffer is full, `overflow` decides what is lost:
+    *
+    * | `overflow`       | Description                                                                          |
+    * |------------------|--------------------------------------------------------------------------------------|
+    * | `"dropOldest"`   | __Default__.  Drop the oldest buffered message.                                      |
+    * | `"dropDebug"`    | Drop `debug` messages once the buffer is 3/4 full;  then the oldest.                 |
+    * | `"block"`        | [[Logger]] calls wait for room.  The plugin's own messages fall back to `dropOldest`. |
+    *
+    * `size` (default `1024` messages) takes effect upon the next launch of the app.  Lost messages are counted by [[Logger.getStats]].
+    *
+    * @example
+    * ```typescript
+    * BackgroundGeolocation.ready({
+    *   logLevel: BackgroundGeolocation.LOG_LEVEL_VERBOSE,
+    *   logBuffer: {size: 4096, overflow: "dropDebug"}
+    * });
+    * ```
+    */
+    logBuffer?: {size?:number, overflow?:"dropOldest"|"dropDebug"|"block"};
+
     /**
     * Controls whether the plugin should first reset the configuration when `#ready` is executed before applying the supplied config `{}`.
     *
@@ -2245,6 +2405,39 @@ declare module "cordova-background-geolocation-lt" {
     */
     enableHeadless?: boolean;
 
+    /**
+    * __`[Android only]`__ Declarative rules evaluated natively, without Javascript, including while the app is terminated.
+    * @break
+    *
+    * Location rules are evaluated before each location is persisted:  a dropped location is neither persisted nor uploaded to your [[url]].
+    * `throttle` rules limit how often an event is routed to your `BackgroundGeolocationHeadlessTask` handlers.
+    *
+    * | Rule | Effect |
+    * |------|--------|
+    * | `{type: "maxAccuracy", accuracy: 100}` | Drop locations with accuracy > `100` meters. |
+    * | `{type: "stationarySample", every: 5}` | Keep only every `5th` stationary location. |
+    * | `{type: "throttle", event: "heartbeat", interval: 3600000}` | Route at most one `heartbeat` per hour to headless handlers. |
+    *
+    * @example
+    * ```typescript
+    * BackgroundGeolocation.setConfig({
+    *   headlessRules: [
+    *     {type: "maxAccuracy", accuracy: 100},
+    *     {type: "throttle", event: "heartbeat", interval: 3600000}
+    *   ]
+    * });
+    * ```
+    *
+    * ### ℹ️ Note:
+    * - Rules are replaced as a whole.  Provide `[]` to remove them.
+    * - Despite the name, location rules apply in __all__ modes &mdash; foreground, background and terminated &mdash; to every location
+    *   persisted.
+    * - Location rules occupy the SDK's native before-insert block.  A native block of your own must be registered with
+    *   `HeadlessRules.setBeforeInsertBlock(context, block)` (it's evaluated after the rules) rather than upon `BackgroundGeolocation`.
+    * - Throttling requires the `HeadlessRules` check in your `BackgroundGeolocationHeadlessTask` (see the plugin's template).
+    */
+    headlessRules?: Array<HeadlessRule>;
+
     /**
     * __`[Android only]`__ Configure the plugin service to run as a more robust "Foreground Service".
     * @break
@@ -2454,4 +2647,48 @@ declare module "cordova-background-geolocation-lt" {
     */
     notificationChannelName?: string;
   }
+
+  /**
+  * Options of [[Config.locationSmoothing]].
+  */
+  interface LocationSmoothing {
+    /**
+    * Reject locations with accuracy greater than this, in meters.  Defaults to `100`.
+    */
+    maxAccuracy?:number;
+    /**
+    * Reject locations implying a speed greater than this, in meters / second.  Defaults to `70`.
+    */
+    maxSpeed?:number;
+    /**
+    * Expected acceleration (meters / second²):  higher follows maneuvers faster, lower smooths more.  Defaults to `2`.
+    */
+    processNoise?:number;
+  }
+
+  /**
+  * A rule of [[Config.headlessRules]].
+  */
+  interface HeadlessRule {
+    /**
+    * `maxAccuracy` | `stationarySample` | `throttle`
+    */
+    type:string;
+    /**
+    * `maxAccuracy`:  max location accuracy in meters.
+    */
+    accuracy?:number;
+    /**
+    * `stationarySample`:  keep every nth stationary location.
+    */
+    every?:number;
+    /**
+    * `throttle`:  event name, eg: `"heartbeat"`.
+    */
+    event?:string;
+    /**
+    * `throttle`:  min milliseconds between routed events.
+    */
+    interval?:number;
+  }
 }
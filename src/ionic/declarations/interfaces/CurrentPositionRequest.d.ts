@@ -15,6 +15,9 @@ declare module "cordova-background-geolocation-lt" {
   *   }
   * });
   * ```
+  *
+  * __`🤖 Android`__ Concurrent requests are coalesced:  a request compatible with one already in progress (the same `persist` and `extras`,
+  * requesting no better `desiredAccuracy` and no more `samples`) shares its result rather than starting its own sampling session.
   */
   interface CurrentPositionRequest {
     /**
@@ -35,6 +38,10 @@ declare module "cordova-background-geolocation-lt" {
     persist?: boolean;
     /**
     * Accept the last-recorded-location if no older than supplied value in `milliseconds`.  Default is `0`.
+    *
+    * __`🤖 Android`__ The last location (from any request or from tracking) is also required to satisfy `desiredAccuracy`
+    * (`50` meters for `DESIRED_ACCURACY_HIGH` / `NAVIGATION`).  Requests with `extras` or `persist: true` always fetch (and persist) a new
+    * location:  a location answered from `maximumAge` is not persisted again.
     */
     maximumAge?: number;
     /**
@@ -0,0 +1,29 @@
+declare module "cordova-background-geolocation-lt" {
+  /**
+  * __`[Android only]`__ Options for [[BackgroundGeolocation.onLocation]], [[BackgroundGeolocation.onMotionChange]] and [[BackgroundGeolocation.onHeartbeat]].
+  *
+  * @example
+  * ```typescript
+  * BackgroundGeolocation.onLocation((location) => {
+  *   console.log("[onLocation]", location);
+  * }, (error) => {
+  *   console.log("[onLocation] ERROR", error);
+  * }, {encoding: "binary"});
+  * ```
+  */
+  interface EventListenerOptions {
+    /**
+    * `"json"` (default) | `"binary"`.
+    *
+    * With `"binary"`, each event crosses the bridge as a compact, fixed-layout binary record (an `ArrayBuffer`) rather than JSON, and is decoded
+    * by the plugin before your `callback` is executed.  This saves building, stringifying and re-parsing JSON for every location &mdash; worthwhile
+    * for high-frequency tracking.
+    *
+    * The decoded [[Location]] carries the same fields and values as its JSON counterpart (eg: `coords.speed_accuracy`, `mock`, with `-1`
+    * for unknown values).  Locations carrying a `geofence`, `provider` or `timestampMeta` are delivered as JSON.
+    *
+    * ℹ️ Listeners with a [[LocationBatchOptions]] receive JSON.
+    */
+    encoding?:string;
+  }
+}
@@ -0,0 +1,12 @@
+declare module "cordova-background-geolocation-lt" {
+  /**
+  * Bounding-box for [[BackgroundGeolocation.getGeofencesInBounds]], in degrees.  A box whose `west` is greater than
+  * its `east` crosses the antimeridian.
+  */
+  interface GeofenceBounds {
+    north:number;
+    south:number;
+    east:number;
+    west:number;
+  }
+}
@@ -0,0 +1,49 @@
+declare module "cordova-background-geolocation-lt" {
+  /**
+  * Options for [[BackgroundGeolocation.importGeofences]].
+  */
+  interface GeofenceImportOptions {
+    /**
+    * Number of geofences committed at a time.  Defaults to `500`.
+    */
+    chunkSize?:number;
+  }
+
+  /**
+  * Progress event of [[BackgroundGeolocation.importGeofences]], sent after each chunk is committed.
+  */
+  interface GeofenceImportProgress {
+    type:string;
+    total:number;
+    processed:number;
+    accepted:number;
+    rejected:number;
+  }
+
+  /**
+  * Result of one geofence of [[BackgroundGeolocation.importGeofences]].
+  */
+  interface GeofenceImportItem {
+    /**
+    * Position in the provided list.
+    */
+    index:number;
+    identifier:string;
+    accepted:boolean;
+    /**
+    * Reason the geofence was rejected.
+    */
+    error?:string;
+  }
+
+  /**
+  * Result of [[BackgroundGeolocation.importGeofences]].
+  */
+  interface GeofenceImportResult {
+    type:string;
+    total:number;
+    accepted:number;
+    rejected:number;
+    results:Array<GeofenceImportItem>;
+  }
+}
@@ -0,0 +1,21 @@
+declare module "cordova-background-geolocation-lt" {
+  /**
+  * Result of [[BackgroundGeolocation.getGeofencesSince]].
+  */
+  interface GeofencesDiff {
+    /**
+    * Current revision of the geofence store.  Provide it to the next call.
+    */
+    revision:number;
+    /**
+    * `true` when the provided revision is unknown.  [[added]] then holds every geofence and the local mirror should be replaced.
+    */
+    reset:boolean;
+    added:Array<Geofence>;
+    modified:Array<Geofence>;
+    /**
+    * Identifiers of removed geofences.
+    */
+    removed:Array<string>;
+  }
+}
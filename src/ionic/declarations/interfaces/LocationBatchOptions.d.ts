@@ -0,0 +1,17 @@
+declare module "cordova-background-geolocation-lt" {
+  /**
+  * Options for [[BackgroundGeolocation.onLocationBatch]].
+  *
+  * A batch is delivered when either limit is reached, whichever comes first.
+  */
+  interface LocationBatchOptions {
+    /**
+    * Max number of locations per batch.  Defaults to `50`.
+    */
+    batchSize?:number;
+    /**
+    * Max milliseconds a location is buffered before its batch is delivered.  Defaults to `10000`.
+    */
+    batchLatency?:number;
+  }
+}
@@ -0,0 +1,13 @@
+declare module "cordova-background-geolocation-lt" {
+  /**
+  * Result of one location of [[BackgroundGeolocation.insertLocations]] / [[BackgroundGeolocation.destroyLocations]].
+  */
+  interface LocationBatchResult {
+    success:boolean;
+    uuid?:string;
+    /**
+    * Reason the location failed.
+    */
+    error?:string;
+  }
+}
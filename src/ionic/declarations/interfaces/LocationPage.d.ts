@@ -0,0 +1,40 @@
+declare module "cordova-background-geolocation-lt" {
+  /**
+  * Options for paging the records returned by [[BackgroundGeolocation.getLocations]] and [[BackgroundGeolocation.sync]].
+  *
+  * ```typescript
+  * let page = await BackgroundGeolocation.getLocations({pageSize: 500});
+  * while (page.cursor) {
+  *   page = await BackgroundGeolocation.getLocations({cursor: page.cursor});
+  * }
+  * ```
+  */
+  interface LocationPageRequest {
+    /**
+    * Max number of records delivered per page.
+    */
+    pageSize?:number;
+    /**
+    * [[LocationPage.cursor]] of the previous page.  Fetches the next page.
+    */
+    cursor?:string;
+  }
+
+  /**
+  * A page of records returned by [[BackgroundGeolocation.getLocations]] / [[BackgroundGeolocation.sync]] with a [[LocationPageRequest]].
+  */
+  interface LocationPage {
+    /**
+    * The records of this page.
+    */
+    locations:Array<Object>;
+    /**
+    * Cursor for fetching the next page.  `null` when this is the final page.
+    */
+    cursor:string|null;
+    /**
+    * Total number of records available across all pages.
+    */
+    total:number;
+  }
+}
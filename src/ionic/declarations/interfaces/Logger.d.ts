@@ -254,6 +254,26 @@ declare module "cordova-background-geolocation-lt" {
     */
     getLog(query?:SQLQuery): Promise<string>;
 
+    /**
+    * __`🤖 Android only`__ Export the records of the log database to a gzipped file, streaming them a row at a time rather than building
+    * the entire log in memory as [[getLog]] does.  Resolves with the file's URI and size (bytes).  Provide an optional [[SQLQuery]] to
+    * constrain results.
+    *
+    * Prefer this to [[getLog]] with a verbose [[Config.logLevel]], where the log can grow to tens of MB.  Each export replaces the previous one.
+    *
+    * ⚠️ On iOS, the `Promise` rejects:  `exportLog` is unsupported.
+    *
+    * @example
+    * ```typescript
+    * let result = await BackgroundGeolocation.logger.exportLog({
+    *   start: Date.parse("2019-09-19"),
+    *   order: Logger.ORDER_ASC
+    * });
+    * console.log("[exportLog] ", result.uri, result.size);  // file:///data/.../cache/background-geolocation.log.gz
+    * ```
+    */
+    exportLog(query?:SQLQuery): Promise<{uri:string, size:number}>;
+
     /**
     * Email the result of [[getLog]] using device's mail client.
     *
@@ -355,5 +375,19 @@ declare module "cordova-background-geolocation-lt" {
     * - 📘[Debugging Guide](github:wiki/Debugging)
     */
     destroyLog(): Promise<boolean>;
+
+    /**
+    * __`🤖 Android only`__ Counters of the asynchronous log buffer configured with [[Config.logBuffer]]:  messages appended, written
+    * and dropped (in total, and `debug` messages) due to overflow.
+    *
+    * ⚠️ On iOS, the `Promise` rejects:  `getStats` is unsupported.
+    *
+    * @example
+    * ```typescript
+    * let stats = await BackgroundGeolocation.logger.getStats();
+    * console.log("[getStats] dropped: ", stats.dropped, stats.droppedDebug);
+    * ```
+    */
+    getStats(): Promise<{size:number, overflow:string, buffered:number, appended:number, written:number, dropped:number, droppedDebug:number, blocked:number}>;
   }
 }
@@ -36,6 +36,15 @@ declare module "cordova-background-geolocation-lt" {
   *   order: Logger.ORDER_DESC,
   *   limit: 100
   * ));
+  *
+  * // 🤖 Android:  select only the warnings & errors of the HttpService mentioning "timeout".
+  * // On iOS, a query providing level, tag or text rejects:  the filters are unsupported.
+  * let log = await BackgroundGeolocation.logger.getLog({
+  *   start: Date.parse("2019-10-14"),
+  *   level: "warn",
+  *   tag: "HttpService",
+  *   text: "timeout"
+  * });
   * ```
   */
   interface SQLQuery {
@@ -56,5 +65,17 @@ declare module "cordova-background-geolocation-lt" {
     * `1` = `ASC`; `-1` = `DESC`.
     */
     order?:SQLQueryOrder;
+    /**
+    * __`🤖 Android only`__ Select only records of this level or above:  `"debug"`, `"info"`, `"warn"` or `"error"`.
+    */
+    level?:"debug"|"info"|"warn"|"error";
+    /**
+    * __`🤖 Android only`__ Select only records logged by this class, by simple name (eg: `"HttpService"`) or fully-qualified.
+    */
+    tag?:string;
+    /**
+    * __`🤖 Android only`__ Select only records whose message contains this text (a full-text phrase match).
+    */
+    text?:string;
   }
 }
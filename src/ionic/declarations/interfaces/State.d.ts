@@ -36,6 +36,10 @@ declare module "cordova-background-geolocation-lt" {
     */
     odometer: number;
     /**
+    * __`🤖 Android only`__ Changes whenever the State does.  Provide to [[BackgroundGeolocation.getState]] as `{ifChangedSince: version}`.
+    */
+    version?: number;
+    /**
     * `true` when the iOS app was launched in the background.  Always `false` for Android.
     * iOS apps can be launched in the background due to a background-fetch event, geofence events or exiting the [[Config.stationaryRadius]].
     *
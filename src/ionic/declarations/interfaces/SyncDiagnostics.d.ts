@@ -0,0 +1,75 @@
+declare module "cordova-background-geolocation-lt" {
+  /**
+  * Result of [[BackgroundGeolocation.getSyncDiagnostics]].
+  */
+  interface SyncDiagnostics {
+    /**
+    * `true` when [[Config.adaptiveBatchSize]] is enabled.
+    */
+    enabled:boolean;
+    /**
+    * The current [[Config.maxBatchSize]].
+    */
+    maxBatchSize:number;
+    controller?:{
+      batchSize:number;
+      minBatchSize:number;
+      maxBatchSize:number;
+      /**
+      * Batch size currently not to be exceeded, learned from slow responses.
+      */
+      ceiling:number;
+      targetLatency:number;
+      lastLatency:number;
+      /**
+      * Moving average of request latency (ms).
+      */
+      latency:number;
+      /**
+      * Moving average of records / second.
+      */
+      throughput:number;
+      bytesPerRecord:number;
+      successes:number;
+      failures:number;
+      adjustments:number;
+    };
+    /**
+    * Location smoothing counters (see [[Config.locationSmoothing]]).
+    */
+    smoothing:{
+      enabled:boolean;
+      maxAccuracy:number;
+      maxSpeed:number;
+      processNoise:number;
+      accepted:number;
+      /**
+      * Locations rejected as outliers.
+      */
+      rejected:number;
+      /**
+      * The filtered odometer (meters).
+      */
+      odometer:number;
+    };
+    /**
+    * Trajectory simplification counters (see [[Config.simplifyTolerance]]).
+    */
+    simplifier:{
+      tolerance:number;
+      /**
+      * Locations offered for persistence.
+      */
+      received:number;
+      /**
+      * Locations removed from the database as redundant.
+      */
+      removed:number;
+      kept:number;
+      /**
+      * Largest distance (meters) of a removed location from the simplified track.
+      */
+      maxError:number;
+    };
+  }
+}
@@ -20,11 +20,15 @@ declare module "cordova-background-geolocation-lt" {
 	interface WatchPositionRequest {
 		/**
 		* Location update interval in `milliseconds`.  Defaults to `1000`.
+		*
+		* When several watches are running, they share the shortest `interval` requested;  each watch receives locations no more often than its own `interval`.
 		*/
     interval?: number;
     /**
     * Specifies the accuracy required.  See [[Config.desiredAccuracy]].  Only [[BackgroundGeolocation.DESIRED_ACCURACY_HIGH]] uses GPS.
     * Defaults to [[DESIRED_ACCURACY_HIGH]].
+    *
+    * When several watches are running, the best `desiredAccuracy` requested applies to all of them.
     */
     desiredAccuracy?: LocationAccuracy;
     /**
@@ -34,6 +38,8 @@ declare module "cordova-background-geolocation-lt" {
     persist?: boolean;
     /**
     * Arbitrary key/values to append to each recorded location.
+    *
+    * __[Android only]__ When several watches are running, their `extras` are merged and `persist` is `true` if any watch requests it.
     */
     extras?: Extras;
     /**
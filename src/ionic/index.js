@@ -288,6 +288,10 @@ var BackgroundGeolocation = /** @class */ (function () {
         var bgGeo = plugin();
         return bgGeo.onLocation.apply(bgGeo, arguments);
     };
+    BackgroundGeolocation.onLocationBatch = function (success, failure, options) {
+        var bgGeo = plugin();
+        return bgGeo.onLocationBatch.apply(bgGeo, arguments);
+    };
     BackgroundGeolocation.onMotionChange = function (callback) {
         var bgGeo = plugin();
         return bgGeo.onMotionChange.apply(bgGeo, arguments);
@@ -421,6 +425,14 @@ var BackgroundGeolocation = /** @class */ (function () {
         var bgGeo = plugin();
         return bgGeo.insertLocation.apply(bgGeo, arguments);
     };
+    BackgroundGeolocation.getSyncDiagnostics = function () {
+        var bgGeo = plugin();
+        return bgGeo.getSyncDiagnostics.apply(bgGeo, arguments);
+    };
+    BackgroundGeolocation.insertLocations = function () {
+        var bgGeo = plugin();
+        return bgGeo.insertLocations.apply(bgGeo, arguments);
+    };
     BackgroundGeolocation.sync = function () {
         var bgGeo = plugin();
         return bgGeo.sync.apply(bgGeo, arguments);
@@ -449,6 +461,10 @@ var BackgroundGeolocation = /** @class */ (function () {
         var bgGeo = plugin();
         return bgGeo.addGeofences.apply(bgGeo, arguments);
     };
+    BackgroundGeolocation.importGeofences = function () {
+        var bgGeo = plugin();
+        return bgGeo.importGeofences.apply(bgGeo, arguments);
+    };
     BackgroundGeolocation.removeGeofences = function () {
         var bgGeo = plugin();
         return bgGeo.removeGeofences.apply(bgGeo, arguments);
@@ -457,6 +473,18 @@ var BackgroundGeolocation = /** @class */ (function () {
         var bgGeo = plugin();
         return bgGeo.getGeofences.apply(bgGeo, arguments);
     };
+    BackgroundGeolocation.getGeofencesNear = function () {
+        var bgGeo = plugin();
+        return bgGeo.getGeofencesNear.apply(bgGeo, arguments);
+    };
+    BackgroundGeolocation.getGeofencesInBounds = function () {
+        var bgGeo = plugin();
+        return bgGeo.getGeofencesInBounds.apply(bgGeo, arguments);
+    };
+    BackgroundGeolocation.getGeofencesSince = function () {
+        var bgGeo = plugin();
+        return bgGeo.getGeofencesSince.apply(bgGeo, arguments);
+    };
     BackgroundGeolocation.getGeofence = function () {
         var bgGeo = plugin();
         return bgGeo.getGeofence.apply(bgGeo, arguments);
@@ -100,6 +100,10 @@ export default class BackgroundGeolocation {
     const bgGeo = plugin();
     return bgGeo.onLocation.apply(bgGeo, arguments);
   }
+  static onLocationBatch(success: Function, failure?: Function, options?: any) {
+    const bgGeo = plugin();
+    return bgGeo.onLocationBatch.apply(bgGeo, arguments);
+  }
   static onMotionChange(callback: Function) {
     const bgGeo = plugin();
     return bgGeo.onMotionChange.apply(bgGeo, arguments);
@@ -233,6 +237,14 @@ export default class BackgroundGeolocation {
     const bgGeo = plugin();
     return bgGeo.insertLocation.apply(bgGeo, arguments);
   }
+  static getSyncDiagnostics() {
+    const bgGeo = plugin();
+    return bgGeo.getSyncDiagnostics.apply(bgGeo, arguments);
+  }
+  static insertLocations() {
+    const bgGeo = plugin();
+    return bgGeo.insertLocations.apply(bgGeo, arguments);
+  }
   static sync() {
     const bgGeo = plugin();
     return bgGeo.sync.apply(bgGeo, arguments);
@@ -261,6 +273,10 @@ export default class BackgroundGeolocation {
     const bgGeo = plugin();
     return bgGeo.addGeofences.apply(bgGeo, arguments);
   }
+  static importGeofences() {
+    const bgGeo = plugin();
+    return bgGeo.importGeofences.apply(bgGeo, arguments);
+  }
   static removeGeofences() {
     const bgGeo = plugin();
     return bgGeo.removeGeofences.apply(bgGeo, arguments);
@@ -269,6 +285,18 @@ export default class BackgroundGeolocation {
     const bgGeo = plugin();
     return bgGeo.getGeofences.apply(bgGeo, arguments);
   }
+  static getGeofencesNear() {
+    const bgGeo = plugin();
+    return bgGeo.getGeofencesNear.apply(bgGeo, arguments);
+  }
+  static getGeofencesInBounds() {
+    const bgGeo = plugin();
+    return bgGeo.getGeofencesInBounds.apply(bgGeo, arguments);
+  }
+  static getGeofencesSince() {
+    const bgGeo = plugin();
+    return bgGeo.getGeofencesSince.apply(bgGeo, arguments);
+  }
   static getGeofence() {
     const bgGeo = plugin();
     return bgGeo.getGeofence.apply(bgGeo, arguments);
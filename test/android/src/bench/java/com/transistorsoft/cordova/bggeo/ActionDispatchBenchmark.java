@@ -0,0 +1,107 @@
+package com.transistorsoft.cordova.bggeo;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Cost of resolving an action name in CDVBackgroundGeolocation#execute:  the former chain of equalsIgnoreCase comparisons versus
+ * the action registry (exact-name lookup, then lower-cased).
+ *
+ *   gradle -p test/android benchActionDispatchBenchmark
+ *
+ * The plugin class needs Cordova, so both strategies are reproduced here over the same action names:  the chain compares them in
+ * the order of the former #execute, the registry is keyed as #registerAction keys it.  As upon the bridge, each call resolves a new
+ * String (its hash not yet cached).
+ */
+public class ActionDispatchBenchmark {
+    // The actions of the former #execute, in the order of its equalsIgnoreCase chain.
+    private static final String[] CHAIN = {
+            "start", "startSchedule", "stopSchedule", "startGeofences", "stop", "startBackgroundTask", "finish", "error", "reset",
+            "ready", "configure", "removeListeners", "removeListener", "addLocationListener", "changePace", "setConfig", "getState",
+            "addMotionChangeListener", "getLocations", "sync", "getOdometer", "setOdometer", "addGeofence", "addGeofences",
+            "removeGeofence", "removeGeofences", "addGeofenceListener", "addGeofencesChangeListener", "addPowerSaveChangeListener",
+            "addConnectivityChangeListener", "addEnabledChangeListener", "addNotificationActionListener", "getGeofences",
+            "getGeofence", "geofenceExists", "playSound", "getCurrentPosition", "watchPosition", "stopWatchPosition",
+            "startBackgroundTask", "destroyLocations", "destroyLocation", "addHttpListener", "addHeartbeatListener",
+            "addActivityChangeListener", "addProviderChangeListener", "addScheduleListener", "addAuthorizationListener", "getLog",
+            "emailLog", "uploadLog", "insertLocation", "getCount", "destroyLog", "getSensors", "getDeviceInfo", "isPowerSaveMode",
+            "isIgnoringBatteryOptimizations", "requestSettings", "showSettings", "log", "getProviderState", "requestPermission",
+            "requestTemporaryFullAccuracy", "getTransistorToken", "destroyTransistorToken"
+    };
+    private static final String[] ACTIONS = {"start", "getState", "getCurrentPosition", "getCount", "log", "GETSTATE", "unknown"};
+    private static final long WARMUP_MILLIS = 500;
+    private static final long RUN_MILLIS = 1000;
+
+    private static final Map<String, Integer> sRegistry = new HashMap<String, Integer>();
+    private static int sink;
+
+    public static void main(String[] args) {
+        for (int i = 0; i < CHAIN.length; i++) {
+            String key = CHAIN[i].toLowerCase(Locale.ENGLISH);
+            if (!sRegistry.containsKey(key)) {
+                sRegistry.put(key, i);
+                sRegistry.put(CHAIN[i], i);
+            }
+        }
+        System.out.println(String.format("%-20s %10s %10s %10s", "action", "position", "chain", "registry"));
+        for (String action : ACTIONS) {
+            final char[] name = action.toCharArray();
+            double chain = measure(new Op() {
+                @Override public int run() {
+                    return chain(new String(name));
+                }
+            });
+            double registry = measure(new Op() {
+                @Override public int run() {
+                    return registry(new String(name));
+                }
+            });
+            int position = chain(action);
+            System.out.println(String.format("%-20s %10s %8.1fns %8.1fns", action, (position >= 0) ? String.valueOf(position + 1) : "-", chain, registry));
+        }
+    }
+
+    private static int chain(String action) {
+        for (int i = 0; i < CHAIN.length; i++) {
+            if (CHAIN[i].equalsIgnoreCase(action)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int registry(String action) {
+        Integer handler = sRegistry.get(action);
+        if (handler == null) {
+            handler = sRegistry.get(action.toLowerCase(Locale.ENGLISH));
+        }
+        return (handler != null) ? handler : -1;
+    }
+
+    private interface Op {
+        int run();
+    }
+
+    /**
+     * @return ns per op.
+     */
+    private static double measure(Op op) {
+        long deadline = System.nanoTime() + WARMUP_MILLIS * 1000000;
+        while (System.nanoTime() < deadline) {
+            sink += op.run();
+        }
+        long ops = 0;
+        long startedAt = System.nanoTime();
+        deadline = startedAt + RUN_MILLIS * 1000000;
+        long now;
+        do {
+            for (int i = 0; i < 1000; i++) {
+                sink += op.run();
+            }
+            ops += 1000;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return (double) (now - startedAt) / ops;
+    }
+}
@@ -0,0 +1,108 @@
+package com.transistorsoft.cordova.bggeo;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Cost of a #setConfig of two small fields (distanceFilter, extras) against the size of the config.
+ *
+ *   gradle -p test/android benchConfigDiffBenchmark
+ *
+ * - echo:  the former #setConfig, replying with the whole config (TSConfig#toJson, serialized across the bridge).
+ * - diff, re-serialized:  diffing against the config re-serialized upon each call.
+ * - diff, cached:  the plugin's #setConfig, diffing against the cached State and replying with the changes only.
+ *
+ * The SDK isn't available on the JVM:  TSConfig#toJson is modeled by parsing the config's serialized form, which builds the same
+ * JSONObject tree.
+ */
+public class ConfigDiffBenchmark {
+    private static final int[] SIZES = {50, 200, 1000};
+    private static final long WARMUP_MILLIS = 500;
+    private static final long RUN_MILLIS = 1000;
+
+    private static Object sink;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(String.format("%8s %10s %12s %20s %14s", "fields", "bytes", "echo", "diff, re-serialized", "diff, cached"));
+        for (int size : SIZES) {
+            final String serialized = config(size).toString();
+            final JSONObject cached = new JSONObject(serialized);
+            final JSONObject params = new JSONObject()
+                    .put("distanceFilter", 25)
+                    .put("extras", new JSONObject().put("route", 8));
+
+            double echo = measure(new Op() {
+                @Override public Object run() throws JSONException {
+                    JSONObject config = new JSONObject(serialized);
+                    return config.toString();
+                }
+            });
+            double reserialized = measure(new Op() {
+                @Override public Object run() throws JSONException {
+                    return ConfigDiff.diff(new JSONObject(serialized), params).toString();
+                }
+            });
+            double diff = measure(new Op() {
+                @Override public Object run() throws JSONException {
+                    return ConfigDiff.diff(cached, params).toString();
+                }
+            });
+            System.out.println(String.format("%8d %10d %10.0fns %18.0fns %12.0fns", size, serialized.length(), echo, reserialized, diff));
+        }
+    }
+
+    private interface Op {
+        Object run() throws JSONException;
+    }
+
+    /**
+     * @return ns per op.
+     */
+    private static double measure(Op op) throws JSONException {
+        long deadline = System.nanoTime() + WARMUP_MILLIS * 1000000;
+        while (System.nanoTime() < deadline) {
+            sink = op.run();
+        }
+        long ops = 0;
+        long startedAt = System.nanoTime();
+        deadline = startedAt + RUN_MILLIS * 1000000;
+        long now;
+        do {
+            for (int i = 0; i < 100; i++) {
+                sink = op.run();
+            }
+            ops += 100;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return (double) (now - startedAt) / ops;
+    }
+
+    /**
+     * A config of about size fields:  the usual scalars, and extras / headers / params growing with size.
+     */
+    private static JSONObject config(int size) throws JSONException {
+        JSONObject config = new JSONObject()
+                .put("enabled", true)
+                .put("isMoving", false)
+                .put("odometer", 12345.6)
+                .put("distanceFilter", 10)
+                .put("desiredAccuracy", -1)
+                .put("stopTimeout", 5)
+                .put("url", "https://example.com/locations")
+                .put("triggerActivities", new JSONArray().put("in_vehicle").put("on_bicycle"))
+                .put("extras", new JSONObject().put("route", 7));
+        JSONObject headers = new JSONObject();
+        JSONObject httpParams = new JSONObject();
+        for (int i = config.length(); i < size; i++) {
+            if (i % 3 == 0) {
+                headers.put("X-Header-" + i, "value-" + i);
+            } else if (i % 3 == 1) {
+                httpParams.put("param" + i, i);
+            } else {
+                config.put("option" + i, (i % 2 == 0) ? (Object) Boolean.TRUE : (Object) ("value-" + i));
+            }
+        }
+        return config.put("headers", headers).put("params", httpParams);
+    }
+}
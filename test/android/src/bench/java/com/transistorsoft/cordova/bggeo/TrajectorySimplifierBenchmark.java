@@ -0,0 +1,231 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.content.Context;
+import android.location.Location;
+
+import com.transistorsoft.locationmanager.adapter.BackgroundGeolocation;
+import com.transistorsoft.locationmanager.location.TSLocation;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Points kept, max error and CPU time per location of the TrajectorySimplifier, by trace and tolerance.
+ *
+ *   gradle -p test/android benchTrajectorySimplifierBenchmark [--args="trace.csv ..."]
+ *
+ * Synthetic traces are always run.  Recorded traces may be given as CSV files of "timestamp (millis),latitude,longitude" lines
+ * (eg: exported from #getLocations);  none ship with the plugin.
+ */
+public class TrajectorySimplifierBenchmark {
+    private static final double EARTH_RADIUS = 6371008.8;
+    private static final double ORIGIN_LAT = 45.5;
+    private static final double ORIGIN_LNG = -73.6;
+    private static final long START_TIME = 1700000000000L;
+    private static final float[] TOLERANCES = {5, 10, 25};
+    private static final int WARMUP = 20;
+    private static final int RUNS = 50;
+
+    public static void main(String[] args) throws Exception {
+        List<String> names = new ArrayList<String>();
+        List<double[][]> traces = new ArrayList<double[][]>();
+        names.add("highway");
+        traces.add(highway());
+        names.add("city");
+        traces.add(city());
+        names.add("walk");
+        traces.add(walk());
+        for (String file : args) {
+            names.add(file);
+            traces.add(read(file));
+        }
+        System.out.println(String.format("%-16s %9s %7s %13s %10s %12s", "trace", "tolerance", "points", "kept", "maxError", "cpu/location"));
+        for (int i = 0; i < traces.size(); i++) {
+            for (float tolerance : TOLERANCES) {
+                run(names.get(i), traces.get(i), tolerance);
+            }
+        }
+    }
+
+    private static void run(String name, double[][] trace, float tolerance) throws JSONException {
+        Context context = new Context();
+        List<String> destroyed = BackgroundGeolocation.getInstance(context).destroyed;
+        TSLocation[] locations = locations(trace);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        for (int i = 0; i < WARMUP; i++) {
+            replay(context, locations, tolerance);
+        }
+        long cpu = 0;
+        for (int i = 0; i < RUNS; i++) {
+            destroyed.clear();
+            long startedAt = threads.getCurrentThreadCpuTime();
+            replay(context, locations, tolerance);
+            cpu += threads.getCurrentThreadCpuTime() - startedAt;
+        }
+
+        Set<String> removed = new HashSet<String>(destroyed);
+        List<double[]> kept = new ArrayList<double[]>();
+        for (int i = 0; i < trace.length; i++) {
+            if (!removed.contains(String.valueOf(i))) {
+                kept.add(trace[i]);
+            }
+        }
+        System.out.println(String.format("%-16s %8.0fm %7d %6d (%3.0f%%) %9.1fm %10.0fns",
+                name, tolerance, trace.length, kept.size(), 100.0 * kept.size() / trace.length, maxError(trace, kept),
+                (double) cpu / RUNS / trace.length));
+    }
+
+    private static void replay(Context context, TSLocation[] locations, float tolerance) {
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(context);
+        simplifier.setTolerance(tolerance);
+        for (TSLocation location : locations) {
+            Location fix = location.getLocation();
+            simplifier.offer(location, fix.getLatitude(), fix.getLongitude());
+        }
+    }
+
+    /**
+     * 30 minutes at 30 m/s, gently curving, with 3m of noise.
+     */
+    private static double[][] highway() {
+        Random random = new Random(1);
+        double[][] trace = new double[1800][];
+        double x = 0, y = 0;
+        for (int i = 0; i < trace.length; i++) {
+            double heading = Math.sin(i / 300.0) * 0.5;
+            x += 30 * Math.sin(heading);
+            y += 30 * Math.cos(heading);
+            trace[i] = new double[] {x + random.nextGaussian() * 3, y + random.nextGaussian() * 3, i};
+        }
+        return trace;
+    }
+
+    /**
+     * 30 minutes at 10 m/s on a grid of 200m blocks, turning at each corner, with 5m of noise.
+     */
+    private static double[][] city() {
+        Random random = new Random(2);
+        double[][] trace = new double[1800][];
+        double x = 0, y = 0;
+        double dx = 0, dy = 10;
+        for (int i = 0; i < trace.length; i++) {
+            if (i > 0 && i % 20 == 0) {
+                double turn = random.nextBoolean() ? 1 : -1;
+                double previous = dx;
+                dx = -dy * turn;
+                dy = previous * turn;
+            }
+            x += dx;
+            y += dy;
+            trace[i] = new double[] {x + random.nextGaussian() * 5, y + random.nextGaussian() * 5, i};
+        }
+        return trace;
+    }
+
+    /**
+     * 30 minutes of meandering walk at 1.4 m/s, with 8m of noise.
+     */
+    private static double[][] walk() {
+        Random random = new Random(3);
+        double[][] trace = new double[1800][];
+        double x = 0, y = 0, heading = 0;
+        for (int i = 0; i < trace.length; i++) {
+            heading += random.nextGaussian() * 0.1;
+            x += 1.4 * Math.sin(heading);
+            y += 1.4 * Math.cos(heading);
+            trace[i] = new double[] {x + random.nextGaussian() * 8, y + random.nextGaussian() * 8, i};
+        }
+        return trace;
+    }
+
+    /**
+     * Read a recorded trace, projected to meters about its first location.
+     */
+    private static double[][] read(String file) throws IOException {
+        List<double[]> trace = new ArrayList<double[]>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            double originLat = 0, originLng = 0, cos = 1;
+            long originTime = 0;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.trim().split(",");
+                if (fields.length < 3) {
+                    continue;
+                }
+                long time;
+                double lat, lng;
+                try {
+                    time = Long.parseLong(fields[0].trim());
+                    lat = Double.parseDouble(fields[1].trim());
+                    lng = Double.parseDouble(fields[2].trim());
+                } catch (NumberFormatException e) {
+                    // Header
+                    continue;
+                }
+                if (trace.isEmpty()) {
+                    originLat = lat;
+                    originLng = lng;
+                    originTime = time;
+                    cos = Math.cos(Math.toRadians(lat));
+                }
+                trace.add(new double[] {
+                        Math.toRadians(lng - originLng) * EARTH_RADIUS * cos,
+                        Math.toRadians(lat - originLat) * EARTH_RADIUS,
+                        (time - originTime) / 1000.0});
+            }
+        } finally {
+            reader.close();
+        }
+        return trace.toArray(new double[trace.size()][]);
+    }
+
+    private static TSLocation[] locations(double[][] trace) throws JSONException {
+        TSLocation[] locations = new TSLocation[trace.length];
+        double cos = Math.cos(Math.toRadians(ORIGIN_LAT));
+        for (int i = 0; i < trace.length; i++) {
+            Location fix = new Location("gps");
+            fix.setLatitude(ORIGIN_LAT + Math.toDegrees(trace[i][1] / EARTH_RADIUS));
+            fix.setLongitude(ORIGIN_LNG + Math.toDegrees(trace[i][0] / (EARTH_RADIUS * cos)));
+            fix.setTime(START_TIME + (long) (trace[i][2] * 1000));
+            locations[i] = new TSLocation(fix, new JSONObject().put("uuid", String.valueOf(i)).put("is_moving", true));
+        }
+        return locations;
+    }
+
+    /**
+     * The largest distance from a location of the trace to the kept polyline's segment spanning it.
+     */
+    private static double maxError(double[][] trace, List<double[]> kept) {
+        double error = 0;
+        int segment = 0;
+        for (double[] point : trace) {
+            if (segment + 1 < kept.size() && point == kept.get(segment + 1)) {
+                segment++;
+                continue;
+            }
+            if (segment + 1 < kept.size()) {
+                double[] a = kept.get(segment);
+                double[] b = kept.get(segment + 1);
+                double bx = b[0] - a[0];
+                double by = b[1] - a[1];
+                double lengthSquared = bx * bx + by * by;
+                double t = (lengthSquared > 0) ? Math.max(0, Math.min(1, ((point[0] - a[0]) * bx + (point[1] - a[1]) * by) / lengthSquared)) : 0;
+                error = Math.max(error, Math.hypot(point[0] - a[0] - t * bx, point[1] - a[1] - t * by));
+            }
+        }
+        return error;
+    }
+}
@@ -0,0 +1,61 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Test double:  a Context whose SharedPreferences live in memory.
+ */
+public class Context {
+    public static final int MODE_PRIVATE = 0;
+
+    private final Map<String, SharedPreferences> mPreferences = new HashMap<String, SharedPreferences>();
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+        SharedPreferences preferences = mPreferences.get(name);
+        if (preferences == null) {
+            preferences = new MemorySharedPreferences();
+            mPreferences.put(name, preferences);
+        }
+        return preferences;
+    }
+
+    private static class MemorySharedPreferences implements SharedPreferences {
+        private final Map<String, Object> mValues = new HashMap<String, Object>();
+
+        @Override public synchronized boolean contains(String key) { return mValues.containsKey(key); }
+        @Override public synchronized String getString(String key, String fallback) { return mValues.containsKey(key) ? (String) mValues.get(key) : fallback; }
+        @Override public synchronized int getInt(String key, int fallback) { return mValues.containsKey(key) ? (Integer) mValues.get(key) : fallback; }
+        @Override public synchronized long getLong(String key, long fallback) { return mValues.containsKey(key) ? (Long) mValues.get(key) : fallback; }
+        @Override public synchronized float getFloat(String key, float fallback) { return mValues.containsKey(key) ? (Float) mValues.get(key) : fallback; }
+        @Override public synchronized boolean getBoolean(String key, boolean fallback) { return mValues.containsKey(key) ? (Boolean) mValues.get(key) : fallback; }
+
+        @Override public Editor edit() {
+            final Map<String, Object> changes = new HashMap<String, Object>();
+            return new Editor() {
+                @Override public Editor putString(String key, String value) { changes.put(key, value); return this; }
+                @Override public Editor putInt(String key, int value) { changes.put(key, value); return this; }
+                @Override public Editor putLong(String key, long value) { changes.put(key, value); return this; }
+                @Override public Editor putFloat(String key, float value) { changes.put(key, value); return this; }
+                @Override public Editor putBoolean(String key, boolean value) { changes.put(key, value); return this; }
+                @Override public Editor remove(String key) { changes.put(key, null); return this; }
+                @Override public boolean commit() { apply(); return true; }
+                @Override public void apply() {
+                    synchronized (MemorySharedPreferences.this) {
+                        for (Map.Entry<String, Object> change : changes.entrySet()) {
+                            if (change.getValue() == null) {
+                                mValues.remove(change.getKey());
+                            } else {
+                                mValues.put(change.getKey(), change.getValue());
+                            }
+                        }
+                    }
+                }
+            };
+        }
+    }
+}
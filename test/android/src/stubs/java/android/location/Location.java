@@ -0,0 +1,36 @@
+package android.location;
+
+/**
+ * Test double of the platform's Location:  plain fields.
+ */
+public class Location {
+    private final String mProvider;
+    private double mLatitude;
+    private double mLongitude;
+    private float mAccuracy;
+    private float mSpeed;
+    private float mBearing;
+    private boolean mHasSpeed;
+    private boolean mHasBearing;
+    private long mTime;
+
+    public Location(String provider) {
+        mProvider = provider;
+    }
+
+    public String getProvider() { return mProvider; }
+    public double getLatitude() { return mLatitude; }
+    public void setLatitude(double latitude) { mLatitude = latitude; }
+    public double getLongitude() { return mLongitude; }
+    public void setLongitude(double longitude) { mLongitude = longitude; }
+    public float getAccuracy() { return mAccuracy; }
+    public void setAccuracy(float accuracy) { mAccuracy = accuracy; }
+    public boolean hasSpeed() { return mHasSpeed; }
+    public float getSpeed() { return mSpeed; }
+    public void setSpeed(float speed) { mSpeed = speed; mHasSpeed = true; }
+    public boolean hasBearing() { return mHasBearing; }
+    public float getBearing() { return mBearing; }
+    public void setBearing(float bearing) { mBearing = bearing; mHasBearing = true; }
+    public long getTime() { return mTime; }
+    public void setTime(long time) { mTime = time; }
+}
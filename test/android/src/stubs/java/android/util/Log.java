@@ -0,0 +1,9 @@
+package android.util;
+
+public class Log {
+    public static int d(String tag, String message) { return 0; }
+    public static int i(String tag, String message) { return 0; }
+    public static int w(String tag, String message) { return 0; }
+    public static int e(String tag, String message) { System.err.println(tag + ": " + message); return 0; }
+    public static int e(String tag, String message, Throwable error) { System.err.println(tag + ": " + message + ": " + error); return 0; }
+}
@@ -0,0 +1,29 @@
+package com.transistorsoft.locationmanager.adapter;
+
+import android.content.Context;
+
+import com.transistorsoft.locationmanager.adapter.callback.TSCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test double:  records the uuids destroyed.
+ */
+public class BackgroundGeolocation {
+    private static BackgroundGeolocation sInstance;
+
+    public final List<String> destroyed = new ArrayList<String>();
+
+    public static synchronized BackgroundGeolocation getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BackgroundGeolocation();
+        }
+        return sInstance;
+    }
+
+    public synchronized void destroyLocation(String uuid, TSCallback callback) {
+        destroyed.add(uuid);
+        callback.onSuccess();
+    }
+}
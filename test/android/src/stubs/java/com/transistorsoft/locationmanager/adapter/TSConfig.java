@@ -0,0 +1,29 @@
+package com.transistorsoft.locationmanager.adapter;
+
+import com.transistorsoft.locationmanager.config.TSAuthorization;
+
+import org.json.JSONObject;
+
+/**
+ * Test double:  the HTTP fields read by CompactSync.
+ */
+public class TSConfig {
+    private final String mUrl;
+    private String mMethod = "POST";
+    private Integer mHttpTimeout;
+    private JSONObject mHeaders = new JSONObject();
+    private TSAuthorization mAuthorization;
+
+    public TSConfig(String url) {
+        mUrl = url;
+    }
+
+    public String getUrl() { return mUrl; }
+    public String getMethod() { return mMethod; }
+    public Integer getHttpTimeout() { return mHttpTimeout; }
+    public void setHttpTimeout(Integer timeout) { mHttpTimeout = timeout; }
+    public JSONObject getHeaders() { return mHeaders; }
+    public void setHeaders(JSONObject headers) { mHeaders = headers; }
+    public TSAuthorization getAuthorization() { return mAuthorization; }
+    public void setAuthorization(TSAuthorization authorization) { mAuthorization = authorization; }
+}
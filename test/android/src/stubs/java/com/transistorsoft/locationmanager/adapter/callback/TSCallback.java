@@ -0,0 +1,6 @@
+package com.transistorsoft.locationmanager.adapter.callback;
+
+public interface TSCallback {
+    void onSuccess();
+    void onFailure(String error);
+}
@@ -0,0 +1,35 @@
+package com.transistorsoft.locationmanager.config;
+
+import android.content.Context;
+
+import com.transistorsoft.locationmanager.event.AuthorizationEvent;
+
+/**
+ * Test double:  refreshAuthorizationToken issues refreshToken as the new access token.
+ */
+public class TSAuthorization {
+    public interface Callback {
+        void invoke(AuthorizationEvent event);
+    }
+
+    private String mAccessToken;
+    private final String mRefreshToken;
+    public int refreshes;
+
+    public TSAuthorization(String accessToken, String refreshToken) {
+        mAccessToken = accessToken;
+        mRefreshToken = refreshToken;
+    }
+
+    public synchronized String getAccessToken() { return mAccessToken; }
+
+    public boolean canRefreshAuthorizationToken() { return mRefreshToken != null; }
+
+    public void refreshAuthorizationToken(Context context, Callback callback) {
+        synchronized (this) {
+            refreshes++;
+            mAccessToken = mRefreshToken;
+        }
+        callback.invoke(new AuthorizationEvent(true, null));
+    }
+}
@@ -0,0 +1,14 @@
+package com.transistorsoft.locationmanager.data;
+
+public class LocationModel {
+    public Integer id;
+    public Object json;
+
+    public LocationModel(Integer id, Object json) {
+        this.id = id;
+        this.json = json;
+    }
+
+    public Integer getId() { return id; }
+    public Object getJson() { return json; }
+}
@@ -0,0 +1,14 @@
+package com.transistorsoft.locationmanager.event;
+
+public class AuthorizationEvent {
+    private final boolean mSuccess;
+    private final String mError;
+
+    public AuthorizationEvent(boolean success, String error) {
+        mSuccess = success;
+        mError = error;
+    }
+
+    public boolean isSuccessful() { return mSuccess; }
+    public String getError() { return mError; }
+}
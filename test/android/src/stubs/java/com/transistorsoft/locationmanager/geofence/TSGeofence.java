@@ -0,0 +1,38 @@
+package com.transistorsoft.locationmanager.geofence;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Test double:  a circle, rendered as TSGeofence#toJson renders it.
+ */
+public class TSGeofence {
+    private final String mIdentifier;
+    private final double mLatitude;
+    private final double mLongitude;
+    private final float mRadius;
+
+    public TSGeofence(String identifier, double latitude, double longitude, float radius) {
+        mIdentifier = identifier;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mRadius = radius;
+    }
+
+    public String getIdentifier() { return mIdentifier; }
+    public double getLatitude() { return mLatitude; }
+    public double getLongitude() { return mLongitude; }
+    public float getRadius() { return mRadius; }
+
+    public JSONObject toJson() {
+        try {
+            return new JSONObject()
+                    .put("identifier", mIdentifier)
+                    .put("latitude", mLatitude)
+                    .put("longitude", mLongitude)
+                    .put("radius", mRadius);
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
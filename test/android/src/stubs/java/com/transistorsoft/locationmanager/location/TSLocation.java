@@ -0,0 +1,43 @@
+package com.transistorsoft.locationmanager.location;
+
+import android.location.Location;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Test double:  a location and its JSON rendering (as TSLocation#toJson renders it), from which the getters read.
+ */
+public class TSLocation {
+    public Location mLocation;
+    public JSONObject json;
+
+    public TSLocation(Location location, JSONObject json) {
+        mLocation = location;
+        this.json = json;
+    }
+
+    public JSONObject toJson() throws JSONException { return json; }
+    public Location getLocation() { return mLocation; }
+    public String getUUID() { return json.optString("uuid", null); }
+    public String getTimestamp() { return json.optString("timestamp", null); }
+    public String getEvent() { return json.optString("event", null); }
+    public boolean getIsMoving() { return json.optBoolean("is_moving"); }
+    public boolean isSample() { return json.optBoolean("sample"); }
+    public Float getOdometer() { return json.has("odometer") ? (float) json.optDouble("odometer") : null; }
+    public JSONObject getExtras() { return json.optJSONObject("extras"); }
+    public String getActivityName() { return activity().optString("type", null); }
+    public int getActivityConfidence() { return activity().optInt("confidence", 0); }
+    public double getBatteryLevel() { return battery().optDouble("level", -1); }
+    public boolean getBatteryIsCharging() { return battery().optBoolean("is_charging"); }
+
+    private JSONObject activity() {
+        JSONObject activity = json.optJSONObject("activity");
+        return (activity != null) ? activity : new JSONObject();
+    }
+
+    private JSONObject battery() {
+        JSONObject battery = json.optJSONObject("battery");
+        return (battery != null) ? battery : new JSONObject();
+    }
+}
@@ -0,0 +1,13 @@
+package com.transistorsoft.locationmanager.logger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TSLog {
+    public static Logger logger = LoggerFactory.getLogger("TSLocationManager");
+
+    public static String info(String message) { return message; }
+    public static String warn(String message) { return message; }
+    public static String error(String message) { return message; }
+    public static void log(String level, String message) { }
+}
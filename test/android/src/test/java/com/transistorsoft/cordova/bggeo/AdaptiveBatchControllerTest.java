@@ -0,0 +1,184 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.content.Context;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.transistorsoft.locationmanager.adapter.TSConfig;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveBatchControllerTest {
+    // Fake server:  each request takes BASE_LATENCY + PER_RECORD_LATENCY per record.
+    private static final long BASE_LATENCY = 20;
+    private static final double PER_RECORD_LATENCY = 0.1;
+    private static final long TARGET_LATENCY = 150;
+
+    private HttpServer server;
+    private final AtomicInteger failures = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/locations", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                int status = 200;
+                try {
+                    JSONObject batch = new JSONObject(new String(gunzip(exchange.getRequestBody()), "UTF-8"));
+                    Thread.sleep(BASE_LATENCY + (long) (batch.getInt("count") * PER_RECORD_LATENCY));
+                    if (failures.get() > 0) {
+                        failures.decrementAndGet();
+                        status = 503;
+                    }
+                } catch (Exception e) {
+                    status = 400;
+                }
+                // Each test has its own server:  don't leave the client a kept-alive connection to a port a later test may reuse.
+                exchange.getResponseHeaders().set("Connection", "close");
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void growsWhenFast() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(options(10, 1000, 1000), 10);
+        assertEquals(20, controller.onBatch(10, -1, 100, true));
+        assertEquals(40, controller.onBatch(20, -1, 150, true));
+    }
+
+    @Test
+    public void growsTenPercentBelowTarget() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(options(10, 1000, 1000), 100);
+        assertEquals(110, controller.onBatch(100, -1, 600, true));
+    }
+
+    @Test
+    public void stepsBackWhenGrowthLowersThroughput() throws JSONException {
+        AdaptiveBatchController controller = new AdaptiveBatchController(options(10, 1000, 1000), 10);
+        assertEquals(20, controller.onBatch(10, -1, 100, true));
+        assertEquals(10, controller.onBatch(20, -1, 600, true));
+        assertEquals(19, controller.toJson().getInt("ceiling"));
+    }
+
+    @Test
+    public void shrinksInProportionWhenSlow() throws JSONException {
+        AdaptiveBatchController controller = new AdaptiveBatchController(options(10, 1000, 1000), 100);
+        assertEquals(50, controller.onBatch(100, -1, 2000, true));
+        assertEquals(99, controller.toJson().getInt("ceiling"));
+    }
+
+    @Test
+    public void failureHalvesWithinBounds() throws JSONException {
+        AdaptiveBatchController controller = new AdaptiveBatchController(options(10, 1000, 1000), 100);
+        assertEquals(50, controller.onFailure());
+        assertEquals(25, controller.onBatch(50, -1, 100, false));
+        assertEquals(12, controller.onFailure());
+        assertEquals(10, controller.onFailure());
+        assertEquals(4, controller.toJson().getInt("failures"));
+    }
+
+    @Test
+    public void partialBatchKeepsSize() {
+        AdaptiveBatchController controller = new AdaptiveBatchController(options(10, 1000, 1000), 100);
+        // The last records of a sync say nothing about the batch size.
+        assertEquals(100, controller.onBatch(7, -1, 10, true));
+    }
+
+    @Test
+    public void convergesAgainstServer() throws Exception {
+        AdaptiveBatchController controller = new AdaptiveBatchController(options(10, 5000, TARGET_LATENCY), 50);
+        long latency = 0;
+        for (int i = 0; i < 30; i++) {
+            latency = upload(controller, controller.getBatchSize());
+        }
+        // The largest batch completing within the target.
+        int ideal = (int) ((TARGET_LATENCY - BASE_LATENCY) / PER_RECORD_LATENCY);
+        int batchSize = controller.getBatchSize();
+        assertTrue("batch size " + batchSize + " should approach " + ideal, batchSize >= ideal / 2 && batchSize <= ideal * 1.2);
+        assertTrue("latency " + latency + " should be near the target", latency <= TARGET_LATENCY * 1.5);
+    }
+
+    @Test
+    public void serverErrorHalvesBatch() throws Exception {
+        AdaptiveBatchController controller = new AdaptiveBatchController(options(10, 5000, TARGET_LATENCY), 400);
+        failures.set(1);
+        upload(controller, 400);
+        assertEquals(200, controller.getBatchSize());
+        assertEquals(1, controller.toJson().getInt("failures"));
+    }
+
+    /**
+     * Upload a batch of records as the compact #sync does, feeding the controller its measured round-trip.
+     */
+    private long upload(AdaptiveBatchController controller, int records) throws Exception {
+        TSConfig config = new TSConfig("http://127.0.0.1:" + server.getAddress().getPort() + "/locations");
+        byte[] body = CompactSync.encode(locations(records), null, ".");
+        long startedAt = System.currentTimeMillis();
+        int status = CompactSync.post(new Context(), config, body, null);
+        long elapsed = System.currentTimeMillis() - startedAt;
+        controller.onBatch(records, body.length, elapsed, status >= 200 && status < 300);
+        return elapsed;
+    }
+
+    private static List<JSONObject> locations(int count) throws JSONException {
+        List<JSONObject> records = new ArrayList<JSONObject>(count);
+        for (int i = 0; i < count; i++) {
+            JSONObject coords = new JSONObject()
+                    .put("latitude", 45.5 + i * 1e-5)
+                    .put("longitude", -73.6)
+                    .put("accuracy", 5)
+                    .put("speed", 10);
+            records.add(new JSONObject()
+                    .put("uuid", "uuid-" + i)
+                    .put("timestamp", "2024-01-01T00:00:00.000Z")
+                    .put("is_moving", true)
+                    .put("odometer", i * 10)
+                    .put("coords", coords));
+        }
+        return records;
+    }
+
+    private static JSONObject options(int min, int max, long targetLatency) {
+        try {
+            return new JSONObject().put("minBatchSize", min).put("maxBatchSize", max).put("targetLatency", targetLatency);
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] gunzip(InputStream in) throws IOException {
+        GZIPInputStream gzip = new GZIPInputStream(in);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = gzip.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
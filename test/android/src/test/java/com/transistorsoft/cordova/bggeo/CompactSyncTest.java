@@ -0,0 +1,300 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.content.Context;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.transistorsoft.locationmanager.adapter.TSConfig;
+import com.transistorsoft.locationmanager.config.TSAuthorization;
+import com.transistorsoft.locationmanager.data.LocationModel;
+import com.transistorsoft.locationmanager.event.AuthorizationEvent;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompactSyncTest {
+    private HttpServer server;
+    // The Authorization header of each request received.
+    private final List<String> authorizations = new ArrayList<String>();
+    private final List<JSONObject> bodies = new ArrayList<JSONObject>();
+    private volatile String acceptedToken;
+    private volatile Runnable beforeResponse;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/locations", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                int status = 200;
+                String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                synchronized (CompactSyncTest.this) {
+                    authorizations.add(authorization);
+                    try {
+                        assertEquals("gzip", exchange.getRequestHeaders().getFirst("Content-Encoding"));
+                        assertEquals(CompactSync.ENCODING_VERSION, exchange.getRequestHeaders().getFirst("X-Location-Encoding"));
+                        bodies.add(new JSONObject(gunzip(exchange.getRequestBody())));
+                    } catch (Throwable e) {
+                        status = 400;
+                    }
+                }
+                Runnable hook = beforeResponse;
+                if (hook != null) {
+                    hook.run();
+                }
+                if (status == 200 && acceptedToken != null && !("Bearer " + acceptedToken).equals(authorization)) {
+                    status = 401;
+                }
+                // Each test has its own server:  don't leave the client a kept-alive connection to a port a later test may reuse.
+                exchange.getResponseHeaders().set("Connection", "close");
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void columnsDecodeToRecords() throws JSONException {
+        List<JSONObject> records = Arrays.asList(
+                record("uuid-1", "2024-01-01T00:00:00.000Z", 45.519219, -73.616785, 1500.4),
+                record("uuid-2", "2024-01-01T00:00:01.250Z", 45.519231, -73.616792, 1503.6),
+                record("uuid-3", "2024-01-01T00:00:03.000Z", 45.519100, -73.616700, 1520));
+        JSONObject columns = CompactSync.toColumns(records, null);
+        assertEquals(CompactSync.ENCODING_VERSION, columns.getString("encoding"));
+        assertEquals(3, columns.getInt("count"));
+        assertFalse(columns.has("params"));
+
+        // As the server decodes:  accumulate the deltas and reverse the quantization.
+        long time = 0, lat = 0, lng = 0, odometer = 0;
+        for (int i = 0; i < records.size(); i++) {
+            JSONObject record = records.get(i);
+            JSONObject coords = record.getJSONObject("coords");
+            time += columns.getJSONArray("t").getLong(i);
+            lat += columns.getJSONArray("lat").getLong(i);
+            lng += columns.getJSONArray("lng").getLong(i);
+            odometer += columns.getJSONArray("odo").getLong(i);
+            assertEquals(record.getString("uuid"), columns.getJSONArray("uuid").getString(i));
+            assertEquals(record.getString("timestamp"), iso(time));
+            assertEquals(coords.getDouble("latitude"), lat / 1e6, 1e-9);
+            assertEquals(coords.getDouble("longitude"), lng / 1e6, 1e-9);
+            assertEquals(Math.round(record.getDouble("odometer")), odometer);
+            assertEquals(coords.getDouble("accuracy"), columns.getJSONArray("acc").getLong(i) / 10.0, 0.05);
+            assertEquals(coords.getDouble("speed"), columns.getJSONArray("spd").getLong(i) / 100.0, 0.005);
+        }
+        // The first values are absolute.
+        assertEquals(1704067200000L, columns.getJSONArray("t").getLong(0));
+        assertEquals(1250, columns.getJSONArray("t").getLong(1));
+    }
+
+    @Test
+    public void dictionaryHoldsEachValueOnce() throws JSONException {
+        JSONObject first = record("uuid-1", "2024-01-01T00:00:00.000Z", 45.5, -73.6, 0);
+        first.put("event", "motionchange");
+        first.put("extras", new JSONObject().put("route", 7));
+        JSONObject second = record("uuid-2", "2024-01-01T00:00:01.000Z", 45.5, -73.6, 0);
+        second.put("extras", new JSONObject().put("route", 7));
+        JSONObject third = record("uuid-3", "2024-01-01T00:00:02.000Z", 45.5, -73.6, 0);
+        third.getJSONObject("activity").remove("type");
+
+        JSONObject columns = CompactSync.toColumns(Arrays.asList(first, second, third), null);
+        JSONArray dict = columns.getJSONArray("dict");
+        JSONArray evt = columns.getJSONArray("evt");
+        JSONArray act = columns.getJSONArray("act");
+        JSONArray rest = columns.getJSONArray("rest");
+        assertEquals("motionchange", dict.getString(evt.getInt(0)));
+        assertEquals(-1, evt.getInt(1));
+        assertEquals("still", dict.getString(act.getInt(0)));
+        assertEquals(act.getInt(0), act.getInt(1));
+        assertEquals(-1, act.getInt(2));
+        assertEquals(rest.getInt(0), rest.getInt(1));
+        assertEquals(-1, rest.getInt(2));
+        assertTrue(new JSONObject(dict.getString(rest.getInt(0))).similar(new JSONObject().put("extras", new JSONObject().put("route", 7))));
+        assertEquals(3, dict.length());
+    }
+
+    @Test
+    public void restKeepsFieldsWithoutColumn() throws JSONException {
+        JSONObject record = record("uuid-1", "2024-01-01T00:00:00.000Z", 45.5, -73.6, 0);
+        record.getJSONObject("coords").put("speed_accuracy", 0.5);
+        record.put("mock", true);
+        JSONObject columns = CompactSync.toColumns(Arrays.asList(record), new JSONObject().put("device", "abc"));
+        JSONObject rest = new JSONObject(columns.getJSONArray("dict").getString(columns.getJSONArray("rest").getInt(0)));
+        assertTrue(rest.similar(new JSONObject().put("coords", new JSONObject().put("speed_accuracy", 0.5)).put("mock", true)));
+        assertEquals("abc", columns.getJSONObject("params").getString("device"));
+    }
+
+    @Test
+    public void unknownValuesEncodeAsMinusOne() throws JSONException {
+        JSONObject record = new JSONObject().put("uuid", "uuid-1").put("timestamp", "2024-01-01T00:00:00.000Z")
+                .put("coords", new JSONObject().put("latitude", 45.5).put("longitude", -73.6));
+        JSONObject columns = CompactSync.toColumns(Arrays.asList(record), null);
+        assertEquals(-1, columns.getJSONArray("acc").getLong(0));
+        assertEquals(-1, columns.getJSONArray("spd").getLong(0));
+        assertEquals(-1, columns.getJSONArray("hdg").getLong(0));
+        assertEquals(-1, columns.getJSONArray("bat").getLong(0));
+        assertEquals(-1, columns.getJSONArray("actc").getLong(0));
+    }
+
+    @Test
+    public void parsesRecords() throws JSONException {
+        JSONObject json = new JSONObject().put("uuid", "uuid-1");
+        assertEquals("uuid-1", CompactSync.parse(new LocationModel(1, json.toString())).getString("uuid"));
+        assertEquals(json, CompactSync.parse(new LocationModel(1, json)));
+        // Config.locationTemplate renders something other than a JSON object.
+        assertNull(CompactSync.parse(new LocationModel(1, "lat=45.5")));
+        assertNull(CompactSync.parse(new LocationModel(1, null)));
+    }
+
+    @Test
+    public void encodeNestsUnderRootProperty() throws Exception {
+        List<JSONObject> records = Arrays.asList(record("uuid-1", "2024-01-01T00:00:00.000Z", 45.5, -73.6, 0));
+        JSONObject body = new JSONObject(gunzip(new ByteArrayInputStream(CompactSync.encode(records, null, "location"))));
+        assertEquals(1, body.getJSONObject("location").getInt("count"));
+        body = new JSONObject(gunzip(new ByteArrayInputStream(CompactSync.encode(records, null, "."))));
+        assertEquals(1, body.getInt("count"));
+    }
+
+    @Test
+    public void postSendsHeaders() throws Exception {
+        TSConfig config = config();
+        config.setHeaders(new JSONObject().put("X-Device", "abc"));
+        assertEquals(200, CompactSync.post(new Context(), config, body(), null));
+        assertEquals(1, bodies.size());
+        assertEquals(1, bodies.get(0).getInt("count"));
+        assertNull(authorizations.get(0));
+    }
+
+    @Test
+    public void refreshesAuthorizationUpon401() throws Exception {
+        acceptedToken = "fresh";
+        TSConfig config = config();
+        TSAuthorization authorization = new TSAuthorization("expired", "fresh");
+        config.setAuthorization(authorization);
+        final AtomicInteger refreshed = new AtomicInteger();
+
+        int status = CompactSync.post(new Context(), config, body(), new Runnable() {
+            @Override public void run() {
+                refreshed.incrementAndGet();
+            }
+        });
+        assertEquals(200, status);
+        assertEquals(1, refreshed.get());
+        assertEquals(1, authorization.refreshes);
+        assertEquals(Arrays.asList("Bearer expired", "Bearer fresh"), authorizations);
+
+        // The next upload uses the refreshed token.
+        assertEquals(200, CompactSync.post(new Context(), config, body(), null));
+        assertEquals(1, authorization.refreshes);
+    }
+
+    @Test
+    public void retriesWithTokenRefreshedConcurrently() throws Exception {
+        // Another upload refreshes the token while this one, sent with the old token, is in flight:  retry without refreshing again.
+        acceptedToken = "fresh";
+        TSConfig config = config();
+        final TSAuthorization authorization = new TSAuthorization("expired", "fresh");
+        config.setAuthorization(authorization);
+        final AtomicInteger refreshed = new AtomicInteger();
+        beforeResponse = new Runnable() {
+            @Override public void run() {
+                beforeResponse = null;
+                authorization.refreshAuthorizationToken(new Context(), new TSAuthorization.Callback() {
+                    @Override public void invoke(AuthorizationEvent event) { }
+                });
+            }
+        };
+        int status = CompactSync.post(new Context(), config, body(), new Runnable() {
+            @Override public void run() {
+                refreshed.incrementAndGet();
+            }
+        });
+        assertEquals(200, status);
+        assertEquals(1, authorization.refreshes);
+        assertEquals(0, refreshed.get());
+        assertEquals(Arrays.asList("Bearer expired", "Bearer fresh"), authorizations);
+    }
+
+    @Test
+    public void returns401WithoutRefreshToken() throws Exception {
+        acceptedToken = "fresh";
+        TSConfig config = config();
+        TSAuthorization authorization = new TSAuthorization("expired", null);
+        config.setAuthorization(authorization);
+        assertEquals(401, CompactSync.post(new Context(), config, body(), null));
+        assertEquals(0, authorization.refreshes);
+        assertEquals(1, authorizations.size());
+    }
+
+    private TSConfig config() {
+        return new TSConfig("http://127.0.0.1:" + server.getAddress().getPort() + "/locations");
+    }
+
+    private static byte[] body() throws Exception {
+        return CompactSync.encode(Arrays.asList(record("uuid-1", "2024-01-01T00:00:00.000Z", 45.5, -73.6, 0)), null, ".");
+    }
+
+    private static JSONObject record(String uuid, String timestamp, double lat, double lng, double odometer) throws JSONException {
+        JSONObject coords = new JSONObject()
+                .put("latitude", lat)
+                .put("longitude", lng)
+                .put("accuracy", 4.7)
+                .put("speed", 12.34)
+                .put("heading", 180.5)
+                .put("altitude", 12.1);
+        return new JSONObject()
+                .put("uuid", uuid)
+                .put("timestamp", timestamp)
+                .put("is_moving", true)
+                .put("odometer", odometer)
+                .put("coords", coords)
+                .put("activity", new JSONObject().put("type", "still").put("confidence", 100))
+                .put("battery", new JSONObject().put("level", 0.85).put("is_charging", false));
+    }
+
+    private static String iso(long time) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(time));
+    }
+
+    private static String gunzip(InputStream in) throws IOException {
+        GZIPInputStream gzip = new GZIPInputStream(in);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = gzip.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), "UTF-8");
+    }
+}
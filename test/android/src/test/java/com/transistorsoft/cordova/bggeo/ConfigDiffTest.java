@@ -0,0 +1,73 @@
+package com.transistorsoft.cordova.bggeo;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigDiffTest {
+    @Test
+    public void keepsOnlyChangedFields() throws JSONException {
+        JSONObject current = state();
+        JSONObject params = new JSONObject()
+                .put("distanceFilter", 10)
+                .put("desiredAccuracy", -1)
+                .put("url", "https://example.com/locations")
+                .put("stopTimeout", 10);
+        JSONObject changes = ConfigDiff.diff(current, params);
+        assertEquals(1, changes.length());
+        assertEquals(10, changes.getInt("stopTimeout"));
+    }
+
+    @Test
+    public void comparesNumbersByValue() throws JSONException {
+        // The bridge may deliver 10 as a Double or an Integer.
+        assertEquals(0, ConfigDiff.diff(state(), new JSONObject().put("distanceFilter", 10.0)).length());
+        assertEquals(1, ConfigDiff.diff(state(), new JSONObject().put("distanceFilter", 10.5)).length());
+    }
+
+    @Test
+    public void comparesObjectsAndArrays() throws JSONException {
+        JSONObject current = state();
+        assertEquals(0, ConfigDiff.diff(current, new JSONObject().put("extras", new JSONObject().put("route", 7))).length());
+        assertEquals(1, ConfigDiff.diff(current, new JSONObject().put("extras", new JSONObject().put("route", 8))).length());
+        assertEquals(0, ConfigDiff.diff(current, new JSONObject().put("triggerActivities", new JSONArray().put("in_vehicle"))).length());
+        // An array where an object was is a change.
+        assertEquals(1, ConfigDiff.diff(current, new JSONObject().put("extras", new JSONArray())).length());
+        assertEquals(1, ConfigDiff.diff(current, new JSONObject().put("extras", JSONObject.NULL)).length());
+    }
+
+    @Test
+    public void alwaysAppliesVolatileAndUnknownFields() throws JSONException {
+        // enabled / odometer are changed by the SDK itself:  the cached State may be stale.
+        JSONObject changes = ConfigDiff.diff(state(), new JSONObject().put("enabled", false).put("odometer", 0).put("newOption", true));
+        assertEquals(3, changes.length());
+        assertFalse(changes.getBoolean("enabled"));
+        assertTrue(changes.getBoolean("newOption"));
+    }
+
+    @Test
+    public void valueEquals() throws JSONException {
+        assertTrue(ConfigDiff.valueEquals(1, 1L));
+        assertTrue(ConfigDiff.valueEquals("a", "a"));
+        assertFalse(ConfigDiff.valueEquals("1", 1));
+        assertFalse(ConfigDiff.valueEquals(true, "true"));
+        assertFalse(ConfigDiff.valueEquals(new JSONObject(), null));
+    }
+
+    private static JSONObject state() throws JSONException {
+        return new JSONObject()
+                .put("enabled", false)
+                .put("odometer", 1234.5)
+                .put("distanceFilter", 10)
+                .put("desiredAccuracy", -1)
+                .put("stopTimeout", 5)
+                .put("url", "https://example.com/locations")
+                .put("extras", new JSONObject().put("route", 7))
+                .put("triggerActivities", new JSONArray().put("in_vehicle"));
+    }
+}
@@ -0,0 +1,277 @@
+package com.transistorsoft.cordova.bggeo;
+
+import com.transistorsoft.locationmanager.geofence.TSGeofence;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceIndexTest {
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    private GeofenceIndex index;
+
+    @Before
+    public void setUp() {
+        index = new GeofenceIndex();
+        // Enough geofences elsewhere that queries go through the grid rather than a scan.
+        List<TSGeofence> filler = new ArrayList<TSGeofence>();
+        for (int i = 0; i < 2000; i++) {
+            filler.add(new TSGeofence("filler-" + i, 10 + (i / 50) * 0.1, 20 + (i % 50) * 0.1, 200));
+        }
+        index.load(filler, index.getRevision());
+        assertTrue(index.isLoaded());
+    }
+
+    @Test
+    public void nearReturnsNearestFirst() {
+        index.put(new TSGeofence("b", 45.5, -73.6 + offset(300, 45.5), 100));
+        index.put(new TSGeofence("a", 45.5 + 100 / 111195.0, -73.6, 100));
+        index.put(new TSGeofence("c", 45.5 - 900 / 111195.0, -73.6, 100));
+        index.put(new TSGeofence("far", 45.6, -73.6, 100));
+
+        List<GeofenceIndex.Match> matches = index.near(45.5, -73.6, 1000, 0);
+        assertEquals(Arrays.asList("a", "b", "c"), identifiers(matches));
+        assertEquals(100, matches.get(0).distance, 1);
+        assertEquals(300, matches.get(1).distance, 1);
+        assertEquals(Arrays.asList("a", "b"), identifiers(index.near(45.5, -73.6, 1000, 2)));
+        assertEquals(Arrays.asList("a", "b"), identifiers(index.near(45.5, -73.6, 500, 0)));
+    }
+
+    @Test
+    public void nearAcrossAntimeridian() {
+        index.put(new TSGeofence("east", 0, 179.999, 50));
+        index.put(new TSGeofence("west", 0, -179.999, 50));
+        assertEquals(Arrays.asList("east", "west"), identifiers(index.near(0, 179.9995, 500, 0)));
+        assertEquals(Arrays.asList("west", "east"), identifiers(index.near(0, -179.9995, 500, 0)));
+    }
+
+    @Test
+    public void inBoundsIntersectsCircles() {
+        // Centered inside;  centered outside but reaching in;  centered outside and out of reach.
+        index.put(new TSGeofence("inside", 45.5, -73.6, 10));
+        index.put(new TSGeofence("overlapping", 45.5, -73.55 + offset(100, 45.5), 200));
+        index.put(new TSGeofence("outside", 45.5, -73.55 + offset(300, 45.5), 200));
+        List<String> found = identifiers(index.inBounds(45.45, -73.65, 45.55, -73.55));
+        Collections.sort(found);
+        assertEquals(Arrays.asList("inside", "overlapping"), found);
+    }
+
+    @Test
+    public void inBoundsAcrossAntimeridian() {
+        index.put(new TSGeofence("east", -17, 179.95, 100));
+        index.put(new TSGeofence("west", -17, -179.95, 100));
+        index.put(new TSGeofence("greenwich", -17, 0, 100));
+        // Reaching across from just outside the box.
+        index.put(new TSGeofence("edge", -17, -179.85 - offset(50, -17), 100));
+        List<String> found = identifiers(index.inBounds(-17.1, 179.9, -16.9, -179.85));
+        Collections.sort(found);
+        assertEquals(Arrays.asList("east", "edge", "west"), found);
+    }
+
+    @Test
+    public void putReplacesAndRemoveDrops() {
+        index.put(new TSGeofence("moving", 45.5, -73.6, 100));
+        index.put(new TSGeofence("moving", 48.85, 2.35, 100));
+        assertTrue(index.near(45.5, -73.6, 1000, 0).isEmpty());
+        assertEquals(Arrays.asList("moving"), identifiers(index.near(48.85, 2.35, 1000, 0)));
+
+        index.remove("moving");
+        assertTrue(index.near(48.85, 2.35, 1000, 0).isEmpty());
+        index.put(new TSGeofence("a", 45.5, -73.6, 100));
+        index.clear();
+        assertTrue(index.near(45.5, -73.6, 1000, 0).isEmpty());
+        assertTrue(index.near(10, 20, 1000, 0).isEmpty());
+    }
+
+    @Test
+    public void matchesBruteForce() {
+        Random random = new Random(11);
+        List<TSGeofence> geofences = new ArrayList<TSGeofence>();
+        for (int i = 0; i < 5000; i++) {
+            // Clustered about a few cities and either side of the antimeridian.
+            double[] center = CENTERS[random.nextInt(CENTERS.length)];
+            double lat = Math.max(-90, Math.min(90, center[0] + random.nextGaussian() * 0.2));
+            double lng = wrap(center[1] + random.nextGaussian() * 0.2);
+            geofences.add(new TSGeofence("g" + i, lat, lng, 50 + random.nextInt(2000)));
+        }
+        index.load(geofences, index.getRevision());
+        for (int q = 0; q < 500; q++) {
+            double[] center = CENTERS[random.nextInt(CENTERS.length)];
+            double lat = Math.max(-89.9, Math.min(89.9, center[0] + random.nextGaussian() * 0.2));
+            double lng = wrap(center[1] + random.nextGaussian() * 0.2);
+            double radius = 100 + random.nextInt(20000);
+
+            List<String> expected = new ArrayList<String>();
+            for (TSGeofence geofence : geofences) {
+                if (distance(lat, lng, geofence.getLatitude(), geofence.getLongitude()) <= radius) {
+                    expected.add(geofence.getIdentifier());
+                }
+            }
+            List<String> actual = identifiers(index.near(lat, lng, radius, 0));
+            Collections.sort(expected);
+            Collections.sort(actual);
+            assertEquals("near(" + lat + ", " + lng + ", " + radius + ")", expected, actual);
+        }
+    }
+
+    @Test
+    public void sinceReportsChanges() throws JSONException {
+        long loaded = index.getRevision();
+        index.put(new TSGeofence("a", 45.5, -73.6, 100));
+        long revision = index.getRevision();
+        index.put(new TSGeofence("a", 45.6, -73.6, 100));
+        index.put(new TSGeofence("b", 45.5, -73.6, 100));
+        index.remove("filler-0");
+
+        JSONObject changes = index.since(revision);
+        assertFalse(changes.getBoolean("reset"));
+        assertEquals(index.getRevision(), changes.getLong("revision"));
+        assertEquals(Arrays.asList("b"), identifiers(changes.getJSONArray("added")));
+        assertEquals(Arrays.asList("a"), identifiers(changes.getJSONArray("modified")));
+        assertEquals(45.6, changes.getJSONArray("modified").getJSONObject(0).getDouble("latitude"), 0);
+        assertEquals("filler-0", changes.getJSONArray("removed").getString(0));
+
+        changes = index.since(loaded);
+        assertEquals(Arrays.asList("a", "b"), identifiers(changes.getJSONArray("added")));
+        assertEquals(0, changes.getJSONArray("modified").length());
+
+        changes = index.since(index.getRevision());
+        assertEquals(0, changes.getJSONArray("added").length() + changes.getJSONArray("modified").length() + changes.getJSONArray("removed").length());
+    }
+
+    @Test
+    public void sinceSkipsGeofencesAddedAndRemoved() throws JSONException {
+        long revision = index.getRevision();
+        index.put(new TSGeofence("transient", 45.5, -73.6, 100));
+        index.remove("transient");
+        JSONObject changes = index.since(revision);
+        assertEquals(0, changes.getJSONArray("added").length());
+        assertEquals(0, changes.getJSONArray("removed").length());
+    }
+
+    @Test
+    public void sinceReportsGeofenceReAdded() throws JSONException {
+        long revision = index.getRevision();
+        index.remove("filler-1");
+        index.put(new TSGeofence("filler-1", 45.5, -73.6, 100));
+        JSONObject changes = index.since(revision);
+        // Removed then added back:  it was never gone from the client's view, it changed.
+        assertEquals(0, changes.getJSONArray("removed").length());
+        assertEquals(Arrays.asList("filler-1"), identifiers(changes.getJSONArray("added")));
+    }
+
+    @Test
+    public void sinceResetsForUnknownRevision() throws JSONException {
+        // A revision from before the load (eg: a previous launch), or from the future.
+        JSONObject changes = index.since(index.getRevision() - 1000);
+        assertTrue(changes.getBoolean("reset"));
+        assertEquals(2000, changes.getJSONArray("added").length());
+        assertEquals(0, changes.getJSONArray("removed").length());
+        assertTrue(index.since(index.getRevision() + 1).getBoolean("reset"));
+    }
+
+    @Test
+    public void sinceResetsOnceTombstonesDiscarded() throws JSONException {
+        long revision = index.getRevision();
+        for (int i = 0; i < 1001; i++) {
+            index.remove("filler-" + i);
+        }
+        assertTrue(index.since(revision).getBoolean("reset"));
+        // The most recent removals are still known.
+        long recent = index.getRevision();
+        index.remove("filler-1500");
+        JSONObject changes = index.since(recent);
+        assertFalse(changes.getBoolean("reset"));
+        assertEquals("filler-1500", changes.getJSONArray("removed").getString(0));
+    }
+
+    @Test
+    public void clearTombstonesEverything() throws JSONException {
+        GeofenceIndex small = new GeofenceIndex();
+        small.load(Arrays.asList(new TSGeofence("a", 45.5, -73.6, 100), new TSGeofence("b", 45.5, -73.6, 100)), small.getRevision());
+        long revision = small.getRevision();
+        small.clear();
+        JSONObject changes = small.since(revision);
+        assertFalse(changes.getBoolean("reset"));
+        assertEquals(Arrays.asList("a", "b"), sorted(changes.getJSONArray("removed")));
+
+        // More geofences than tombstones kept:  the client must replace its mirror, with nothing.
+        revision = index.getRevision();
+        index.clear();
+        changes = index.since(revision);
+        assertTrue(changes.getBoolean("reset"));
+        assertEquals(0, changes.getJSONArray("added").length());
+    }
+
+    @Test
+    public void loadRacingMutationIsNotTrusted() {
+        GeofenceIndex fresh = new GeofenceIndex();
+        long revision = fresh.getRevision();
+        // A geofence is added while the store is being read.
+        fresh.put(new TSGeofence("a", 45.5, -73.6, 100));
+        fresh.load(new ArrayList<TSGeofence>(), revision);
+        assertFalse(fresh.isLoaded());
+        fresh.load(Arrays.asList(new TSGeofence("a", 45.5, -73.6, 100)), fresh.getRevision());
+        assertTrue(fresh.isLoaded());
+    }
+
+    private static final double[][] CENTERS = {{45.5, -73.6}, {-33.9, 151.2}, {0, 179.9}, {-17, -179.9}, {64.1, -21.9}};
+
+    private static double wrap(double lng) {
+        return ((lng + 540) % 360) - 180;
+    }
+
+    /**
+     * Degrees of longitude spanning meters at the latitude.
+     */
+    private static double offset(double meters, double latitude) {
+        return Math.toDegrees(meters / (EARTH_RADIUS * Math.cos(Math.toRadians(latitude))));
+    }
+
+    private static double distance(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static List<String> sorted(JSONArray values) throws JSONException {
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < values.length(); i++) {
+            result.add(values.getString(i));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static List<String> identifiers(JSONArray geofences) throws JSONException {
+        List<String> identifiers = new ArrayList<String>();
+        for (int i = 0; i < geofences.length(); i++) {
+            identifiers.add(geofences.getJSONObject(i).getString("identifier"));
+        }
+        Collections.sort(identifiers);
+        return identifiers;
+    }
+
+    private static List<String> identifiers(List<?> results) {
+        List<String> identifiers = new ArrayList<String>();
+        for (Object result : results) {
+            TSGeofence geofence = (result instanceof GeofenceIndex.Match) ? ((GeofenceIndex.Match) result).geofence : (TSGeofence) result;
+            identifiers.add(geofence.getIdentifier());
+        }
+        return identifiers;
+    }
+}
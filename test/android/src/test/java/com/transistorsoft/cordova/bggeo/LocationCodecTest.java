@@ -0,0 +1,219 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.location.Location;
+
+import com.transistorsoft.locationmanager.location.TSLocation;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Encodes locations with LocationCodec against the golden fixture test/fixtures/location-codec.json, which test/js decodes with
+ * www/API.js (decodeEvent) to check that the decoded event matches the location's JSON field for field.
+ *
+ * After a change to the layout, regenerate the fixture (and bump LocationCodec.VERSION):
+ *
+ *   gradle -p test/android test -Dupdate.fixtures=true
+ */
+public class LocationCodecTest {
+    private static final String FIXTURE = "location-codec.json";
+
+    @Test
+    public void matchesFixture() throws Exception {
+        JSONArray cases = cases();
+        File file = new File(System.getProperty("fixtures.dir"), FIXTURE);
+        if (Boolean.getBoolean("update.fixtures")) {
+            write(file, cases.toString(2) + "\n");
+        }
+        JSONArray fixture = new JSONArray(read(file));
+        assertEquals(cases.length(), fixture.length());
+        for (int i = 0; i < cases.length(); i++) {
+            JSONObject expected = fixture.getJSONObject(i);
+            JSONObject actual = cases.getJSONObject(i);
+            String name = expected.getString("name");
+            assertEquals(name, expected.getString("name"), actual.getString("name"));
+            assertEquals(name, expected.getInt("type"), actual.getInt("type"));
+            assertEquals(name, expected.getString("encoded"), actual.getString("encoded"));
+            assertTrue(name, expected.getJSONObject("json").similar(actual.getJSONObject("json")));
+        }
+    }
+
+    @Test
+    public void encodesHeader() throws JSONException {
+        JSONObject json = location("uuid-1", 1700000000000L);
+        byte[] encoded = LocationCodec.encode(LocationCodec.TYPE_MOTIONCHANGE, tsLocation(json), LocationCodec.values(tsLocation(json)));
+        ByteBuffer buffer = ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(LocationCodec.TYPE_MOTIONCHANGE, buffer.get(0));
+        assertEquals(1700000000000L, (long) buffer.getDouble(4));
+        assertEquals(45.5, buffer.getDouble(12), 0);
+        assertEquals(120 + 1 + "uuid-1".length() + 1 + 1 + "still".length() + 2, encoded.length);
+    }
+
+    @Test
+    public void encodesFilteredValues() throws JSONException {
+        JSONObject json = location("uuid-1", 1700000000000L);
+        double[] values = {45.6, -73.7, 3.5, 1234.5};
+        ByteBuffer buffer = ByteBuffer.wrap(LocationCodec.encode(LocationCodec.TYPE_LOCATION, tsLocation(json), values))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(45.6, buffer.getDouble(12), 0);
+        assertEquals(-73.7, buffer.getDouble(20), 0);
+        assertEquals(3.5, buffer.getDouble(36), 0);
+        assertEquals(1234.5, buffer.getDouble(92), 0);
+    }
+
+    @Test
+    public void leavesUnfitLocationsToJson() throws JSONException {
+        JSONObject json = location("uuid-1", 1700000000000L);
+        json.put("geofence", new JSONObject().put("identifier", "home").put("action", "ENTER"));
+        assertNull(LocationCodec.encode(LocationCodec.TYPE_LOCATION, tsLocation(json), LocationCodec.values(tsLocation(json))));
+
+        json = location(longString(300), 1700000000000L);
+        assertNull(LocationCodec.encode(LocationCodec.TYPE_LOCATION, tsLocation(json), LocationCodec.values(tsLocation(json))));
+    }
+
+    @Test
+    public void valuesFallBackToLocation() throws JSONException {
+        Location fix = new Location("gps");
+        fix.setLatitude(45.5);
+        fix.setLongitude(-73.6);
+        double[] values = LocationCodec.values(new TSLocation(fix, new JSONObject()));
+        assertEquals(45.5, values[0], 0);
+        assertEquals(-1, values[2], 0);
+        assertEquals(0, values[3], 0);
+    }
+
+    /**
+     * The fixture cases:  {name, type, json (the location as rendered by the SDK), encoded (base64)}.
+     */
+    private static JSONArray cases() throws JSONException {
+        JSONArray cases = new JSONArray();
+
+        JSONObject json = location("5b8a3a7e-8bc4-4d0b-9a2b-1f6c0f7a8e21", 1700000000123L);
+        cases.put(fixture("location", LocationCodec.TYPE_LOCATION, json));
+
+        json = location("0d4b5a4c-2d6e-4c5e-8a61-3a0c8f2f9b10", 1700000060000L);
+        json.put("event", "motionchange");
+        json.put("is_moving", true);
+        json.put("extras", new JSONObject().put("route", "Montréal → Québec").put("stop", 3).put("tags", new JSONArray().put("a").put("b")));
+        json.getJSONObject("activity").put("type", "in_vehicle").put("confidence", 100);
+        json.getJSONObject("battery").put("is_charging", true);
+        cases.put(fixture("motionchange", LocationCodec.TYPE_MOTIONCHANGE, json));
+
+        json = location("7c0f5d1a-6c3b-4f4e-b0a8-5e2d9f1c3a47", 1700000120000L);
+        json.put("event", "heartbeat");
+        json.put("is_heartbeat", true);
+        json.put("sample", true);
+        json.put("mock", true);
+        json.put("age", 1523);
+        JSONObject coords = json.getJSONObject("coords");
+        coords.put("speed", -1).put("heading", -1).put("altitude", -1).put("altitude_accuracy", -1);
+        json.getJSONObject("battery").put("level", -1);
+        cases.put(fixture("heartbeat", LocationCodec.TYPE_HEARTBEAT, json));
+        return cases;
+    }
+
+    private static JSONObject fixture(String name, int type, JSONObject json) throws JSONException {
+        TSLocation location = tsLocation(json);
+        byte[] encoded = LocationCodec.encode(type, location, LocationCodec.values(location));
+        return new JSONObject()
+                .put("name", name)
+                .put("type", type)
+                .put("json", json)
+                .put("encoded", Base64.getEncoder().encodeToString(encoded));
+    }
+
+    /**
+     * A location rendered as TSLocation#toJson renders it, with every field the codec carries.
+     */
+    private static JSONObject location(String uuid, long time) throws JSONException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        JSONObject coords = new JSONObject()
+                .put("latitude", 45.5)
+                .put("longitude", -73.6)
+                .put("accuracy", 4.7)
+                .put("speed", 12.3)
+                .put("speed_accuracy", 0.5)
+                .put("heading", 271.4)
+                .put("heading_accuracy", 8.1)
+                .put("altitude", 42.2)
+                .put("ellipsoidal_altitude", 10.9)
+                .put("altitude_accuracy", 3.2);
+        return new JSONObject()
+                .put("uuid", uuid)
+                .put("timestamp", format.format(new Date(time)))
+                .put("is_moving", false)
+                .put("odometer", 9876.5)
+                .put("coords", coords)
+                .put("activity", new JSONObject().put("type", "still").put("confidence", 75))
+                .put("battery", new JSONObject().put("level", 0.82).put("is_charging", false));
+    }
+
+    private static TSLocation tsLocation(JSONObject json) throws JSONException {
+        JSONObject coords = json.getJSONObject("coords");
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Location fix = new Location("gps");
+        fix.setLatitude(coords.getDouble("latitude"));
+        fix.setLongitude(coords.getDouble("longitude"));
+        try {
+            fix.setTime(format.parse(json.getString("timestamp")).getTime());
+        } catch (ParseException e) {
+            throw new JSONException(e.getMessage());
+        }
+        return new TSLocation(fix, json);
+    }
+
+    private static String longString(int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append('x');
+        }
+        return builder.toString();
+    }
+
+    private static String read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < buffer.length && (read = in.read(buffer, offset, buffer.length - offset)) != -1) {
+                offset += read;
+            }
+            return new String(buffer, 0, offset, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
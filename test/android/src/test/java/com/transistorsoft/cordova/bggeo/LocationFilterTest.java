@@ -0,0 +1,172 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.content.Context;
+import android.location.Location;
+
+import com.transistorsoft.locationmanager.location.TSLocation;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays synthetic traces through the filter, comparing its odometer with the raw one (the sum of distances between fixes)
+ * against the ground truth.
+ */
+public class LocationFilterTest {
+    private static final double EARTH_RADIUS = 6371008.8;
+    private static final double ORIGIN_LAT = 45.5;
+    private static final double ORIGIN_LNG = -73.6;
+    private static final long START_TIME = 1700000000000L;
+
+    private LocationFilter filter;
+
+    @Before
+    public void setUp() throws JSONException {
+        filter = new LocationFilter(new Context());
+        filter.configure(new JSONObject().put("maxAccuracy", 50).put("maxSpeed", 60));
+    }
+
+    @Test
+    public void smoothsNoisyDrive() {
+        // 10 minutes at 15 m/s around a wide curve, 1 fix / second with 8m of noise (accuracy 10).
+        Random random = new Random(42);
+        int fixes = 600;
+        double truth = 0;
+        double raw = 0;
+        double[] previousTrue = null;
+        double[] previousFix = null;
+        for (int i = 0; i < fixes; i++) {
+            double heading = i * 0.005;
+            double[] position = (previousTrue == null) ? new double[] {0, 0}
+                    : new double[] {previousTrue[0] + 15 * Math.sin(heading), previousTrue[1] + 15 * Math.cos(heading)};
+            if (previousTrue != null) {
+                truth += Math.hypot(position[0] - previousTrue[0], position[1] - previousTrue[1]);
+            }
+            double[] fix = {position[0] + random.nextGaussian() * 8, position[1] + random.nextGaussian() * 8};
+            if (previousFix != null) {
+                raw += Math.hypot(fix[0] - previousFix[0], fix[1] - previousFix[1]);
+            }
+            float speed = (float) (15 + random.nextGaussian() * 0.5);
+            float bearing = (float) Math.toDegrees(heading + random.nextGaussian() * 0.02);
+            assertTrue(update(fix, 10, i, true, speed, bearing, true));
+            previousTrue = position;
+            previousFix = fix;
+        }
+        double rawError = Math.abs(raw - truth) / truth;
+        double filteredError = Math.abs(filter.getOdometer() - truth) / truth;
+        System.out.println(String.format("drive %.0fm:  raw odometer error %.1f%%, filtered %.1f%%", truth, rawError * 100, filteredError * 100));
+        assertTrue("filtered error " + filteredError + " should be well below raw error " + rawError, filteredError < rawError / 3);
+        assertTrue(filteredError < 0.03);
+        assertEquals(15, filter.getSpeed(), 1);
+    }
+
+    @Test
+    public void dampsStationaryJitter() {
+        // 5 minutes standing still with 10m of jitter, no Doppler:  every meter counted is error.
+        Random random = new Random(7);
+        double raw = 0;
+        double[] previousFix = null;
+        for (int i = 0; i < 300; i++) {
+            double[] fix = {random.nextGaussian() * 10, random.nextGaussian() * 10};
+            if (previousFix != null) {
+                raw += Math.hypot(fix[0] - previousFix[0], fix[1] - previousFix[1]);
+            }
+            update(fix, 15, i, false, 0, 0, true);
+            previousFix = fix;
+        }
+        System.out.println(String.format("stationary:  raw odometer %.0fm, filtered %.0fm", raw, filter.getOdometer()));
+        assertTrue(filter.getOdometer() < raw / 2);
+    }
+
+    @Test
+    public void rejectsOutliers() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(update(new double[] {0, i * 10}, 5, i, true, 10, 0, true));
+        }
+        double odometer = filter.getOdometer();
+        // A 5km jump in a second, then a fix too inaccurate to use.
+        assertFalse(update(new double[] {5000, 100}, 5, 10, false, 0, 0, true));
+        assertFalse(update(new double[] {0, 110}, 80, 11, false, 0, 0, true));
+        assertEquals(odometer, filter.getOdometer(), 0);
+        // The track resumes.
+        assertTrue(update(new double[] {0, 120}, 5, 12, true, 10, 0, true));
+        assertEquals(odometer + 30, filter.getOdometer(), 5);
+    }
+
+    @Test
+    public void neverRejectsEvents() {
+        update(new double[] {0, 0}, 5, 0, false, 0, 0, true);
+        assertTrue(update(new double[] {5000, 0}, 5, 1, false, 0, 0, false));
+    }
+
+    @Test
+    public void restartsAfterConsecutiveRejects() {
+        for (int i = 0; i < 5; i++) {
+            update(new double[] {0, i * 10}, 5, i, true, 10, 0, true);
+        }
+        // Leaving a tunnel:  the fixes are right, the filter is wrong.
+        assertFalse(update(new double[] {3000, 40}, 5, 5, false, 0, 0, true));
+        assertFalse(update(new double[] {3000, 50}, 5, 6, false, 0, 0, true));
+        assertTrue(update(new double[] {3000, 60}, 5, 7, false, 0, 0, true));
+        assertEquals(ORIGIN_LNG + toLng(3000), filter.getLongitude(), 1e-9);
+    }
+
+    @Test
+    public void appliesEachLocationOnce() throws JSONException {
+        update(new double[] {0, 0}, 5, 0, true, 10, 0, true);
+        // The same fix is filtered before insert and again for onLocation.
+        TSLocation location = location("uuid-1", new double[] {0, 10}, 1);
+        double[] values = new double[4];
+        assertTrue(filter.apply(location, values));
+        double odometer = filter.getOdometer();
+        JSONObject json = location.toJson();
+        assertTrue(filter.apply(location, json));
+        assertEquals(odometer, filter.getOdometer(), 0);
+        assertEquals(values[3], json.getDouble("odometer"), 0);
+        assertEquals(values[0], json.getJSONObject("coords").getDouble("latitude"), 0);
+    }
+
+    @Test
+    public void disabledPassesThrough() throws JSONException {
+        filter.configure(null);
+        TSLocation location = location("uuid-1", new double[] {5000, 5000}, 0);
+        assertTrue(filter.apply(location, location.toJson()));
+        assertEquals(ORIGIN_LAT + toLat(5000), location.toJson().getJSONObject("coords").getDouble("latitude"), 0);
+    }
+
+    private boolean update(double[] position, float accuracy, int second, boolean hasVelocity, float speed, float bearing, boolean mayReject) {
+        return filter.update(ORIGIN_LAT + toLat(position[1]), ORIGIN_LNG + toLng(position[0]), accuracy, START_TIME + second * 1000L,
+                hasVelocity, speed, bearing, true, mayReject);
+    }
+
+    private static TSLocation location(String uuid, double[] position, int second) throws JSONException {
+        Location fix = new Location("gps");
+        fix.setLatitude(ORIGIN_LAT + toLat(position[1]));
+        fix.setLongitude(ORIGIN_LNG + toLng(position[0]));
+        fix.setAccuracy(5);
+        fix.setSpeed(10);
+        fix.setBearing(0);
+        fix.setTime(START_TIME + second * 1000L);
+        JSONObject coords = new JSONObject()
+                .put("latitude", fix.getLatitude())
+                .put("longitude", fix.getLongitude())
+                .put("speed", 10);
+        return new TSLocation(fix, new JSONObject().put("uuid", uuid).put("is_moving", true).put("coords", coords));
+    }
+
+    private static double toLat(double north) {
+        return Math.toDegrees(north / EARTH_RADIUS);
+    }
+
+    private static double toLng(double east) {
+        return Math.toDegrees(east / (EARTH_RADIUS * Math.cos(Math.toRadians(ORIGIN_LAT))));
+    }
+}
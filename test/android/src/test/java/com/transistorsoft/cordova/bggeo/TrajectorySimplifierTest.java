@@ -0,0 +1,196 @@
+package com.transistorsoft.cordova.bggeo;
+
+import android.content.Context;
+import android.location.Location;
+
+import com.transistorsoft.locationmanager.adapter.BackgroundGeolocation;
+import com.transistorsoft.locationmanager.location.TSLocation;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays synthetic traces through the simplifier:  the track it leaves in the database (the locations it didn't destroy) must lie
+ * within the tolerance of every location received.
+ */
+public class TrajectorySimplifierTest {
+    private static final double EARTH_RADIUS = 6371008.8;
+    private static final double ORIGIN_LAT = 45.5;
+    private static final double ORIGIN_LNG = -73.6;
+    private static final long START_TIME = 1700000000000L;
+    private static final float TOLERANCE = 10;
+
+    private Context context;
+    private TrajectorySimplifier simplifier;
+    private List<String> destroyed;
+
+    @Before
+    public void setUp() {
+        context = new Context();
+        destroyed = BackgroundGeolocation.getInstance(context).destroyed;
+        destroyed.clear();
+        simplifier = new TrajectorySimplifier(context);
+        simplifier.setTolerance(TOLERANCE);
+    }
+
+    @Test
+    public void keepsOnlyCornersOfCityDrive() throws JSONException {
+        // Blocks of 200m at 10 m/s, 1 fix / second, turning left or right at each corner;  2m of noise.
+        Random random = new Random(1);
+        List<double[]> trace = new ArrayList<double[]>();
+        double x = 0, y = 0;
+        double dx = 0, dy = 10;
+        for (int block = 0; block < 20; block++) {
+            for (int i = 0; i < 20; i++) {
+                trace.add(new double[] {x + random.nextGaussian() * 2, y + random.nextGaussian() * 2});
+                x += dx;
+                y += dy;
+            }
+            double turn = random.nextBoolean() ? 1 : -1;
+            double previous = dx;
+            dx = -dy * turn;
+            dy = previous * turn;
+        }
+        List<double[]> kept = replay(trace);
+        System.out.println(String.format("city drive:  kept %d / %d, max error %.1fm", kept.size(), trace.size(), maxError(trace, kept)));
+        assertTrue(maxError(trace, kept) <= TOLERANCE + 0.01);
+        // Roughly the corners.
+        assertTrue("kept " + kept.size(), kept.size() < trace.size() / 5);
+        assertEquals(kept.size(), simplifier.toJson().getLong("kept"));
+        assertTrue(simplifier.toJson().getDouble("maxError") <= TOLERANCE);
+    }
+
+    @Test
+    public void followsCurves() {
+        // A 500m radius circle at 15 m/s.
+        List<double[]> trace = new ArrayList<double[]>();
+        for (int i = 0; i < 400; i++) {
+            double angle = i * 15 / 500.0;
+            trace.add(new double[] {500 * Math.sin(angle), 500 - 500 * Math.cos(angle)});
+        }
+        List<double[]> kept = replay(trace);
+        System.out.println(String.format("curve:  kept %d / %d, max error %.1fm", kept.size(), trace.size(), maxError(trace, kept)));
+        assertTrue(maxError(trace, kept) <= TOLERANCE + 0.01);
+        assertTrue(kept.size() < trace.size() / 3);
+    }
+
+    @Test
+    public void boundsWindow() {
+        // A perfectly straight line:  the tail is still kept every MAX_WINDOW locations.
+        List<double[]> trace = new ArrayList<double[]>();
+        for (int i = 0; i < 200; i++) {
+            trace.add(new double[] {0, i * 10});
+        }
+        List<double[]> kept = replay(trace);
+        assertEquals(5, kept.size());
+    }
+
+    @Test
+    public void keepsEventsAndStationaryLocations() throws JSONException {
+        for (int i = 0; i < 10; i++) {
+            JSONObject json = json("uuid-" + i);
+            if (i == 5) {
+                json.put("event", "geofence");
+            } else if (i == 6) {
+                json.put("is_moving", false);
+            }
+            offer(json, new double[] {0, i * 10}, i);
+        }
+        // 0 (anchor) -> 4 replaced 1..3;  5 and 6 restart the window;  9 replaced 7, 8.
+        assertFalse(destroyed.contains("uuid-4"));
+        assertFalse(destroyed.contains("uuid-5"));
+        assertFalse(destroyed.contains("uuid-6"));
+        assertTrue(destroyed.contains("uuid-3"));
+        assertTrue(destroyed.contains("uuid-8"));
+    }
+
+    @Test
+    public void gapRestartsWindow() throws JSONException {
+        offer(json("uuid-0"), new double[] {0, 0}, 0);
+        offer(json("uuid-1"), new double[] {0, 10}, 1);
+        offer(json("uuid-2"), new double[] {0, 20}, 2 + 10 * 60);
+        assertTrue(destroyed.isEmpty());
+    }
+
+    @Test
+    public void disabledKeepsEverything() {
+        simplifier.setTolerance(0);
+        List<double[]> trace = new ArrayList<double[]>();
+        for (int i = 0; i < 50; i++) {
+            trace.add(new double[] {0, i * 10});
+        }
+        assertEquals(trace.size(), replay(trace).size());
+    }
+
+    /**
+     * Offer each point of the trace (meters east / north), 1 second apart, as a moving location.
+     * @return the points left in the database.
+     */
+    private List<double[]> replay(List<double[]> trace) {
+        try {
+            for (int i = 0; i < trace.size(); i++) {
+                offer(json("uuid-" + i), trace.get(i), i);
+            }
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+        Set<String> removed = new HashSet<String>(destroyed);
+        List<double[]> kept = new ArrayList<double[]>();
+        for (int i = 0; i < trace.size(); i++) {
+            if (!removed.contains("uuid-" + i)) {
+                kept.add(trace.get(i));
+            }
+        }
+        return kept;
+    }
+
+    private void offer(JSONObject json, double[] position, int second) {
+        Location fix = new Location("gps");
+        fix.setLatitude(ORIGIN_LAT + Math.toDegrees(position[1] / EARTH_RADIUS));
+        fix.setLongitude(ORIGIN_LNG + Math.toDegrees(position[0] / (EARTH_RADIUS * Math.cos(Math.toRadians(ORIGIN_LAT)))));
+        fix.setTime(START_TIME + second * 1000L);
+        simplifier.offer(new TSLocation(fix, json), fix.getLatitude(), fix.getLongitude());
+    }
+
+    private static JSONObject json(String uuid) throws JSONException {
+        return new JSONObject().put("uuid", uuid).put("is_moving", true);
+    }
+
+    /**
+     * The largest distance from a point of the trace to the kept polyline's segment spanning it.
+     */
+    private static double maxError(List<double[]> trace, List<double[]> kept) {
+        double error = 0;
+        int segment = 0;
+        for (double[] point : trace) {
+            if (segment + 1 < kept.size() && point == kept.get(segment + 1)) {
+                segment++;
+                continue;
+            }
+            if (segment + 1 < kept.size()) {
+                error = Math.max(error, distanceToSegment(point, kept.get(segment), kept.get(segment + 1)));
+            }
+        }
+        return error;
+    }
+
+    private static double distanceToSegment(double[] p, double[] a, double[] b) {
+        double bx = b[0] - a[0];
+        double by = b[1] - a[1];
+        double lengthSquared = bx * bx + by * by;
+        double t = (lengthSquared > 0) ? Math.max(0, Math.min(1, ((p[0] - a[0]) * bx + (p[1] - a[1]) * by) / lengthSquared)) : 0;
+        return Math.hypot(p[0] - a[0] - t * bx, p[1] - a[1] - t * by);
+    }
+}
@@ -0,0 +1,49 @@
+/**
+* Decodes the binary events of test/fixtures/location-codec.json (encoded by LocationCodec.java, see LocationCodecTest) with
+* www/API.js#decodeEvent:  each must match its location's JSON field for field, but for timestamp, decoded as a Date.
+*
+*   node --test test/js
+*/
+var test = require('node:test');
+var assert = require('node:assert');
+var fs = require('fs');
+var path = require('path');
+
+var loadAPI = require('./loadAPI');
+
+var FIXTURE = path.join(__dirname, '..', 'fixtures', 'location-codec.json');
+
+var EVENT_TYPE_MOTIONCHANGE = 2;
+var EVENT_TYPE_HEARTBEAT    = 3;
+
+var cases = JSON.parse(fs.readFileSync(FIXTURE, 'utf8'));
+
+cases.forEach(function(fixture) {
+    test('decodeEvent: ' + fixture.name, function() {
+        var api = loadAPI();
+        var decoded = api.context.decodeEvent(api.toArrayBuffer(Buffer.from(fixture.encoded, 'base64')));
+
+        var location = decoded;
+        var expected = fixture.json;
+        if (fixture.type === EVENT_TYPE_MOTIONCHANGE) {
+            assert.deepStrictEqual(Object.keys(decoded).sort(), ['isMoving', 'location']);
+            assert.strictEqual(decoded.isMoving, expected.is_moving);
+            location = decoded.location;
+        } else if (fixture.type === EVENT_TYPE_HEARTBEAT) {
+            assert.deepStrictEqual(Object.keys(decoded), ['location']);
+            location = decoded.location;
+        }
+        assert.strictEqual(Object.prototype.toString.call(location.timestamp), '[object Date]');
+        assert.strictEqual(location.timestamp.toISOString(), expected.timestamp);
+
+        // Compare the remaining fields within this realm.
+        var actual = JSON.parse(JSON.stringify(location));
+        assert.deepStrictEqual(actual, expected);
+    });
+});
+
+test('decodeEvent returns JSON events as-is', function() {
+    var api = loadAPI();
+    var event = {uuid: 'uuid-1', geofence: {identifier: 'home'}};
+    assert.strictEqual(api.context.decodeEvent(event), event);
+});
@@ -0,0 +1,57 @@
+/**
+* The Android-only methods of www/API.js and www/Logger.js must reject on iOS without calling the native plugin (which would fail
+* with an unknown action), and must call it on Android.
+*
+*   node --test test/js
+*/
+var test = require('node:test');
+var assert = require('node:assert');
+
+var loadAPI = require('./loadAPI');
+
+var GATED = [
+    {file: 'API.js', method: 'getState({ifChangedSince})', action: 'getState', call: function(api) { return api.getState({ifChangedSince: 1}); }},
+    {file: 'API.js', method: 'destroyLocations(uuids)', action: 'destroyLocationsByUUID', call: function(api) { return api.destroyLocations(['a']); }},
+    {file: 'API.js', method: 'insertLocations', action: 'insertLocations', call: function(api) { return api.insertLocations([]); }},
+    {file: 'API.js', method: 'getSyncDiagnostics', action: 'getSyncDiagnostics', call: function(api) { return api.getSyncDiagnostics(); }},
+    {file: 'API.js', method: 'importGeofences', action: 'importGeofences', call: function(api) { return api.importGeofences([]); }},
+    {file: 'API.js', method: 'getGeofencesNear', action: 'getGeofencesNear', call: function(api) { return api.getGeofencesNear(45, -73, 1000); }},
+    {file: 'API.js', method: 'getGeofencesInBounds', action: 'getGeofencesInBounds', call: function(api) { return api.getGeofencesInBounds({north: 1, south: 0, east: 1, west: 0}); }},
+    {file: 'API.js', method: 'getGeofencesSince', action: 'getGeofencesSince', call: function(api) { return api.getGeofencesSince(0); }},
+    {file: 'Logger.js', method: 'getLog({level, tag, text})', action: 'getLog', call: function(api) { return api.getLog({level: 'error'}); }},
+    {file: 'Logger.js', method: 'emailLog({level, tag, text})', action: 'emailLog', call: function(api) { return api.emailLog('a@b.c', {tag: 'sync'}); }},
+    {file: 'Logger.js', method: 'uploadLog({level, tag, text})', action: 'uploadLog', call: function(api) { return api.uploadLog('https://example.com', {text: 'x'}); }},
+    {file: 'Logger.js', method: 'exportLog', action: 'getLog', call: function(api) { return api.exportLog(); }},
+    {file: 'Logger.js', method: 'getStats', action: 'getLogStats', call: function(api) { return api.getStats(); }}
+];
+
+GATED.forEach(function(gated) {
+    var prefix = (gated.file === 'Logger.js') ? 'BackgroundGeolocation.logger#' : 'BackgroundGeolocation#';
+
+    test('iOS rejects ' + prefix + gated.method, async function() {
+        var ios = loadAPI('ios', gated.file);
+        await assert.rejects(gated.call(ios.api), function(error) {
+            assert.strictEqual(error, prefix + gated.method + ' is unsupported on iOS (Android only)');
+            return true;
+        });
+        assert.strictEqual(ios.calls.length, 0);
+    });
+
+    test('Android executes ' + prefix + gated.method, function() {
+        var android = loadAPI('android', gated.file);
+        gated.call(android.api);
+        assert.strictEqual(android.calls.length, 1);
+        assert.strictEqual(android.calls[0].action, gated.action);
+    });
+});
+
+test('iOS executes the unfiltered forms', function() {
+    var api = loadAPI('ios', 'API.js');
+    api.api.getState();
+    api.api.destroyLocations();
+    assert.deepStrictEqual(api.calls.map(function(call) { return call.action; }), ['getState', 'destroyLocations']);
+
+    var logger = loadAPI('ios', 'Logger.js');
+    logger.api.getLog({start: 0});
+    assert.deepStrictEqual(logger.calls.map(function(call) { return call.action; }), ['getLog']);
+});
@@ -0,0 +1,45 @@
+/**
+* Loads www/API.js (or another file of www, eg: Logger.js) into a sandbox with a fake cordova/exec recording each call, so the plugin's JS can be tested under node.
+* Its top-level functions (eg: decodeEvent) are globals of the sandbox:  api.context.decodeEvent.
+*/
+var fs = require('fs');
+var path = require('path');
+var vm = require('vm');
+
+var WWW = path.join(__dirname, '..', '..', 'www');
+
+module.exports = function loadAPI(platform, file) {
+    var calls = [];
+    var exec = function(success, failure, service, action, args) {
+        calls.push({service: service, action: action, args: args, success: success, failure: failure});
+    };
+    var module = {exports: {}};
+    var context = vm.createContext({
+        module: module,
+        exports: module.exports,
+        console: console,
+        window: {cordova: {platformId: platform || 'android'}},
+        cordova: {platformId: platform || 'android'},
+        require: function(name) {
+            if (name === 'cordova/exec') {
+                return exec;
+            }
+            return {};
+        }
+    });
+    file = file || 'API.js';
+    vm.runInContext(fs.readFileSync(path.join(WWW, file), 'utf8'), context, {filename: 'www/' + file});
+    return {
+        api: module.exports,
+        context: context,
+        calls: calls,
+        /**
+        * Copy bytes to an ArrayBuffer of the sandbox:  decodeEvent tests (data instanceof ArrayBuffer) within its own realm.
+        */
+        toArrayBuffer: function(bytes) {
+            var view = new (vm.runInContext('Uint8Array', context))(bytes.length);
+            view.set(bytes);
+            return view.buffer;
+        }
+    };
+};
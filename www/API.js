@@ -16,6 +16,9 @@ var CALLBACK_REGEXP = new RegExp("^" + MODULE_NAME + ".*");
 
 var cordovaCallbacks = [];
 
+// #watchPosition ids, for #stopWatchPosition(watchId).
+var watchPositionSeq = 0;
+
 // Cached copy of DeviceInfo
 var deviceInfo = null;
 
@@ -60,10 +63,27 @@ var validateConfig = function(config) {
       priority: config.notificationPriority
     };
   }
+  // The compact sync encoding exists only on Android:  elsewhere, #sync uploads the standard JSON encoding.
+  if ((config.syncEncoding || config.syncConcurrency) && !isAndroid()) {
+    console.warn('[BackgroundGeolocation] WARNING: Config.syncEncoding and Config.syncConcurrency are unsupported on iOS (Android only):  #sync uploads the standard JSON encoding');
+  }
   config = TransistorAuthorizationToken.applyIf(config);
   return config;
 };
 
+function isAndroid() {
+    return (window.cordova && window.cordova.platformId === 'android');
+}
+
+/**
+* Android-only methods reject on other platforms, rather than fail natively with an unknown action.
+* @param {String} method
+*/
+function rejectUnsupported(method) {
+    var platform = (window.cordova && window.cordova.platformId === 'ios') ? 'iOS' : ((window.cordova && window.cordova.platformId) || 'this platform');
+    return Promise.reject('BackgroundGeolocation#' + method + ' is unsupported on ' + platform + ' (Android only)');
+}
+
 /**
 * Register a single Cordova Callback
 */
@@ -85,15 +105,18 @@ function registerCordovaCallback(userSuccess, mySuccess) {
 }
 /**
 * Remove a single plugin CordovaCallback
+* @param {Boolean} keepCordovaCallback leave the Cordova callback for the native side to release with its last result.
 */
-function removeCordovaCallback(callback) {
+function removeCordovaCallback(callback, keepCordovaCallback) {
     for (var n=0,len=cordovaCallbacks.length;n<len;n++) {
         var cordovaCallback = cordovaCallbacks[n];
         if (cordovaCallback.success === callback) {
             var callbackId = cordovaCallback.callbackId;
             if (typeof(window.cordova.callbacks[callbackId]) === 'object') {
                 // Destroy Cordova callback.
-                delete window.cordova.callbacks[callbackId];
+                if (!keepCordovaCallback) {
+                    delete window.cordova.callbacks[callbackId];
+                }
                 // Destroy internal reference
                 cordovaCallbacks.splice(n, 1);
                 return callbackId;
@@ -124,10 +147,10 @@ function removeCordovaCallbacks() {
 /**
  * Object returned from BackgroundGeolocation.addListener for removing an event-listener.
  */
-function createSubscription(event, handler) {
+function createSubscription(event, handler, keepCordovaCallback) {
     return {
         remove: function() {
-            var callbackId = removeCordovaCallback(handler);
+            var callbackId = removeCordovaCallback(handler, keepCordovaCallback);
             if (callbackId) {
                 exec(emptyFn, emptyFn, MODULE_NAME, 'removeListener', [event, callbackId]);
             }
@@ -151,6 +174,141 @@ function setTimestamp(rs) {
     return rs;
 }
 
+/**
+* Resolve a #getLocations / #sync response.  When paging options were provided, resolve the page {locations, cursor, total}
+* rather than the bare Array of locations.
+* @param {Object} options
+* @param {Object} params
+*/
+function resolveLocations(options, params) {
+    var locations = setTimestamp(params.locations);
+    if (!options.pageSize && !options.cursor) {
+        return locations;
+    }
+    return {
+        locations: locations,
+        cursor: params.cursor || null,
+        total: (params.total !== undefined) ? params.total : locations.length
+    };
+}
+
+/**
+* Binary event encoding (listener option {encoding: 'binary'}):  see LocationCodec.java for the layout.
+*/
+var EVENT_TYPE_LOCATION     = 1;
+var EVENT_TYPE_MOTIONCHANGE = 2;
+var EVENT_TYPE_HEARTBEAT    = 3;
+var EVENT_HEADER_SIZE       = 120;
+var FLAG_IS_MOVING          = 1;
+var FLAG_SAMPLE             = 2;
+var FLAG_IS_CHARGING        = 4;
+var FLAG_MOCK               = 8;
+var FLAG_IS_HEARTBEAT       = 16;
+var FLAG_AGE                = 32;
+
+var utf8Decoder = (typeof(TextDecoder) !== 'undefined') ? new TextDecoder('utf-8') : null;
+
+function decodeString(view, offset, length) {
+    // Fast path:  uuid, event and activity are ASCII.
+    var s = '';
+    for (var n=0;n<length;n++) {
+        var c = view.getUint8(offset + n);
+        if (c > 0x7f) {
+            var bytes = new Uint8Array(view.buffer, offset, length);
+            if (utf8Decoder) {
+                return utf8Decoder.decode(bytes);
+            }
+            s = '';
+            for (n=0;n<length;n++) {
+                s += String.fromCharCode(bytes[n]);
+            }
+            return decodeURIComponent(escape(s));
+        }
+        s += String.fromCharCode(c);
+    }
+    return s;
+}
+
+/**
+* Decode a binary location / motionchange / heartbeat event into the same fields and values as its JSON counterpart (with
+* location.timestamp already a Date).  Events which don't fit the binary layout are delivered as JSON:  those are returned as-is.
+* @param {ArrayBuffer|Object} data
+*/
+function decodeEvent(data) {
+    if (!(data instanceof ArrayBuffer)) {
+        return data;
+    }
+    var view = new DataView(data);
+    var type = view.getUint8(0);
+    var flags = view.getUint16(2, true);
+
+    var offset = EVENT_HEADER_SIZE;
+    var length = view.getUint8(offset++);
+    var uuid = decodeString(view, offset, length);
+    offset += length;
+    length = view.getUint8(offset++);
+    var event = decodeString(view, offset, length);
+    offset += length;
+    length = view.getUint8(offset++);
+    var activity = decodeString(view, offset, length);
+    offset += length;
+    length = view.getUint16(offset, true);
+    offset += 2;
+
+    var location = {
+        uuid: uuid,
+        timestamp: new Date(view.getFloat64(4, true)),
+        is_moving: (flags & FLAG_IS_MOVING) !== 0,
+        odometer: view.getFloat64(92, true),
+        coords: {
+            latitude: view.getFloat64(12, true),
+            longitude: view.getFloat64(20, true),
+            accuracy: view.getFloat64(28, true),
+            speed: view.getFloat64(36, true),
+            speed_accuracy: view.getFloat64(44, true),
+            heading: view.getFloat64(52, true),
+            heading_accuracy: view.getFloat64(60, true),
+            altitude: view.getFloat64(68, true),
+            ellipsoidal_altitude: view.getFloat64(76, true),
+            altitude_accuracy: view.getFloat64(84, true)
+        },
+        activity: {
+            type: activity,
+            confidence: view.getUint8(116)
+        },
+        battery: {
+            level: view.getFloat64(108, true),
+            is_charging: (flags & FLAG_IS_CHARGING) !== 0
+        }
+    };
+    if (event) {
+        location.event = event;
+    }
+    if (flags & FLAG_SAMPLE) {
+        location.sample = true;
+    }
+    if (flags & FLAG_MOCK) {
+        location.mock = true;
+    }
+    if (flags & FLAG_IS_HEARTBEAT) {
+        location.is_heartbeat = true;
+    }
+    if (flags & FLAG_AGE) {
+        location.age = view.getFloat64(100, true);
+    }
+    if (length) {
+        location.extras = JSON.parse(decodeString(view, offset, length));
+    }
+    switch (type) {
+        case EVENT_TYPE_MOTIONCHANGE:
+            return {isMoving: location.is_moving, location: location};
+        case EVENT_TYPE_HEARTBEAT:
+            return {location: location};
+        default:
+            return location;
+    }
+}
+
 // Re-usable emptyFn
 var emptyFn = function(){};
 
@@ -223,7 +381,7 @@ module.exports = {
     /**
     * add event listener
     */
-    addListener: function(event, success, fail) {
+    addListener: function(event, success, fail, options) {
         if (typeof(success) !== 'function') {
             throw MODULE_NAME + "#on " + event + " requires a success callback";
         }
@@ -234,7 +392,7 @@ module.exports = {
 
         switch (event) {
             case Events.LOCATION:
-                this.onLocation(success, fail);
+                this.onLocation(success, fail, options);
                 break;
             case Events.HTTP:
                 this.onHttp(success, fail);
@@ -243,10 +401,10 @@ module.exports = {
                 this.onGeofence(success, fail);
                 break;
             case Events.MOTIONCHANGE:
-                this.onMotionChange(success, fail);
+                this.onMotionChange(success, fail, options);
                 break;
             case Events.HEARTBEAT:
-                this.onHeartbeat(success, fail);
+                this.onHeartbeat(success, fail, options);
                 break;
             case Events.SCHEDULE:
                 this.onSchedule(success, fail);
@@ -312,26 +470,51 @@ module.exports = {
     /**
     * Event handlers
     */
-    onLocation: function(success, failure) {
+    /**
+    * @param {Object} options {encoding: 'binary'}
+    */
+    onLocation: function(success, failure, options) {
         var mySuccess = function(location) {
+            location = decodeEvent(location);
             // Transform timestamp to Date instance.
-            if (location.timestamp) {
+            if (location.timestamp && !(location.timestamp instanceof Date)) {
                 location.timestamp = new Date(location.timestamp);
             }
             success(location);
         }
-        exec(mySuccess, failure, MODULE_NAME, 'addLocationListener', []);
+        exec(mySuccess, failure, MODULE_NAME, 'addLocationListener', [options || {}]);
         return registerCordovaCallback(success, mySuccess);
     },
-    onMotionChange: function(success, failure) {
+    /**
+    * Batched location listener:  locations are buffered natively and delivered as an Array.
+    * @param {Object} options {batchSize, batchLatency}
+    */
+    onLocationBatch: function(success, failure, options) {
+        var mySuccess = function(locations) {
+            // Platforms without native batching deliver individual locations.
+            if (!Array.isArray(locations)) {
+                locations = [locations];
+            }
+            // Upon removal, the native side flushes what's buffered as its last result (empty when nothing was).
+            if (locations.length) {
+                success(setTimestamp(locations));
+            }
+        }
+        exec(mySuccess, failure, MODULE_NAME, 'addLocationListener', [options || {}]);
+        registerCordovaCallback(success, mySuccess);
+        // Android releases the Cordova callback with the batch flushed upon removal.
+        return createSubscription(Events.LOCATION, success, isAndroid());
+    },
+    onMotionChange: function(success, failure, options) {
         var mySuccess = function(params) {
+            params = decodeEvent(params);
             // Transform timestamp to Date instance.
-            if (params.location.timestamp) {
+            if (params.location.timestamp && !(params.location.timestamp instanceof Date)) {
                 params.location.timestamp = new Date(params.location.timestamp);
             }
             success(params);
         };
-        exec(mySuccess, failure, MODULE_NAME, 'addMotionChangeListener', []);
+        exec(mySuccess, failure, MODULE_NAME, 'addMotionChangeListener', [options || {}]);
         return registerCordovaCallback(success, mySuccess);
     },
     onActivityChange: function(success) {
@@ -366,9 +549,12 @@ module.exports = {
         exec(success, failure, MODULE_NAME, 'addEnabledChangeListener', []);
         return registerCordovaCallback(success, success);
     },
-    onHeartbeat: function(success, failure) {
-        exec(success, failure, MODULE_NAME, 'addHeartbeatListener', []);
-        return registerCordovaCallback(success, success);
+    onHeartbeat: function(success, failure, options) {
+        var mySuccess = function(event) {
+            success(decodeEvent(event));
+        };
+        exec(mySuccess, failure, MODULE_NAME, 'addHeartbeatListener', [options || {}]);
+        return registerCordovaCallback(success, mySuccess);
     },
     onSchedule: function(success, failure) {
         exec(success, failure, MODULE_NAME, 'addScheduleListener', []);
@@ -382,11 +568,14 @@ module.exports = {
         exec(success, failure, MODULE_NAME, 'addAuthorizationListener', []);
         return registerCordovaCallback(success, success);
     },
-    getState: function() {
+    getState: function(options) {
+        if (options && options.ifChangedSince !== undefined && !isAndroid()) {
+            return rejectUnsupported('getState({ifChangedSince})');
+        }
         return new Promise(function(resolve, reject) {
             var success = function(state) { resolve(state) }
             var failure = function(error) { reject(error) }
-            exec(success, failure, MODULE_NAME, 'getState', []);
+            exec(success, failure, MODULE_NAME, 'getState', [options || {}]);
         });
     },
     start: function() {
@@ -452,20 +641,21 @@ module.exports = {
             exec(success, failure, MODULE_NAME, 'changePace', [isMoving]);
         });
     },
-    setConfig: function(config) {
+    setConfig: function(config, options) {
         return new Promise(function(resolve, reject) {
             var success = function(state) { resolve(state) }
             var failure = function(error) { reject(error) }
-            exec(success, failure, MODULE_NAME, 'setConfig', [validateConfig(config)]);
+            exec(success, failure, MODULE_NAME, 'setConfig', [validateConfig(config), options || {}]);
         });
     },
-    getLocations: function() {
+    getLocations: function(options) {
         return new Promise(function(resolve, reject) {
+            options = options || {};
             var success = function(params) {
-                resolve(setTimestamp(params.locations));
+                resolve(resolveLocations(options, params));
             }
             var failure = function(error) { reject(error); }
-            exec(success, failure, MODULE_NAME, 'getLocations', []);
+            exec(success, failure, MODULE_NAME, 'getLocations', [options]);
         });
     },
     getCount: function(success, failure) {
@@ -479,11 +669,23 @@ module.exports = {
     clearDatabase: function(success, failure) {
         this.destroyLocations(success, failure);
     },
-    destroyLocations: function(success, failure) {
+    /**
+    * Destroy all locations or, when provided a list of uuids, only those
+    * @param {Array} uuids Optional.  Resolves per-uuid results [{uuid, success, error}]
+    */
+    destroyLocations: function(uuids) {
+        if (Array.isArray(uuids) && !isAndroid()) {
+            return rejectUnsupported('destroyLocations(uuids)');
+        }
         return new Promise(function(resolve, reject) {
-            var success = function() { resolve(); }
             var failure = function(error) { reject(error) }
-            exec(success, failure, MODULE_NAME, 'destroyLocations', []);
+            if (Array.isArray(uuids)) {
+                var success = function(results) { resolve(results); }
+                exec(success, failure, MODULE_NAME, 'destroyLocationsByUUID', [uuids]);
+            } else {
+                var success = function() { resolve(); }
+                exec(success, failure, MODULE_NAME, 'destroyLocations', []);
+            }
         });
     },
     destroyLocation: function(uuid) {
@@ -506,15 +708,44 @@ module.exports = {
         });
     },
     /**
+    * Insert a list of locations in one call.  Resolves per-location results [{success, uuid, error}]
+    * @param {Array} locations
+    */
+    insertLocations: function(locations) {
+        if (!isAndroid()) {
+            return rejectUnsupported('insertLocations');
+        }
+        return new Promise(function(resolve, reject) {
+            locations = locations || [];
+            var success = function(results) { resolve(results) }
+            var failure = function(error) { reject(error) }
+            exec(success, failure, MODULE_NAME, 'insertLocations', [locations]);
+        });
+    },
+    /**
+    * State of the adaptive sync batch controller (Config.adaptiveBatchSize)
+    */
+    getSyncDiagnostics: function() {
+        if (!isAndroid()) {
+            return rejectUnsupported('getSyncDiagnostics');
+        }
+        return new Promise(function(resolve, reject) {
+            var success = function(result) { resolve(result) }
+            var failure = function(error) { reject(error) }
+            exec(success, failure, MODULE_NAME, 'getSyncDiagnostics', []);
+        });
+    },
+    /**
     * Signal native plugin to sync locations queue to HTTP
     */
-    sync: function() {
+    sync: function(options) {
         return new Promise(function(resolve, reject) {
+            options = options || {};
             var success = function(params) {
-                resolve(setTimestamp(params.locations));
+                resolve(resolveLocations(options, params));
             }
             var failure = function(error) { reject(error) }
-            exec(success, failure, MODULE_NAME, 'sync', []);
+            exec(success, failure, MODULE_NAME, 'sync', [options]);
         });
     },
     /**
@@ -561,6 +792,31 @@ module.exports = {
         });
     },
     /**
+    * Bulk-import a large list of geofences.  Each geofence is accepted or rejected individually.
+    * @param {Array} geofences
+    * @param {Object} options {chunkSize}
+    * @param {Function} onProgress Optional, receives {total, processed, accepted, rejected} after each chunk.
+    */
+    importGeofences: function(geofences, options, onProgress) {
+        if (!isAndroid()) {
+            return rejectUnsupported('importGeofences');
+        }
+        return new Promise(function(resolve, reject) {
+            geofences = geofences || [];
+            var success = function(event) {
+                if (event.type === 'progress') {
+                    if (typeof(onProgress) === 'function') {
+                        onProgress(event);
+                    }
+                } else {
+                    resolve(event);
+                }
+            }
+            var failure = function(error) { reject(error) }
+            exec(success, failure, MODULE_NAME, 'importGeofences', [geofences, options || {}]);
+        });
+    },
+    /**
     * Remove all geofences
     */
     removeGeofences: function(identifiers) {
@@ -597,6 +853,54 @@ module.exports = {
         });
     },
 
+    /**
+    * Fetch geofences whose center lies within radius meters of a point, nearest first.
+    * @param {Number} latitude
+    * @param {Number} longitude
+    * @param {Number} radius meters
+    * @param {Number} limit Optional max number of results
+    */
+    getGeofencesNear: function(latitude, longitude, radius, limit) {
+        if (!isAndroid()) {
+            return rejectUnsupported('getGeofencesNear');
+        }
+        return new Promise(function(resolve, reject) {
+            var success = function(rs) { resolve(rs) }
+            var failure = function(error) { reject(error) }
+            exec(success, failure, MODULE_NAME, 'getGeofencesNear', [latitude, longitude, radius, limit || 0]);
+        });
+    },
+
+    /**
+    * Fetch geofences intersecting a bounding-box
+    * @param {Object} bounds {north, south, east, west}.  west > east crosses the antimeridian.
+    */
+    getGeofencesInBounds: function(bounds) {
+        if (!isAndroid()) {
+            return rejectUnsupported('getGeofencesInBounds');
+        }
+        return new Promise(function(resolve, reject) {
+            var success = function(rs) { resolve(rs) }
+            var failure = function(error) { reject(error) }
+            exec(success, failure, MODULE_NAME, 'getGeofencesInBounds', [bounds]);
+        });
+    },
+
+    /**
+    * Fetch the geofences added, modified and removed since a revision
+    * @param {Number} revision from a previous call.  0 fetches all.
+    */
+    getGeofencesSince: function(revision) {
+        if (!isAndroid()) {
+            return rejectUnsupported('getGeofencesSince');
+        }
+        return new Promise(function(resolve, reject) {
+            var success = function(rs) { resolve(rs) }
+            var failure = function(error) { reject(error) }
+            exec(success, failure, MODULE_NAME, 'getGeofencesSince', [revision || 0]);
+        });
+    },
+
     /**
     * Fetch a list of all monitored geofences
     */
@@ -655,9 +959,18 @@ module.exports = {
         }
         failure = failure || emptyFn;
         options = options || {};
-        exec(mySuccess, failure, MODULE_NAME, 'watchPosition', [options]);
+        // Copy the options:  the watchId identifies this watch to #stopWatchPosition(watchId).
+        var request = {};
+        for (var key in options) {
+            if (options.hasOwnProperty(key)) {
+                request[key] = options[key];
+            }
+        }
+        request.watchId = ++watchPositionSeq;
+        exec(mySuccess, failure, MODULE_NAME, 'watchPosition', [request]);
+        return request.watchId;
     },
-    stopWatchPosition: function() {
+    stopWatchPosition: function(watchId) {
         return new Promise(function(resolve, reject) {
             var success = function(watchCallbacks) {
                 var callbacks = window.cordova.callbacks;
@@ -672,7 +985,7 @@ module.exports = {
                 resolve();
             };
             var failure = function(error) { reject(error) }
-            exec(success, failure, MODULE_NAME, 'stopWatchPosition', []);
+            exec(success, failure, MODULE_NAME, 'stopWatchPosition', (typeof(watchId) === 'number') ? [watchId] : []);
         })
     },
     setLogLevel: function(logLevel) {
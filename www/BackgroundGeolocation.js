@@ -106,20 +106,37 @@ module.exports = {
             API.getProviderState().then(success).catch(failure);
         }
     },
-    onLocation: function(success, failure) {
-        return this.on('location', success, failure);
+    onLocation: function(success, failure, options) {
+        if (typeof(failure) === 'object') {
+            // onLocation(success, options)
+            options = failure;
+            failure = emptyFn;
+        }
+        return this.on('location', success, failure, options);
+    },
+
+    onLocationBatch: function(success, failure, options) {
+        if (typeof(success) !== 'function') {
+            throw "BackgroundGeolocation#onLocationBatch requires a success callback";
+        }
+        if (typeof(failure) === 'object') {
+            // onLocationBatch(success, options)
+            options = failure;
+            failure = emptyFn;
+        }
+        return API.onLocationBatch(success, failure || emptyFn, options);
     },
 
-    onMotionChange: function(callback) {
-        return this.on('motionchange', callback);
+    onMotionChange: function(callback, options) {
+        return this.on('motionchange', callback, emptyFn, options);
     },
 
     onHttp: function(callback) {
         return this.on('http', callback);
     },
 
-    onHeartbeat: function(callback) {
-        return this.on('heartbeat', callback);
+    onHeartbeat: function(callback, options) {
+        return this.on('heartbeat', callback, emptyFn, options);
     },
 
     onProviderChange: function(callback) {
@@ -162,12 +179,12 @@ module.exports = {
         return this.on('authorization', callback);
     },
 
-    on: function(event, success, failure) {
+    on: function(event, success, failure, options) {
         if (typeof(success) !== 'function') {
             throw "BackgroundGeolocation event '" + event + "' was not provided with a success callback.  If you're attempting to use Promise API to add an event-listener, that won't work, since a Promise can only evaluate once.";
         }
         failure = failure || emptyFn;
-        return  API.addListener(event, success, failure);
+        return  API.addListener(event, success, failure, options);
     },
     /**
     * @alias #removeListener
@@ -190,7 +207,10 @@ module.exports = {
         }
     },
     getState: function(success, failure) {
-        if (!arguments.length) {
+        if (typeof(success) === 'object') {
+            // getState({ifChangedSince: state.version})
+            return API.getState(success);
+        } else if (!arguments.length) {
             return API.getState();
         } else {
             API.getState().then(success).catch(failure);
@@ -256,13 +276,20 @@ module.exports = {
         }
     },
     setConfig: function(config, success, failure) {
-        if (arguments.length == 1) {
+        if (typeof(success) === 'object') {
+            // setConfig(config, {changes: true})
+            return API.setConfig(config, success);
+        } else if (arguments.length == 1) {
             return API.setConfig(config);
         } else {
             API.setConfig(config).then(success).catch(failure);
         }
     },
     getLocations: function(success, failure) {
+        if (typeof(success) === 'object') {
+            // Paging:  getLocations({pageSize: 500}) / getLocations({cursor: page.cursor})
+            return API.getLocations(success);
+        }
         if (!arguments.length) {
             return API.getLocations();
         } else {
@@ -276,11 +303,21 @@ module.exports = {
             API.getCount().then(success).catch(failure);
         }
     },
-    destroyLocations: function(success, failure) {
-        if (!arguments.length) {
-            return API.destroyLocations();
+    /**
+    * 1. destroyLocations([uuids]) <-- Promise
+    * 2. destroyLocations([uuids], success, [failure])
+    * 3. destroyLocations(success, [failure])
+    */
+    destroyLocations: function(uuids, success, failure) {
+        if (typeof(uuids) === 'function') {
+            failure = success;
+            success = uuids;
+            uuids = undefined;
+        }
+        if (typeof(success) !== 'function') {
+            return API.destroyLocations(uuids);
         } else {
-            API.destroyLocations().then(success).catch(failure);
+            API.destroyLocations(uuids).then(success).catch(failure || emptyFn);
         }
     },
     destroyLocation: function(uuid) {
@@ -297,7 +334,25 @@ module.exports = {
             API.insertLocation(location).then(success).catch(failure);
         }
     },
+    insertLocations: function(locations, success, failure) {
+        if (arguments.length == 1) {
+            return API.insertLocations(locations);
+        } else {
+            API.insertLocations(locations).then(success).catch(failure || emptyFn);
+        }
+    },
+    getSyncDiagnostics: function(success, failure) {
+        if (!arguments.length) {
+            return API.getSyncDiagnostics();
+        } else {
+            API.getSyncDiagnostics().then(success).catch(failure || emptyFn);
+        }
+    },
     sync: function(success, failure) {
+        if (typeof(success) === 'object') {
+            // Paging:  sync({pageSize: 500}) / sync({cursor: page.cursor})
+            return API.sync(success);
+        }
         if (!arguments.length) {
             return API.sync();
         } else{
@@ -347,6 +402,21 @@ module.exports = {
         }
     },
     /**
+    * 1. importGeofences(geofences, [options], [onProgress]) <-- Promise
+    * 2. importGeofences(geofences, options, onProgress, success, [failure])
+    */
+    importGeofences: function(geofences, options, onProgress, success, failure) {
+        if (typeof(options) === 'function') {
+            onProgress = options;
+            options = {};
+        }
+        if (typeof(success) !== 'function') {
+            return API.importGeofences(geofences, options, onProgress);
+        } else {
+            API.importGeofences(geofences, options, onProgress).then(success).catch(failure || emptyFn);
+        }
+    },
+    /**
     * 1. removeGeofences() <-- Promise
     * 2. removeGeofences(['foo'])  <-- Promise
     *
@@ -373,6 +443,32 @@ module.exports = {
             API.getGeofences().then(success).catch(failure);
         }
     },
+    getGeofencesNear: function(latitude, longitude, radius, limit, success, failure) {
+        if (typeof(limit) === 'function') {
+            failure = success;
+            success = limit;
+            limit = 0;
+        }
+        if (typeof(success) !== 'function') {
+            return API.getGeofencesNear(latitude, longitude, radius, limit);
+        } else {
+            API.getGeofencesNear(latitude, longitude, radius, limit).then(success).catch(failure || emptyFn);
+        }
+    },
+    getGeofencesInBounds: function(bounds, success, failure) {
+        if (arguments.length == 1) {
+            return API.getGeofencesInBounds(bounds);
+        } else {
+            API.getGeofencesInBounds(bounds).then(success).catch(failure || emptyFn);
+        }
+    },
+    getGeofencesSince: function(revision, success, failure) {
+        if (typeof(success) !== 'function') {
+            return API.getGeofencesSince(revision);
+        } else {
+            API.getGeofencesSince(revision).then(success).catch(failure || emptyFn);
+        }
+    },
     getGeofence: function(identifier, success, failure) {
         if (arguments.length == 1) {
             return API.getGeofence(identifier);
@@ -400,16 +496,23 @@ module.exports = {
     },
     watchPosition: function(success, failure, options) {
         if (typeof(success) === 'function') {
-            API.watchPosition.apply(API, arguments);
+            return API.watchPosition.apply(API, arguments);
         } else {
             throw "BackgroundGeolocation#watchPosition does not support Promise API, since Promises cannot resolve multiple times.  The #watchPosition callback *will* be run multiple times.  Use the #watchPosition(success, failure, options) API.";
         }
     },
     stopWatchPosition: function(success, failure) {
-        if (!arguments.length) {
-            return API.stopWatchPosition();
+        // Optional leading watchId (returned by #watchPosition) stops just that watch.
+        var watchId;
+        if (typeof(success) === 'number') {
+            watchId = success;
+            success = failure;
+            failure = arguments[2];
+        }
+        if (typeof(success) !== 'function') {
+            return API.stopWatchPosition(watchId);
         } else {
-            API.stopWatchPosition().then(success).catch(failure);
+            API.stopWatchPosition(watchId).then(success).catch(failure);
         }
     },
     registerHeadlessTask: function(callback) {
@@ -16,6 +16,21 @@ var log = function(level, message) {
 	exec(emptyFn, emptyFn, MODULE_NAME, 'log', [level, message]);
 }
 
+var isAndroid = function() {
+  return (window.cordova && window.cordova.platformId === 'android');
+}
+
+// Android-only methods reject on other platforms, rather than fail natively with an unknown action.
+var rejectUnsupported = function(method) {
+  var platform = (window.cordova && window.cordova.platformId === 'ios') ? 'iOS' : ((window.cordova && window.cordova.platformId) || 'this platform');
+  return Promise.reject('BackgroundGeolocation.logger#' + method + ' is unsupported on ' + platform + ' (Android only)');
+}
+
+// SQLQuery filters (level, tag, text) are applied only by Android.
+var hasFilter = function(query) {
+  return (typeof(query) === 'object') && (query.level !== undefined || query.tag !== undefined || query.text !== undefined);
+}
+
 var validateQuery = function(query) {
   if (typeof(query) !== 'object') return {};
 
@@ -49,6 +64,9 @@ module.exports = {
   },
 
   getLog: function(query) {
+  	if (!isAndroid() && hasFilter(query)) {
+  	  return rejectUnsupported('getLog({level, tag, text})');
+  	}
   	query = validateQuery(query);
   	return new Promise(function(resolve, reject) {
         var success = function(log) { resolve(log) }
@@ -57,7 +75,26 @@ module.exports = {
     });
   },
 
+  exportLog: function(query) {
+  	if (!isAndroid()) {
+  	  return rejectUnsupported('exportLog');
+  	}
+  	query = validateQuery(query);
+  	var params = {file: true};
+  	for (var key in query) {
+  	  if (query.hasOwnProperty(key)) { params[key] = query[key]; }
+  	}
+  	return new Promise(function(resolve, reject) {
+        var success = function(result) { resolve(result) }
+        var failure = function(error) { reject(error) };
+        exec(success, failure, MODULE_NAME, 'getLog', [params]);
+    });
+  },
+
   emailLog: function(email, query) {
+  	if (!isAndroid() && hasFilter(query)) {
+  	  return rejectUnsupported('emailLog({level, tag, text})');
+  	}
   	query = validateQuery(query);
   	return new Promise(function(resolve, reject) {
         var success = function(success) { resolve(success) }
@@ -67,6 +104,9 @@ module.exports = {
   },
 
   uploadLog: function(url, query) {
+  	if (!isAndroid() && hasFilter(query)) {
+  	  return rejectUnsupported('uploadLog({level, tag, text})');
+  	}
   	query = validateQuery(query);
   	return new Promise(function(resolve, reject) {
         var success = function(success) { resolve(success) }
@@ -75,6 +115,17 @@ module.exports = {
     });
   },
 
+  getStats: function() {
+  	if (!isAndroid()) {
+  	  return rejectUnsupported('getStats');
+  	}
+  	return new Promise(function(resolve, reject) {
+        var success = function(stats) { resolve(stats) }
+        var failure = function(error) { reject(error) };
+        exec(success, failure, MODULE_NAME, 'getLogStats', []);
+    });
+  },
+
   destroyLog: function() {
   	return new Promise(function(resolve, reject) {
         var success = function(success) { resolve(success) }